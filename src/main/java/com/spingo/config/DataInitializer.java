@@ -257,6 +257,7 @@ public class DataInitializer implements CommandLineRunner {
         String[] bikeModels = {"Activa", "Pulsar", "Jupiter", "R15", "Splendor", "Classic", "Duke", "Access"};
         String[] colors = {"Red", "Blue", "Black", "White", "Silver", "Green", "Yellow", "Orange"};
         String[] conditions = {"Excellent", "Good", "Very Good", "Fair", "Like New"};
+        List<Location> mumbaiPickupPoints = locationService.getPickupPointsByCity("Mumbai");
 
         for (int i = 0; i < 50; i++) {
             Bike bike = new Bike();
@@ -275,14 +276,15 @@ public class DataInitializer implements CommandLineRunner {
             bike.setMonthlyRate(bike.getDailyRate().multiply(new BigDecimal(25)));
             bike.setHourlyRate(bike.getDailyRate().divide(new BigDecimal(8), 2, java.math.RoundingMode.HALF_UP));
             bike.setLocation("Mumbai, Maharashtra");
+            if (!mumbaiPickupPoints.isEmpty()) {
+                bike.setPickupLocation(mumbaiPickupPoints.get(random.nextInt(mumbaiPickupPoints.size())));
+            }
             bike.setDescription("Well-maintained " + bike.getName() + " with low mileage. Perfect for city rides.");
             bike.setHasHelmet(random.nextBoolean());
             bike.setHasNavigation(random.nextBoolean());
             bike.setIsInsured(true);
             bike.setMileage(random.nextInt(50000));
             bike.setCondition(conditions[random.nextInt(conditions.length)]);
-            bike.setAverageRating(3.5 + random.nextDouble() * 1.5);
-            bike.setTotalReviews(random.nextInt(50));
             bike.setOwner(owners.get(random.nextInt(owners.size())));
             bikeService.addBike(bike);
         }
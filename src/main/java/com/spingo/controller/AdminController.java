@@ -6,7 +6,10 @@ import com.spingo.entity.Payment;
 import com.spingo.entity.User;
 import com.spingo.service.BikeService;
 import com.spingo.service.BookingService;
+import com.spingo.service.DashboardStatsService;
 import com.spingo.service.PaymentService;
+import com.spingo.service.PlatformCounters;
+import com.spingo.service.RecentActivity;
 import com.spingo.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
@@ -35,18 +38,25 @@ public class AdminController {
     @Autowired
     private PaymentService paymentService;
 
+    @Autowired
+    private PlatformCounters platformCounters;
+
+    @Autowired
+    private DashboardStatsService dashboardStatsService;
+
     @GetMapping("/dashboard")
     public String adminDashboard(Model model) {
         // Get statistics
-        long totalUsers = userService.getActiveUserCount();
-        long totalBikes = bikeService.getAvailableBikeCount();
-        long totalBookings = bookingService.getCompletedBookingsCount();
-        double totalRevenue = paymentService.getTotalRevenue();
+        long totalUsers = platformCounters.getActiveUsers();
+        long totalBikes = platformCounters.getAvailableBikes();
+        long totalBookings = platformCounters.getCompletedBookings();
+        double totalRevenue = platformCounters.getTotalRevenue();
         
         // Get recent activities
-        List<User> recentUsers = userService.getAllUsers().stream().limit(5).toList();
-        List<Bike> recentBikes = bikeService.getAllBikes().stream().limit(5).toList();
-        List<Booking> recentBookings = bookingService.getAllBookings().stream().limit(5).toList();
+        RecentActivity recentActivity = dashboardStatsService.getRecentActivity(5);
+        List<User> recentUsers = recentActivity.getUsers();
+        List<Bike> recentBikes = recentActivity.getBikes();
+        List<Booking> recentBookings = recentActivity.getBookings();
         
         model.addAttribute("totalUsers", totalUsers);
         model.addAttribute("totalBikes", totalBikes);
@@ -152,10 +162,10 @@ public class AdminController {
     @GetMapping("/analytics")
     public String analytics(Model model) {
         // Get analytics data
-        long totalUsers = userService.getActiveUserCount();
-        long totalBikes = bikeService.getAvailableBikeCount();
-        long totalBookings = bookingService.getCompletedBookingsCount();
-        double totalRevenue = paymentService.getTotalRevenue();
+        long totalUsers = platformCounters.getActiveUsers();
+        long totalBikes = platformCounters.getAvailableBikes();
+        long totalBookings = platformCounters.getCompletedBookings();
+        double totalRevenue = platformCounters.getTotalRevenue();
         
         // Get revenue for last 30 days
         LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(30);
@@ -166,6 +176,7 @@ public class AdminController {
         model.addAttribute("totalBookings", totalBookings);
         model.addAttribute("totalRevenue", totalRevenue);
         model.addAttribute("monthlyRevenue", monthlyRevenue);
+        model.addAttribute("fleetUtilization", bookingService.getFleetUtilization(bikeService.getBikeCount()));
         
         return "admin/analytics";
     }
@@ -1,9 +1,17 @@
 package com.spingo.controller;
 
 import com.spingo.entity.Bike;
+import com.spingo.entity.Location;
 import com.spingo.entity.User;
+import com.spingo.service.AvailabilityCalendar;
 import com.spingo.service.BikeService;
+import com.spingo.service.BookingService;
+import com.spingo.service.KeysetPage;
+import com.spingo.service.LocationService;
+import com.spingo.service.UserPrincipal;
+import com.spingo.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
@@ -12,6 +20,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Controller
@@ -21,33 +30,46 @@ public class BikeController {
     @Autowired
     private BikeService bikeService;
 
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private LocationService locationService;
+
+    @Autowired
+    private UserService userService;
+
     @GetMapping
     public String listBikes(
             @RequestParam(required = false) String location,
             @RequestParam(required = false) String type,
             @RequestParam(required = false) BigDecimal maxRate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) String cursor,
             Model model) {
         
-        List<Bike> bikes;
-        
-        if (location != null && type != null) {
-            bikes = bikeService.getAvailableBikesByTypeAndLocation(
-                Bike.BikeType.valueOf(type.toUpperCase()), location);
-        } else if (location != null) {
-            bikes = bikeService.getAvailableBikesByLocation(location);
-        } else if (type != null) {
-            bikes = bikeService.getBikesByType(Bike.BikeType.valueOf(type.toUpperCase()));
-        } else if (maxRate != null) {
-            bikes = bikeService.getBikesByMaxRate(maxRate);
-        } else {
-            bikes = bikeService.getAvailableBikes();
+        // Filters combine; blank values (e.g. from the next-page link) are ignored
+        String locationFilter = location != null && !location.isBlank() ? location : null;
+        KeysetPage<Bike> bikes;
+        try {
+            Bike.BikeType typeFilter = type != null && !type.isBlank() ? Bike.BikeType.valueOf(type.toUpperCase()) : null;
+            bikes = bikeService.getAvailableBikes(locationFilter, typeFilter, maxRate,
+                start, end, cursor, KeysetPage.DEFAULT_SIZE);
+        } catch (RuntimeException e) {
+            // An incomplete or reversed rental window: show the form again with the reason
+            model.addAttribute("error", e.getMessage());
+            bikes = new KeysetPage<>(List.of(), null);
         }
         
-        model.addAttribute("bikes", bikes);
+        model.addAttribute("bikes", bikes.getItems());
+        model.addAttribute("nextCursor", bikes.getNextCursor());
         model.addAttribute("bikeTypes", Bike.BikeType.values());
         model.addAttribute("selectedLocation", location);
         model.addAttribute("selectedType", type);
         model.addAttribute("selectedMaxRate", maxRate);
+        model.addAttribute("selectedStart", start);
+        model.addAttribute("selectedEnd", end);
         
         return "bikes/list";
     }
@@ -61,20 +83,31 @@ public class BikeController {
         return "bikes/details";
     }
 
+    // 90-day hourly heatmap: one 24-bit mask of booked hours per day, starting today
+    @GetMapping("/{id}/availability")
+    @ResponseBody
+    public AvailabilityCalendar availability(@PathVariable Long id) {
+        return bookingService.getAvailabilityCalendar(id);
+    }
+
     @GetMapping("/add")
     public String addBikeForm(Model model) {
         model.addAttribute("bike", new Bike());
         model.addAttribute("bikeTypes", Bike.BikeType.values());
         model.addAttribute("fuelTypes", Bike.FuelType.values());
+        model.addAttribute("pickupLocations", locationService.getActiveLocations());
         return "bikes/add";
     }
 
     @PostMapping("/add")
-    public String addBike(@ModelAttribute Bike bike, RedirectAttributes redirectAttributes) {
+    public String addBike(@ModelAttribute Bike bike,
+                         @RequestParam(required = false) Long pickupLocationId,
+                         RedirectAttributes redirectAttributes) {
         try {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            User owner = (User) authentication.getPrincipal();
+            User owner = userService.getReference((UserPrincipal) authentication.getPrincipal());
             bike.setOwner(owner);
+            bike.setPickupLocation(resolvePickupLocation(pickupLocationId));
             
             bikeService.addBike(bike);
             redirectAttributes.addFlashAttribute("success", "Bike added successfully!");
@@ -93,11 +126,14 @@ public class BikeController {
         model.addAttribute("bike", bike);
         model.addAttribute("bikeTypes", Bike.BikeType.values());
         model.addAttribute("fuelTypes", Bike.FuelType.values());
+        model.addAttribute("pickupLocations", locationService.getActiveLocations());
         return "bikes/edit";
     }
 
     @PostMapping("/{id}/edit")
-    public String editBike(@PathVariable Long id, @ModelAttribute Bike bike, RedirectAttributes redirectAttributes) {
+    public String editBike(@PathVariable Long id, @ModelAttribute Bike bike,
+                          @RequestParam(required = false) Long pickupLocationId,
+                          RedirectAttributes redirectAttributes) {
         try {
             Bike existingBike = bikeService.findById(id)
                 .orElseThrow(() -> new RuntimeException("Bike not found"));
@@ -115,6 +151,10 @@ public class BikeController {
             existingBike.setMonthlyRate(bike.getMonthlyRate());
             existingBike.setHourlyRate(bike.getHourlyRate());
             existingBike.setLocation(bike.getLocation());
+            // Leave the pickup location alone unless the request picks a new one
+            if (pickupLocationId != null) {
+                existingBike.setPickupLocation(resolvePickupLocation(pickupLocationId));
+            }
             existingBike.setDescription(bike.getDescription());
             existingBike.setHasHelmet(bike.getHasHelmet());
             existingBike.setHasNavigation(bike.getHasNavigation());
@@ -139,4 +179,12 @@ public class BikeController {
         }
         return "redirect:/owner/dashboard";
     }
+
+    private Location resolvePickupLocation(Long pickupLocationId) {
+        if (pickupLocationId == null) {
+            return null;
+        }
+        return locationService.getLocationById(pickupLocationId)
+            .orElseThrow(() -> new RuntimeException("Pickup location not found"));
+    }
 }
@@ -5,6 +5,9 @@ import com.spingo.entity.Booking;
 import com.spingo.entity.User;
 import com.spingo.service.BikeService;
 import com.spingo.service.BookingService;
+import com.spingo.service.KeysetPage;
+import com.spingo.service.UserPrincipal;
+import com.spingo.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -27,13 +30,17 @@ public class BookingController {
     @Autowired
     private BikeService bikeService;
 
+    @Autowired
+    private UserService userService;
+
     @GetMapping
-    public String listBookings(Model model) {
+    public String listBookings(@RequestParam(required = false) String cursor, Model model) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User user = (User) authentication.getPrincipal();
+        User user = userService.getReference((UserPrincipal) authentication.getPrincipal());
         
-        List<Booking> bookings = bookingService.getUserBookings(user);
-        model.addAttribute("bookings", bookings);
+        KeysetPage<Booking> bookings = bookingService.getUserBookings(user, cursor, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("bookings", bookings.getItems());
+        model.addAttribute("nextCursor", bookings.getNextCursor());
         
         return "bookings/list";
     }
@@ -46,6 +53,8 @@ public class BookingController {
         model.addAttribute("bike", bike);
         model.addAttribute("booking", new Booking());
         model.addAttribute("bookingTypes", Booking.BookingType.values());
+        // Booked hours for the next 90 days, so the form can grey them out without asking again
+        model.addAttribute("availability", bookingService.getAvailabilityCalendar(bikeId));
         
         return "bookings/new";
     }
@@ -58,7 +67,7 @@ public class BookingController {
                                RedirectAttributes redirectAttributes) {
         try {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            User user = (User) authentication.getPrincipal();
+            User user = userService.getReference((UserPrincipal) authentication.getPrincipal());
             
             Bike bike = bikeService.findById(bikeId)
                 .orElseThrow(() -> new RuntimeException("Bike not found"));
@@ -3,6 +3,10 @@ package com.spingo.controller;
 import com.spingo.entity.Booking;
 import com.spingo.entity.User;
 import com.spingo.service.BookingService;
+import com.spingo.service.DashboardStatsService;
+import com.spingo.service.KeysetPage;
+import com.spingo.service.UserPrincipal;
+import com.spingo.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -10,8 +14,9 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
-import java.util.List;
+import java.util.Map;
 
 @Controller
 @RequestMapping("/customer")
@@ -20,28 +25,29 @@ public class CustomerController {
     @Autowired
     private BookingService bookingService;
 
+    @Autowired
+    private DashboardStatsService dashboardStatsService;
+
+    @Autowired
+    private UserService userService;
+
     @GetMapping("/dashboard")
-    public String customerDashboard(Model model) {
+    public String customerDashboard(@RequestParam(required = false) String cursor, Model model) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User customer = (User) authentication.getPrincipal();
+        User customer = userService.getCurrentUser((UserPrincipal) authentication.getPrincipal());
         
-        // Get customer's bookings
-        List<Booking> customerBookings = bookingService.getUserBookings(customer);
+        // Get a page of the customer's bookings
+        KeysetPage<Booking> customerBookings = bookingService.getUserBookings(customer, cursor, KeysetPage.DEFAULT_SIZE);
         
         // Calculate statistics
-        long totalBookings = customerBookings.size();
-        long activeBookings = customerBookings.stream()
-            .filter(booking -> booking.getStatus() == Booking.BookingStatus.ACTIVE)
-            .count();
-        long completedBookings = customerBookings.stream()
-            .filter(booking -> booking.getStatus() == Booking.BookingStatus.COMPLETED)
-            .count();
+        Map<Booking.BookingStatus, Long> bookingCounts = dashboardStatsService.getBookingStatusCountsForUser(customer);
         
         model.addAttribute("customer", customer);
-        model.addAttribute("customerBookings", customerBookings);
-        model.addAttribute("totalBookings", totalBookings);
-        model.addAttribute("activeBookings", activeBookings);
-        model.addAttribute("completedBookings", completedBookings);
+        model.addAttribute("customerBookings", customerBookings.getItems());
+        model.addAttribute("nextCursor", customerBookings.getNextCursor());
+        model.addAttribute("totalBookings", DashboardStatsService.total(bookingCounts));
+        model.addAttribute("activeBookings", bookingCounts.get(Booking.BookingStatus.ACTIVE));
+        model.addAttribute("completedBookings", bookingCounts.get(Booking.BookingStatus.COMPLETED));
         
         return "customer/dashboard";
     }
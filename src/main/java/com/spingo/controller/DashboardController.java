@@ -6,8 +6,13 @@ import com.spingo.entity.Booking;
 import com.spingo.entity.Notification;
 import com.spingo.service.BikeService;
 import com.spingo.service.BookingService;
+import com.spingo.service.DashboardStatsService;
+import com.spingo.service.KeysetPage;
 import com.spingo.service.NotificationService;
+import com.spingo.service.PlatformCounters;
+import com.spingo.service.RankedBike;
 import com.spingo.service.UserService;
+import com.spingo.service.UserPrincipal;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -15,8 +20,10 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
+import java.util.Map;
 
 @Controller
 @RequestMapping("/dashboard")
@@ -34,8 +41,16 @@ public class DashboardController {
     @Autowired
     private NotificationService notificationService;
     
+    @Autowired
+    private DashboardStatsService dashboardStatsService;
+    
+    @Autowired
+    private PlatformCounters platformCounters;
+    
     @GetMapping
-    public String dashboard(Model model) {
+    public String dashboard(@RequestParam(required = false) String cursor,
+                            @RequestParam(required = false) String bikeCursor,
+                            Model model) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         
         if (authentication == null || !authentication.isAuthenticated() || 
@@ -43,7 +58,7 @@ public class DashboardController {
             return "redirect:/login";
         }
         
-        User user = (User) authentication.getPrincipal();
+        User user = userService.getCurrentUser((UserPrincipal) authentication.getPrincipal());
         
         // Get user-specific data
         model.addAttribute("user", user);
@@ -58,96 +73,88 @@ public class DashboardController {
         switch (user.getAccountType()) {
             case INDIVIDUAL_OWNER:
             case BUSINESS_OWNER:
-                return ownerDashboard(user, model);
+                return ownerDashboard(user, cursor, bikeCursor, model);
             case DELIVERY_PARTNER:
-                return deliveryDashboard(user, model);
+                return deliveryDashboard(user, cursor, model);
             case CUSTOMER:
             default:
-                return customerDashboard(user, model);
+                return customerDashboard(user, cursor, model);
         }
     }
     
-    private String ownerDashboard(User user, Model model) {
-        // Get owner's bikes
-        List<Bike> ownedBikes = bikeService.getBikesByOwner(user);
-        model.addAttribute("ownedBikes", ownedBikes);
-        
-        // Get recent bookings for owner's bikes
-        List<Booking> recentBookings = bookingService.getRecentBookingsForOwner(user);
-        model.addAttribute("recentBookings", recentBookings);
+    private String ownerDashboard(User user, String cursor, String bikeCursor, Model model) {
+        // Get a page of the owner's bikes and of the bookings made on them
+        KeysetPage<Bike> ownedBikes = bikeService.getBikesByOwner(user, bikeCursor, KeysetPage.DEFAULT_SIZE);
+        KeysetPage<Booking> recentBookings = bookingService.getOwnerBookings(user, cursor, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("ownedBikes", ownedBikes.getItems());
+        model.addAttribute("nextBikeCursor", ownedBikes.getNextCursor());
+        model.addAttribute("recentBookings", recentBookings.getItems());
+        model.addAttribute("nextCursor", recentBookings.getNextCursor());
         
         // Get statistics
-        long totalBikes = bikeService.getBikeCountByOwner(user);
-        long availableBikes = ownedBikes.stream()
-            .filter(bike -> bike.getStatus() == Bike.BikeStatus.AVAILABLE)
-            .count();
-        long bookedBikes = ownedBikes.stream()
-            .filter(bike -> bike.getStatus() == Bike.BikeStatus.BOOKED)
-            .count();
-        
-        model.addAttribute("totalBikes", totalBikes);
-        model.addAttribute("availableBikes", availableBikes);
-        model.addAttribute("bookedBikes", bookedBikes);
+        Map<Bike.BikeStatus, Long> bikeCounts = dashboardStatsService.getBikeStatusCountsForOwner(user);
+        model.addAttribute("bikeStatusCounts", bikeCounts);
+        model.addAttribute("totalBikes", DashboardStatsService.total(bikeCounts));
+        model.addAttribute("availableBikes", bikeCounts.get(Bike.BikeStatus.AVAILABLE));
+        model.addAttribute("bookedBikes", bikeCounts.get(Bike.BikeStatus.BOOKED));
         
         return "dashboard/owner-dashboard";
     }
     
-    private String deliveryDashboard(User user, Model model) {
-        // Get delivery partner's bookings
-        List<Booking> deliveryBookings = bookingService.getBookingsByUser(user);
-        model.addAttribute("deliveryBookings", deliveryBookings);
+    private String deliveryDashboard(User user, String cursor, Model model) {
+        // Get a page of the delivery partner's bookings
+        KeysetPage<Booking> deliveryBookings = bookingService.getUserBookings(user, cursor, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("deliveryBookings", deliveryBookings.getItems());
+        model.addAttribute("nextCursor", deliveryBookings.getNextCursor());
         
-        // Get available bikes for delivery
-        List<Bike> availableBikes = bikeService.getAvailableBikes();
-        model.addAttribute("availableBikes", availableBikes);
+        // Get the newest bikes available for delivery
+        model.addAttribute("availableBikes",
+            bikeService.getAvailableBikes(null, null, null, null, KeysetPage.DEFAULT_SIZE).getItems());
+        model.addAttribute("availableBikeCount", platformCounters.getAvailableBikes());
         
         // Get statistics
-        long totalDeliveries = deliveryBookings.size();
-        long completedDeliveries = deliveryBookings.stream()
-            .filter(booking -> booking.getStatus() == Booking.BookingStatus.COMPLETED)
-            .count();
-        long activeDeliveries = deliveryBookings.stream()
-            .filter(booking -> booking.getStatus() == Booking.BookingStatus.ACTIVE)
-            .count();
-        
-        model.addAttribute("totalDeliveries", totalDeliveries);
-        model.addAttribute("completedDeliveries", completedDeliveries);
-        model.addAttribute("activeDeliveries", activeDeliveries);
+        Map<Booking.BookingStatus, Long> bookingCounts = dashboardStatsService.getBookingStatusCountsForUser(user);
+        model.addAttribute("bookingStatusCounts", bookingCounts);
+        model.addAttribute("totalDeliveries", DashboardStatsService.total(bookingCounts));
+        model.addAttribute("completedDeliveries", bookingCounts.get(Booking.BookingStatus.COMPLETED));
+        model.addAttribute("activeDeliveries", bookingCounts.get(Booking.BookingStatus.ACTIVE));
         
         return "dashboard/delivery-dashboard";
     }
     
-    private String customerDashboard(User user, Model model) {
-        // Get customer's bookings
-        List<Booking> customerBookings = bookingService.getBookingsByUser(user);
-        model.addAttribute("customerBookings", customerBookings);
-        
-        // Get recommended bikes
-        List<Bike> recommendedBikes = bikeService.getRecommendedBikes();
+    private String customerDashboard(User user, String cursor, Model model) {
+        // Get a page of the customer's bookings
+        KeysetPage<Booking> customerBookings = bookingService.getUserBookings(user, cursor, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("customerBookings", customerBookings.getItems());
+        model.addAttribute("nextCursor", customerBookings.getNextCursor());
+        
+        // Get the first page of recommended and popular bikes, in the customer's city when it has any
+        List<RankedBike> recommendedBikes =
+            bikeService.getRecommendedBikes(user.getCity(), null, KeysetPage.DEFAULT_SIZE).getItems();
+        if (recommendedBikes.isEmpty()) {
+            recommendedBikes = bikeService.getRecommendedBikes(null, null, KeysetPage.DEFAULT_SIZE).getItems();
+        }
+        List<RankedBike> popularBikes = bikeService.getPopularBikes(user.getCity(), null, KeysetPage.DEFAULT_SIZE).getItems();
+        if (popularBikes.isEmpty()) {
+            popularBikes = bikeService.getPopularBikes(null, null, KeysetPage.DEFAULT_SIZE).getItems();
+        }
         model.addAttribute("recommendedBikes", recommendedBikes);
-        
-        // Get popular bikes
-        List<Bike> popularBikes = bikeService.getPopularBikes();
         model.addAttribute("popularBikes", popularBikes);
         
         // Get statistics
-        long totalBookings = customerBookings.size();
-        long completedBookings = customerBookings.stream()
-            .filter(booking -> booking.getStatus() == Booking.BookingStatus.COMPLETED)
-            .count();
-        long activeBookings = customerBookings.stream()
-            .filter(booking -> booking.getStatus() == Booking.BookingStatus.ACTIVE)
-            .count();
-        
-        model.addAttribute("totalBookings", totalBookings);
-        model.addAttribute("completedBookings", completedBookings);
-        model.addAttribute("activeBookings", activeBookings);
+        Map<Booking.BookingStatus, Long> bookingCounts = dashboardStatsService.getBookingStatusCountsForUser(user);
+        model.addAttribute("bookingStatusCounts", bookingCounts);
+        model.addAttribute("totalBookings", DashboardStatsService.total(bookingCounts));
+        model.addAttribute("completedBookings", bookingCounts.get(Booking.BookingStatus.COMPLETED));
+        model.addAttribute("activeBookings", bookingCounts.get(Booking.BookingStatus.ACTIVE));
         
         return "dashboard/customer-dashboard";
     }
     
     @GetMapping("/analytics")
-    public String analytics(Model model) {
+    public String analytics(@RequestParam(required = false) String cursor,
+                            @RequestParam(required = false) String bikeCursor,
+                            Model model) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         
         if (authentication == null || !authentication.isAuthenticated() || 
@@ -155,19 +162,22 @@ public class DashboardController {
             return "redirect:/login";
         }
         
-        User user = (User) authentication.getPrincipal();
+        User user = userService.getCurrentUser((UserPrincipal) authentication.getPrincipal());
         
         if (user.getAccountType() == User.AccountType.CUSTOMER) {
             return "redirect:/dashboard";
         }
         
         // Get analytics data for owners
-        List<Bike> ownedBikes = bikeService.getBikesByOwner(user);
-        List<Booking> allBookings = bookingService.getRecentBookingsForOwner(user);
+        KeysetPage<Bike> ownedBikes = bikeService.getBikesByOwner(user, bikeCursor, KeysetPage.DEFAULT_SIZE);
+        KeysetPage<Booking> allBookings = bookingService.getOwnerBookings(user, cursor, KeysetPage.DEFAULT_SIZE);
         
         model.addAttribute("user", user);
-        model.addAttribute("ownedBikes", ownedBikes);
-        model.addAttribute("allBookings", allBookings);
+        model.addAttribute("ownedBikes", ownedBikes.getItems());
+        model.addAttribute("nextBikeCursor", ownedBikes.getNextCursor());
+        model.addAttribute("allBookings", allBookings.getItems());
+        model.addAttribute("nextCursor", allBookings.getNextCursor());
+        model.addAttribute("bookingStatusCounts", dashboardStatsService.getBookingStatusCountsForOwner(user));
         
         return "dashboard/analytics";
     }
@@ -1,7 +1,6 @@
 package com.spingo.controller;
 
-import com.spingo.service.BikeService;
-import com.spingo.service.UserService;
+import com.spingo.service.PlatformCounters;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -12,16 +11,13 @@ import org.springframework.web.bind.annotation.RequestParam;
 public class HomeController {
 
     @Autowired
-    private BikeService bikeService;
-
-    @Autowired
-    private UserService userService;
+    private PlatformCounters platformCounters;
 
     @GetMapping("/")
     public String home(Model model) {
         // Add statistics for the landing page
-        model.addAttribute("totalUsers", userService.getActiveUserCount());
-        model.addAttribute("totalBikes", bikeService.getAvailableBikeCount());
+        model.addAttribute("totalUsers", platformCounters.getActiveUsers());
+        model.addAttribute("totalBikes", platformCounters.getAvailableBikes());
         model.addAttribute("citiesCovered", 25); // Static for now
         model.addAttribute("happyCustomers", 98); // Static for now
         
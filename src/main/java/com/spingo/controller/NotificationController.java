@@ -2,12 +2,17 @@ package com.spingo.controller;
 
 import com.spingo.entity.Notification;
 import com.spingo.entity.User;
+import com.spingo.service.NotificationPushService;
 import com.spingo.service.NotificationService;
+import com.spingo.service.UserPrincipal;
+import com.spingo.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.util.List;
@@ -19,9 +24,15 @@ public class NotificationController {
     @Autowired
     private NotificationService notificationService;
     
+    @Autowired
+    private NotificationPushService notificationPushService;
+    
+    @Autowired
+    private UserService userService;
+    
     @GetMapping
     public String getNotifications(Model model, Authentication authentication) {
-        User user = (User) authentication.getPrincipal();
+        User user = userService.getReference((UserPrincipal) authentication.getPrincipal());
         List<Notification> notifications = notificationService.getUserNotifications(user);
         Long unreadCount = notificationService.getUnreadNotificationCount(user);
         
@@ -33,7 +44,7 @@ public class NotificationController {
     
     @GetMapping("/unread")
     public String getUnreadNotifications(Model model, Authentication authentication) {
-        User user = (User) authentication.getPrincipal();
+        User user = userService.getReference((UserPrincipal) authentication.getPrincipal());
         List<Notification> notifications = notificationService.getUnreadNotifications(user);
         
         model.addAttribute("notifications", notifications);
@@ -45,7 +56,7 @@ public class NotificationController {
     @ResponseBody
     public String markAsRead(@PathVariable Long notificationId, Authentication authentication) {
         try {
-            User user = (User) authentication.getPrincipal();
+            User user = userService.getReference((UserPrincipal) authentication.getPrincipal());
             Notification notification = notificationService.getUserNotifications(user).stream()
                 .filter(n -> n.getId().equals(notificationId))
                 .findFirst()
@@ -61,7 +72,7 @@ public class NotificationController {
     @PostMapping("/mark-all-read")
     public String markAllAsRead(Authentication authentication, RedirectAttributes redirectAttributes) {
         try {
-            User user = (User) authentication.getPrincipal();
+            User user = userService.getReference((UserPrincipal) authentication.getPrincipal());
             notificationService.markAllAsRead(user);
             
             redirectAttributes.addFlashAttribute("success", "All notifications marked as read!");
@@ -77,7 +88,7 @@ public class NotificationController {
                                    Authentication authentication,
                                    RedirectAttributes redirectAttributes) {
         try {
-            User user = (User) authentication.getPrincipal();
+            User user = userService.getReference((UserPrincipal) authentication.getPrincipal());
             Notification notification = notificationService.getUserNotifications(user).stream()
                 .filter(n -> n.getId().equals(notificationId))
                 .findFirst()
@@ -96,7 +107,17 @@ public class NotificationController {
     @GetMapping("/count")
     @ResponseBody
     public Long getUnreadCount(Authentication authentication) {
-        User user = (User) authentication.getPrincipal();
+        User user = userService.getReference((UserPrincipal) authentication.getPrincipal());
         return notificationService.getUnreadNotificationCount(user);
     }
+    
+    // Server-sent events: the current unread count first, then "notification" and "unread-count" events as they happen
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter stream(Authentication authentication) {
+        User user = userService.getReference((UserPrincipal) authentication.getPrincipal());
+        SseEmitter emitter = notificationPushService.subscribe(user.getId());
+        notificationPushService.pushUnreadCount(user.getId(), notificationService.getUnreadNotificationCount(user));
+        return emitter;
+    }
 }
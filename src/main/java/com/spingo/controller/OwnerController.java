@@ -5,7 +5,10 @@ import com.spingo.entity.Booking;
 import com.spingo.entity.User;
 import com.spingo.service.BikeService;
 import com.spingo.service.BookingService;
+import com.spingo.service.DashboardStatsService;
+import com.spingo.service.KeysetPage;
 import com.spingo.service.UserService;
+import com.spingo.service.UserPrincipal;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -13,8 +16,9 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
-import java.util.List;
+import java.util.Map;
 
 @Controller
 @RequestMapping("/owner")
@@ -29,37 +33,35 @@ public class OwnerController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private DashboardStatsService dashboardStatsService;
+
     @GetMapping("/dashboard")
-    public String ownerDashboard(Model model) {
+    public String ownerDashboard(@RequestParam(required = false) String cursor,
+                                 @RequestParam(required = false) String bikeCursor,
+                                 Model model) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User owner = (User) authentication.getPrincipal();
-        
-        // Get owner's bikes
-        List<Bike> ownedBikes = bikeService.getBikesByOwner(owner);
+        User owner = userService.getCurrentUser((UserPrincipal) authentication.getPrincipal());
         
-        // Get bookings for owner's bikes
-        List<Booking> allBookings = bookingService.getAllBookings();
-        List<Booking> ownerBookings = allBookings.stream()
-            .filter(booking -> ownedBikes.contains(booking.getBike()))
-            .toList();
+        // Get a page of the owner's bikes and of the bookings made on them
+        KeysetPage<Bike> ownedBikes = bikeService.getBikesByOwner(owner, bikeCursor, KeysetPage.DEFAULT_SIZE);
+        KeysetPage<Booking> ownerBookings = bookingService.getOwnerBookings(owner, cursor, KeysetPage.DEFAULT_SIZE);
         
         // Calculate statistics
-        long totalBikes = ownedBikes.size();
-        long availableBikes = ownedBikes.stream()
-            .filter(bike -> bike.getStatus() == Bike.BikeStatus.AVAILABLE)
-            .count();
-        long totalBookings = ownerBookings.size();
-        long activeBookings = ownerBookings.stream()
-            .filter(booking -> booking.getStatus() == Booking.BookingStatus.ACTIVE)
-            .count();
+        Map<Bike.BikeStatus, Long> bikeCounts = dashboardStatsService.getBikeStatusCountsForOwner(owner);
+        Map<Booking.BookingStatus, Long> bookingCounts = dashboardStatsService.getBookingStatusCountsForOwner(owner);
         
         model.addAttribute("owner", owner);
-        model.addAttribute("ownedBikes", ownedBikes);
-        model.addAttribute("ownerBookings", ownerBookings);
-        model.addAttribute("totalBikes", totalBikes);
-        model.addAttribute("availableBikes", availableBikes);
-        model.addAttribute("totalBookings", totalBookings);
-        model.addAttribute("activeBookings", activeBookings);
+        model.addAttribute("ownedBikes", ownedBikes.getItems());
+        model.addAttribute("nextBikeCursor", ownedBikes.getNextCursor());
+        model.addAttribute("ownerBookings", ownerBookings.getItems());
+        model.addAttribute("nextCursor", ownerBookings.getNextCursor());
+        model.addAttribute("bikeStatusCounts", bikeCounts);
+        model.addAttribute("bookingStatusCounts", bookingCounts);
+        model.addAttribute("totalBikes", DashboardStatsService.total(bikeCounts));
+        model.addAttribute("availableBikes", bikeCounts.get(Bike.BikeStatus.AVAILABLE));
+        model.addAttribute("totalBookings", DashboardStatsService.total(bookingCounts));
+        model.addAttribute("activeBookings", bookingCounts.get(Booking.BookingStatus.ACTIVE));
         
         return "owner/dashboard";
     }
@@ -4,6 +4,7 @@ import com.spingo.entity.Booking;
 import com.spingo.entity.Payment;
 import com.spingo.service.BookingService;
 import com.spingo.service.PaymentService;
+import com.spingo.service.UserPrincipal;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -12,7 +13,10 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 
 @Controller
 @RequestMapping("/payments")
@@ -32,8 +36,7 @@ public class PaymentController {
         // Check if user owns this booking
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         Object principal = authentication.getPrincipal();
-        if (principal instanceof com.spingo.entity.User) {
-            com.spingo.entity.User user = (com.spingo.entity.User) principal;
+        if (principal instanceof UserPrincipal user) {
             if (!booking.getUser().getId().equals(user.getId())) {
                 throw new RuntimeException("Access denied");
             }
@@ -46,6 +49,7 @@ public class PaymentController {
         model.addAttribute("booking", booking);
         model.addAttribute("payment", payment);
         model.addAttribute("paymentMethods", Payment.PaymentMethod.values());
+        model.addAttribute("idempotencyKey", UUID.randomUUID().toString());
         
         return "payments/payment";
     }
@@ -54,42 +58,49 @@ public class PaymentController {
     public String processPayment(@RequestParam Long bookingId,
                                 @RequestParam Payment.PaymentMethod paymentMethod,
                                 @RequestParam(required = false) String paymentDetails,
+                                @RequestParam(required = false) String idempotencyKey,
+                                @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKeyHeader,
                                 RedirectAttributes redirectAttributes) {
         try {
             Booking booking = bookingService.findById(bookingId)
                 .orElseThrow(() -> new RuntimeException("Booking not found"));
             
-            // Create or get existing payment
-            Optional<Payment> existingPayment = paymentService.findByBooking(booking);
-            Payment payment;
-            
-            if (existingPayment.isPresent()) {
-                payment = existingPayment.get();
-                payment.setPaymentMethod(paymentMethod);
-            } else {
-                payment = paymentService.createPayment(booking, paymentMethod);
-            }
-            
-            // Process payment
+            // Hand the payment to the asynchronous pipeline; the booking is confirmed once it succeeds.
+            // Repeated submissions with the same key get the first submission's payment back.
             String paymentGatewayResponse = generatePaymentGatewayResponse(paymentMethod, paymentDetails);
-            Payment processedPayment = paymentService.processPayment(payment.getTransactionId(), paymentGatewayResponse);
+            Payment submittedPayment = paymentService.checkout(booking, paymentMethod, paymentGatewayResponse,
+                idempotencyKeyHeader != null ? idempotencyKeyHeader : idempotencyKey);
             
-            if (processedPayment.getStatus() == Payment.PaymentStatus.SUCCESS) {
-                // Confirm booking
-                bookingService.confirmBooking(bookingId);
+            if (submittedPayment.getStatus() == Payment.PaymentStatus.SUCCESS) {
                 redirectAttributes.addFlashAttribute("success", "Payment successful! Your booking has been confirmed.");
                 return "redirect:/bookings/" + bookingId;
-            } else {
-                redirectAttributes.addFlashAttribute("error", "Payment failed. Please try again.");
-                return "redirect:/payments/" + bookingId;
             }
             
+            redirectAttributes.addFlashAttribute("success", "Your payment is being processed.");
+            redirectAttributes.addFlashAttribute("transactionId", submittedPayment.getTransactionId());
+            return "redirect:/payments/" + bookingId;
+            
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("error", "Payment processing failed: " + e.getMessage());
             return "redirect:/payments/" + bookingId;
         }
     }
 
+    @GetMapping("/status/{transactionId}")
+    @ResponseBody
+    public Map<String, Object> paymentStatus(@PathVariable String transactionId) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (!(authentication.getPrincipal() instanceof UserPrincipal user)) {
+            throw new RuntimeException("Access denied");
+        }
+        
+        Map<String, Object> status = new HashMap<>();
+        status.put("transactionId", transactionId);
+        status.put("status", paymentService.getPaymentStatus(transactionId, user.getId()));
+        status.put("processing", paymentService.isInFlight(transactionId));
+        return status;
+    }
+
     @PostMapping("/refund/{paymentId}")
     public String refundPayment(@PathVariable Long paymentId,
                                @RequestParam String reason,
@@ -4,9 +4,12 @@ import com.spingo.entity.Review;
 import com.spingo.entity.Bike;
 import com.spingo.entity.User;
 import com.spingo.entity.Booking;
+import com.spingo.service.RatingSummary;
 import com.spingo.service.ReviewService;
 import com.spingo.service.BikeService;
 import com.spingo.service.BookingService;
+import com.spingo.service.UserPrincipal;
+import com.spingo.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
@@ -29,26 +32,29 @@ public class ReviewController {
     @Autowired
     private BookingService bookingService;
     
+    @Autowired
+    private UserService userService;
+    
     @GetMapping("/bike/{bikeId}")
     public String getBikeReviews(@PathVariable Long bikeId, Model model) {
         Bike bike = bikeService.getBikeById(bikeId)
             .orElseThrow(() -> new RuntimeException("Bike not found"));
         
         List<Review> reviews = reviewService.getReviewsByBike(bike);
-        Double averageRating = reviewService.getAverageRating(bike);
-        Long reviewCount = reviewService.getReviewCount(bike);
+        RatingSummary ratingSummary = reviewService.getRatingSummary(bike);
         
         model.addAttribute("bike", bike);
         model.addAttribute("reviews", reviews);
-        model.addAttribute("averageRating", averageRating);
-        model.addAttribute("reviewCount", reviewCount);
+        model.addAttribute("ratingSummary", ratingSummary);
+        model.addAttribute("averageRating", ratingSummary.getAverageRating());
+        model.addAttribute("reviewCount", ratingSummary.getTotalReviews());
         
         return "reviews/bike-reviews";
     }
     
     @GetMapping("/create/{bookingId}")
     public String createReviewForm(@PathVariable Long bookingId, Model model, Authentication authentication) {
-        User user = (User) authentication.getPrincipal();
+        User user = userService.getReference((UserPrincipal) authentication.getPrincipal());
         Booking booking = bookingService.getBookingById(bookingId)
             .orElseThrow(() -> new RuntimeException("Booking not found"));
         
@@ -69,7 +75,7 @@ public class ReviewController {
                              Authentication authentication,
                              RedirectAttributes redirectAttributes) {
         try {
-            User user = (User) authentication.getPrincipal();
+            User user = userService.getReference((UserPrincipal) authentication.getPrincipal());
             Booking booking = bookingService.getBookingById(bookingId)
                 .orElseThrow(() -> new RuntimeException("Booking not found"));
             
@@ -85,7 +91,7 @@ public class ReviewController {
     
     @GetMapping("/my-reviews")
     public String getMyReviews(Model model, Authentication authentication) {
-        User user = (User) authentication.getPrincipal();
+        User user = userService.getReference((UserPrincipal) authentication.getPrincipal());
         List<Review> reviews = reviewService.getReviewsByUser(user);
         
         model.addAttribute("reviews", reviews);
@@ -98,7 +104,7 @@ public class ReviewController {
                              Authentication authentication,
                              RedirectAttributes redirectAttributes) {
         try {
-            User user = (User) authentication.getPrincipal();
+            User user = userService.getReference((UserPrincipal) authentication.getPrincipal());
             Review review = reviewService.getReviewsByUser(user).stream()
                 .filter(r -> r.getId().equals(reviewId))
                 .findFirst()
@@ -3,13 +3,19 @@ package com.spingo.controller;
 import com.spingo.entity.Bike;
 import com.spingo.entity.Location;
 import com.spingo.service.BikeService;
+import com.spingo.service.KeysetPage;
 import com.spingo.service.LocationService;
+import com.spingo.service.RankedBike;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Controller
@@ -29,8 +35,11 @@ public class SearchController {
         return "search/advanced-search";
     }
     
-    @PostMapping("/bikes")
-    public String searchBikes(@RequestParam(required = false) String city,
+    @RequestMapping(value = "/bikes", method = {RequestMethod.GET, RequestMethod.POST})
+    public String searchBikes(@RequestParam(required = false) String q,
+                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+                            @RequestParam(required = false) String city,
                             @RequestParam(required = false) String bikeType,
                             @RequestParam(required = false) String fuelType,
                             @RequestParam(required = false) BigDecimal minPrice,
@@ -41,14 +50,26 @@ public class SearchController {
                             @RequestParam(required = false) Boolean hasNavigation,
                             @RequestParam(required = false) Boolean isInsured,
                             @RequestParam(required = false) Double minRating,
+                            @RequestParam(required = false) String cursor,
+                            HttpServletRequest request,
                             Model model) {
         
-        List<Bike> bikes = bikeService.searchBikes(city, bikeType, fuelType, minPrice, maxPrice, 
-                                                 minYear, maxYear, hasHelmet, hasNavigation, 
-                                                 isInsured, minRating);
+        KeysetPage<Bike> bikes;
+        try {
+            bikes = bikeService.searchBikes(q, start, end, city, bikeType, fuelType, minPrice, maxPrice, 
+                                            minYear, maxYear, hasHelmet, hasNavigation, 
+                                            isInsured, minRating, cursor, KeysetPage.DEFAULT_SIZE);
+        } catch (RuntimeException e) {
+            // An incomplete or reversed rental window, or an unknown type: report it instead of a 500
+            model.addAttribute("error", e.getMessage());
+            bikes = new KeysetPage<>(List.of(), null);
+        }
         
-        model.addAttribute("bikes", bikes);
-        model.addAttribute("searchParams", new SearchParams(city, bikeType, fuelType, minPrice, 
+        model.addAttribute("bikes", bikes.getItems());
+        model.addAttribute("nextPageUrl", bikes.hasNext() ? nextPageUrl(request, bikes.getNextCursor()) : null);
+        model.addAttribute("start", start);
+        model.addAttribute("end", end);
+        model.addAttribute("searchParams", new SearchParams(q, city, bikeType, fuelType, minPrice, 
                                                            maxPrice, minYear, maxYear, hasHelmet, 
                                                            hasNavigation, isInsured, minRating));
         
@@ -72,21 +93,41 @@ public class SearchController {
     }
     
     @GetMapping("/popular")
-    public String getPopularBikes(Model model) {
-        List<Bike> popularBikes = bikeService.getPopularBikes();
-        model.addAttribute("bikes", popularBikes);
+    public String getPopularBikes(@RequestParam(required = false) String city,
+                                  @RequestParam(required = false) String cursor,
+                                  Model model) {
+        KeysetPage<RankedBike> popularBikes = bikeService.getPopularBikes(city, cursor, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("bikes", popularBikes.getItems());
+        model.addAttribute("city", city);
+        model.addAttribute("nextCursor", popularBikes.getNextCursor());
         return "search/popular-bikes";
     }
     
     @GetMapping("/recommended")
-    public String getRecommendedBikes(Model model) {
-        List<Bike> recommendedBikes = bikeService.getRecommendedBikes();
-        model.addAttribute("bikes", recommendedBikes);
+    public String getRecommendedBikes(@RequestParam(required = false) String city,
+                                      @RequestParam(required = false) String cursor,
+                                      Model model) {
+        KeysetPage<RankedBike> recommendedBikes = bikeService.getRecommendedBikes(city, cursor, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("bikes", recommendedBikes.getItems());
+        model.addAttribute("city", city);
+        model.addAttribute("nextCursor", recommendedBikes.getNextCursor());
         return "search/recommended-bikes";
     }
     
+    // Same search (GET or POST parameters) as a GET link, moved on to the next cursor
+    private String nextPageUrl(HttpServletRequest request, String nextCursor) {
+        UriComponentsBuilder url = UriComponentsBuilder.fromPath(request.getRequestURI());
+        request.getParameterMap().forEach((name, values) -> {
+            if (!name.equals("cursor") && !name.equals("_csrf")) {
+                url.queryParam(name, (Object[]) values);
+            }
+        });
+        return url.queryParam("cursor", nextCursor).encode().toUriString();
+    }
+    
     // Helper class for search parameters
     public static class SearchParams {
+        private String q;
         private String city;
         private String bikeType;
         private String fuelType;
@@ -99,9 +140,10 @@ public class SearchController {
         private Boolean isInsured;
         private Double minRating;
         
-        public SearchParams(String city, String bikeType, String fuelType, BigDecimal minPrice,
+        public SearchParams(String q, String city, String bikeType, String fuelType, BigDecimal minPrice,
                           BigDecimal maxPrice, Integer minYear, Integer maxYear, Boolean hasHelmet,
                           Boolean hasNavigation, Boolean isInsured, Double minRating) {
+            this.q = q;
             this.city = city;
             this.bikeType = bikeType;
             this.fuelType = fuelType;
@@ -116,6 +158,7 @@ public class SearchController {
         }
         
         // Getters
+        public String getQ() { return q; }
         public String getCity() { return city; }
         public String getBikeType() { return bikeType; }
         public String getFuelType() { return fuelType; }
@@ -4,12 +4,18 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import org.hibernate.annotations.DynamicUpdate;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "bikes")
+@Table(name = "bikes", indexes = {
+    @Index(name = "idx_bikes_created_at", columnList = "created_at"),
+    @Index(name = "idx_bikes_status_created", columnList = "status, created_at, id"),
+    @Index(name = "idx_bikes_owner_created", columnList = "owner_id, created_at, id")
+})
+@DynamicUpdate
 public class Bike {
     
     @Id
@@ -61,9 +67,17 @@ public class Bike {
     @Enumerated(EnumType.STRING)
     private BikeStatus status = BikeStatus.AVAILABLE;
     
+    // Status as last read from or written to the database, so a status change can report what it replaced
+    @Transient
+    private BikeStatus persistedStatus;
+    
     @NotBlank(message = "Location is required")
     private String location;
     
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "pickup_location_id")
+    private Location pickupLocation;
+    
     private String description;
     private String imageUrl;
     private Boolean hasHelmet = false;
@@ -75,6 +89,14 @@ public class Bike {
     private Double averageRating = 0.0;
     private Integer totalReviews = 0;
     
+    // Running rating aggregates, maintained by BikeRepository.applyRatingDelta
+    private Long ratingSum = 0L;
+    private Integer oneStarReviews = 0;
+    private Integer twoStarReviews = 0;
+    private Integer threeStarReviews = 0;
+    private Integer fourStarReviews = 0;
+    private Integer fiveStarReviews = 0;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id", nullable = false)
     private User owner;
@@ -151,9 +173,19 @@ public class Bike {
     public BikeStatus getStatus() { return status; }
     public void setStatus(BikeStatus status) { this.status = status; }
     
+    public BikeStatus getPersistedStatus() { return persistedStatus; }
+    
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    void rememberPersistedStatus() { this.persistedStatus = status; }
+    
     public String getLocation() { return location; }
     public void setLocation(String location) { this.location = location; }
     
+    public Location getPickupLocation() { return pickupLocation; }
+    public void setPickupLocation(Location pickupLocation) { this.pickupLocation = pickupLocation; }
+    
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
     
@@ -193,6 +225,24 @@ public class Bike {
     public Integer getTotalReviews() { return totalReviews; }
     public void setTotalReviews(Integer totalReviews) { this.totalReviews = totalReviews; }
     
+    public Long getRatingSum() { return ratingSum; }
+    public void setRatingSum(Long ratingSum) { this.ratingSum = ratingSum; }
+    
+    public Integer getOneStarReviews() { return oneStarReviews; }
+    public void setOneStarReviews(Integer oneStarReviews) { this.oneStarReviews = oneStarReviews; }
+    
+    public Integer getTwoStarReviews() { return twoStarReviews; }
+    public void setTwoStarReviews(Integer twoStarReviews) { this.twoStarReviews = twoStarReviews; }
+    
+    public Integer getThreeStarReviews() { return threeStarReviews; }
+    public void setThreeStarReviews(Integer threeStarReviews) { this.threeStarReviews = threeStarReviews; }
+    
+    public Integer getFourStarReviews() { return fourStarReviews; }
+    public void setFourStarReviews(Integer fourStarReviews) { this.fourStarReviews = fourStarReviews; }
+    
+    public Integer getFiveStarReviews() { return fiveStarReviews; }
+    public void setFiveStarReviews(Integer fiveStarReviews) { this.fiveStarReviews = fiveStarReviews; }
+    
     // Enums
     public enum BikeType {
         SCOOTER, MOTORCYCLE, ELECTRIC_BIKE, SPORTS_BIKE, CRUISER
@@ -0,0 +1,46 @@
+package com.spingo.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Persisted hourly booking bitmap of one bike, so the calendar survives a restart without a booking scan
+@Entity
+@Table(name = "bike_availability")
+public class BikeAvailability {
+    
+    @Id
+    private Long bikeId;
+    
+    // Day the first bit stands for; bit i is hour i counted from its midnight
+    @Column(nullable = false)
+    private LocalDate firstDay;
+    
+    @Column(nullable = false, length = 272)
+    private byte[] bookedHours;
+    
+    private LocalDateTime updatedAt = LocalDateTime.now();
+    
+    // Constructors
+    public BikeAvailability() {}
+    
+    public BikeAvailability(Long bikeId, LocalDate firstDay, byte[] bookedHours) {
+        this.bikeId = bikeId;
+        this.firstDay = firstDay;
+        this.bookedHours = bookedHours;
+    }
+    
+    // Getters and Setters
+    public Long getBikeId() { return bikeId; }
+    public void setBikeId(Long bikeId) { this.bikeId = bikeId; }
+    
+    public LocalDate getFirstDay() { return firstDay; }
+    public void setFirstDay(LocalDate firstDay) { this.firstDay = firstDay; }
+    
+    public byte[] getBookedHours() { return bookedHours; }
+    public void setBookedHours(byte[] bookedHours) { this.bookedHours = bookedHours; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
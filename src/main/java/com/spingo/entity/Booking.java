@@ -7,7 +7,13 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "bookings")
+@Table(name = "bookings", indexes = {
+    @Index(name = "idx_bookings_bike_start", columnList = "bike_id, start_time"),
+    @Index(name = "idx_bookings_created_at", columnList = "created_at"),
+    @Index(name = "idx_bookings_user_created", columnList = "user_id, created_at, id"),
+    @Index(name = "idx_bookings_status_start", columnList = "status, start_time"),
+    @Index(name = "idx_bookings_status_end", columnList = "status, end_time")
+})
 public class Booking {
     
     @Id
@@ -53,6 +59,9 @@ public class Booking {
     @OneToOne(mappedBy = "booking", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private Payment payment;
     
+    // Set in the transaction that queues the ride reminder, so each booking is reminded once
+    private LocalDateTime reminderSentAt;
+    
     private LocalDateTime createdAt = LocalDateTime.now();
     private LocalDateTime updatedAt = LocalDateTime.now();
     
@@ -128,6 +137,9 @@ public class Booking {
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
     
+    public LocalDateTime getReminderSentAt() { return reminderSentAt; }
+    public void setReminderSentAt(LocalDateTime reminderSentAt) { this.reminderSentAt = reminderSentAt; }
+    
     // Enums
     public enum BookingType {
         HOURLY, DAILY, MONTHLY, SUBSCRIPTION
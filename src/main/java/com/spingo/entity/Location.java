@@ -53,7 +53,8 @@ public class Location {
     private LocalDateTime createdAt = LocalDateTime.now();
     private LocalDateTime updatedAt = LocalDateTime.now();
     
-    @OneToMany(mappedBy = "location", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    // Read-only inverse side: bikes are saved and deleted through BikeService, which keeps the indexes current
+    @OneToMany(mappedBy = "pickupLocation", fetch = FetchType.LAZY)
     private List<Bike> bikes;
     
     // Constructors
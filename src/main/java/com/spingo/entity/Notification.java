@@ -1,13 +1,14 @@
 package com.spingo.entity;
 
 import jakarta.persistence.*;
-import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "notifications")
+@Table(name = "notifications", indexes = {
+    @Index(name = "idx_notifications_created_at", columnList = "created_at")
+})
 public class Notification {
     
     @Id
@@ -18,13 +19,17 @@ public class Notification {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
     
-    @NotBlank(message = "Title is required")
+    // Free-form notifications store their text; templated ones leave it null and store template id and params
     private String title;
     
-    @NotBlank(message = "Message is required")
     @Column(columnDefinition = "TEXT")
     private String message;
     
+    @Column(name = "template_id")
+    private Short templateId;
+    
+    private String params;
+    
     @Enumerated(EnumType.STRING)
     @NotNull(message = "Type is required")
     private NotificationType type;
@@ -45,6 +50,13 @@ public class Notification {
         this.type = type;
     }
     
+    public Notification(User user, NotificationTemplate template, String params) {
+        this.user = user;
+        this.templateId = template.getId();
+        this.params = params;
+        this.type = template.getType();
+    }
+    
     // Getters and Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -52,12 +64,20 @@ public class Notification {
     public User getUser() { return user; }
     public void setUser(User user) { this.user = user; }
     
-    public String getTitle() { return title; }
+    public String getTitle() { return templateId != null ? getTemplate().getTitle() : title; }
     public void setTitle(String title) { this.title = title; }
     
-    public String getMessage() { return message; }
+    public String getMessage() { return templateId != null ? getTemplate().render(params) : message; }
     public void setMessage(String message) { this.message = message; }
     
+    public Short getTemplateId() { return templateId; }
+    public void setTemplateId(Short templateId) { this.templateId = templateId; }
+    
+    public NotificationTemplate getTemplate() { return templateId != null ? NotificationTemplate.fromId(templateId) : null; }
+    
+    public String getParams() { return params; }
+    public void setParams(String params) { this.params = params; }
+    
     public NotificationType getType() { return type; }
     public void setType(NotificationType type) { this.type = type; }
     
@@ -0,0 +1,109 @@
+package com.spingo.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Texts of the notifications the application sends itself. Templated rows
+ * store only the template id and the parameters, joined by a unit separator,
+ * and are rendered when read. Messages are compiled once into literal and
+ * parameter parts, so rendering is a single StringBuilder pass.
+ */
+public enum NotificationTemplate {
+
+    BOOKING_CONFIRMED(1, Notification.NotificationType.BOOKING_CONFIRMED,
+        "Booking Confirmed", "Your booking for {0} has been confirmed."),
+    PAYMENT_SUCCESS(2, Notification.NotificationType.PAYMENT_SUCCESS,
+        "Payment Successful", "Payment of ₹{0} has been processed successfully."),
+    RIDE_REMINDER(3, Notification.NotificationType.RIDE_REMINDER,
+        "Ride Reminder", "Your ride with {0} starts at {1}"),
+    REVIEW_REQUEST(4, Notification.NotificationType.REVIEW_REQUEST,
+        "Review Request", "How was your experience with {0}? Please leave a review.");
+
+    private static final String SEPARATOR = "\u001F";
+
+    private final short id;
+    private final Notification.NotificationType type;
+    private final String title;
+    // Literal text and parameter indexes in message order; literals are Strings, indexes Integers
+    private final Object[] parts;
+    private final Pattern renderedMessage;
+
+    NotificationTemplate(int id, Notification.NotificationType type, String title, String message) {
+        this.id = (short) id;
+        this.type = type;
+        this.title = title;
+
+        List<Object> compiled = new ArrayList<>();
+        StringBuilder regex = new StringBuilder("^");
+        // Enum constructors cannot read static fields, so the placeholder pattern is compiled here
+        Matcher matcher = Pattern.compile("\\{(\\d+)}").matcher(message);
+        int last = 0;
+        while (matcher.find()) {
+            String literal = message.substring(last, matcher.start());
+            compiled.add(literal);
+            compiled.add(Integer.parseInt(matcher.group(1)));
+            regex.append(Pattern.quote(literal)).append("(.*?)");
+            last = matcher.end();
+        }
+        compiled.add(message.substring(last));
+        regex.append(Pattern.quote(message.substring(last))).append('$');
+        this.parts = compiled.toArray();
+        this.renderedMessage = Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    public short getId() { return id; }
+    public Notification.NotificationType getType() { return type; }
+    public String getTitle() { return title; }
+
+    public String render(String params) {
+        String[] values = decodeParams(params);
+        StringBuilder message = new StringBuilder();
+        for (Object part : parts) {
+            if (part instanceof Integer index) {
+                message.append(index < values.length ? values[index] : "");
+            } else {
+                message.append((String) part);
+            }
+        }
+        return message.toString();
+    }
+
+    // The encoded parameters of an already rendered message, or null if it was not rendered from this template
+    public String extractParams(String title, String message) {
+        if (!this.title.equals(title) || message == null) {
+            return null;
+        }
+        Matcher matcher = renderedMessage.matcher(message);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String[] values = new String[matcher.groupCount()];
+        int group = 1;
+        for (Object part : parts) {
+            if (part instanceof Integer index) {
+                values[index] = matcher.group(group++);
+            }
+        }
+        return encodeParams(values);
+    }
+
+    public static NotificationTemplate fromId(short id) {
+        for (NotificationTemplate template : values()) {
+            if (template.id == id) {
+                return template;
+            }
+        }
+        throw new RuntimeException("Unknown notification template: " + id);
+    }
+
+    public static String encodeParams(String... params) {
+        return String.join(SEPARATOR, params);
+    }
+
+    private static String[] decodeParams(String params) {
+        return params == null ? new String[0] : params.split(SEPARATOR, -1);
+    }
+}
@@ -0,0 +1,81 @@
+package com.spingo.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// A notification written in the same transaction as the action that caused it, waiting to be relayed
+@Entity
+@Table(name = "notification_outbox")
+public class OutboxNotification {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private Long userId;
+    
+    // Either title and message, or template id and params, as in Notification
+    private String title;
+    
+    @Column(columnDefinition = "TEXT")
+    private String message;
+    
+    @Column(name = "template_id")
+    private Short templateId;
+    
+    private String params;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Notification.NotificationType type;
+    
+    private LocalDateTime createdAt = LocalDateTime.now();
+    
+    // Constructors
+    public OutboxNotification() {}
+    
+    public OutboxNotification(Long userId, String title, String message, Notification.NotificationType type) {
+        this.userId = userId;
+        this.title = title;
+        this.message = message;
+        this.type = type;
+    }
+    
+    public OutboxNotification(Long userId, NotificationTemplate template, String params) {
+        this.userId = userId;
+        this.templateId = template.getId();
+        this.params = params;
+        this.type = template.getType();
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+    
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+    
+    public Short getTemplateId() { return templateId; }
+    public void setTemplateId(Short templateId) { this.templateId = templateId; }
+    
+    public String getParams() { return params; }
+    public void setParams(String params) { this.params = params; }
+    
+    // Rendered text, for pushing to open notification streams
+    public String renderTitle() { return templateId != null ? NotificationTemplate.fromId(templateId).getTitle() : title; }
+    public String renderMessage() { return templateId != null ? NotificationTemplate.fromId(templateId).render(params) : message; }
+    
+    public Notification.NotificationType getType() { return type; }
+    public void setType(Notification.NotificationType type) { this.type = type; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
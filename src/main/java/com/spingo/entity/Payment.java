@@ -7,7 +7,10 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "payments")
+// An idempotency key only has to be unique within its booking, the scope PaymentService claims it in
+@Table(name = "payments", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_payments_booking_idempotency_key", columnNames = {"booking_id", "idempotency_key"})
+})
 public class Payment {
     
     @Id
@@ -15,7 +18,7 @@ public class Payment {
     private Long id;
     
     @OneToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "booking_id", nullable = false)
+    @JoinColumn(name = "booking_id", nullable = false, unique = true)
     private Booking booking;
     
     @NotNull(message = "Amount is required")
@@ -29,7 +32,12 @@ public class Payment {
     @Enumerated(EnumType.STRING)
     private PaymentStatus status = PaymentStatus.PENDING;
     
+    @Column(unique = true)
     private String transactionId;
+    
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
+    
     private String paymentGatewayResponse;
     private String failureReason;
     
@@ -65,6 +73,9 @@ public class Payment {
     public String getTransactionId() { return transactionId; }
     public void setTransactionId(String transactionId) { this.transactionId = transactionId; }
     
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+    
     public String getPaymentGatewayResponse() { return paymentGatewayResponse; }
     public void setPaymentGatewayResponse(String paymentGatewayResponse) { this.paymentGatewayResponse = paymentGatewayResponse; }
     
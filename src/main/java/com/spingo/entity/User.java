@@ -14,7 +14,9 @@ import java.util.Collections;
 import java.util.List;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+    @Index(name = "idx_users_created_at", columnList = "created_at")
+})
 public class User implements UserDetails {
     
     @Id
@@ -65,6 +67,10 @@ public class User implements UserDetails {
     @Enumerated(EnumType.STRING)
     private UserStatus status = UserStatus.ACTIVE;
     
+    // Status as last read from or written to the database, so a status change can report what it replaced
+    @Transient
+    private UserStatus persistedStatus;
+    
     private LocalDateTime createdAt = LocalDateTime.now();
     private LocalDateTime updatedAt = LocalDateTime.now();
     
@@ -156,6 +162,13 @@ public class User implements UserDetails {
     public UserStatus getStatus() { return status; }
     public void setStatus(UserStatus status) { this.status = status; }
     
+    public UserStatus getPersistedStatus() { return persistedStatus; }
+    
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    void rememberPersistedStatus() { this.persistedStatus = status; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
@@ -0,0 +1,19 @@
+package com.spingo.event;
+
+// Published when a review is added, edited or removed and the bike's rating aggregates change
+public class BikeRatingChangedEvent {
+
+    private final Long bikeId;
+    private final double averageRating;
+    private final int totalReviews;
+
+    public BikeRatingChangedEvent(Long bikeId, double averageRating, int totalReviews) {
+        this.bikeId = bikeId;
+        this.averageRating = averageRating;
+        this.totalReviews = totalReviews;
+    }
+
+    public Long getBikeId() { return bikeId; }
+    public double getAverageRating() { return averageRating; }
+    public int getTotalReviews() { return totalReviews; }
+}
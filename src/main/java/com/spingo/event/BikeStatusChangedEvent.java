@@ -0,0 +1,22 @@
+package com.spingo.event;
+
+import com.spingo.entity.Bike;
+
+// Published when a bike is added, updated or deleted; status is null after a delete,
+// previousStatus null for a new bike
+public class BikeStatusChangedEvent {
+
+    private final Long bikeId;
+    private final Bike.BikeStatus previousStatus;
+    private final Bike.BikeStatus status;
+
+    public BikeStatusChangedEvent(Long bikeId, Bike.BikeStatus previousStatus, Bike.BikeStatus status) {
+        this.bikeId = bikeId;
+        this.previousStatus = previousStatus;
+        this.status = status;
+    }
+
+    public Long getBikeId() { return bikeId; }
+    public Bike.BikeStatus getPreviousStatus() { return previousStatus; }
+    public Bike.BikeStatus getStatus() { return status; }
+}
@@ -0,0 +1,13 @@
+package com.spingo.event;
+
+// Published when an active booking is completed
+public class BookingCompletedEvent {
+
+    private final Long bookingId;
+
+    public BookingCompletedEvent(Long bookingId) {
+        this.bookingId = bookingId;
+    }
+
+    public Long getBookingId() { return bookingId; }
+}
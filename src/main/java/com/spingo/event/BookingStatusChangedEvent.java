@@ -0,0 +1,27 @@
+package com.spingo.event;
+
+import com.spingo.entity.Booking;
+
+import java.time.LocalDateTime;
+
+// Published whenever a booking is created or moves to another status, with the window it now holds
+public class BookingStatusChangedEvent {
+
+    private final Long bookingId;
+    private final Booking.BookingStatus status;
+    private final LocalDateTime startTime;
+    private final LocalDateTime endTime;
+
+    public BookingStatusChangedEvent(Long bookingId, Booking.BookingStatus status,
+                                     LocalDateTime startTime, LocalDateTime endTime) {
+        this.bookingId = bookingId;
+        this.status = status;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    public Long getBookingId() { return bookingId; }
+    public Booking.BookingStatus getStatus() { return status; }
+    public LocalDateTime getStartTime() { return startTime; }
+    public LocalDateTime getEndTime() { return endTime; }
+}
@@ -0,0 +1,16 @@
+package com.spingo.event;
+
+// Published when a notification is stored directly; payload is what the user's stream receives
+public class NotificationCreatedEvent {
+
+    private final Long userId;
+    private final Object payload;
+
+    public NotificationCreatedEvent(Long userId, Object payload) {
+        this.userId = userId;
+        this.payload = payload;
+    }
+
+    public Long getUserId() { return userId; }
+    public Object getPayload() { return payload; }
+}
@@ -0,0 +1,18 @@
+package com.spingo.event;
+
+import java.math.BigDecimal;
+
+// Published when a payment succeeds (positive revenue change) or is refunded (negative)
+public class PaymentSettledEvent {
+
+    private final Long paymentId;
+    private final BigDecimal revenueChange;
+
+    public PaymentSettledEvent(Long paymentId, BigDecimal revenueChange) {
+        this.paymentId = paymentId;
+        this.revenueChange = revenueChange;
+    }
+
+    public Long getPaymentId() { return paymentId; }
+    public BigDecimal getRevenueChange() { return revenueChange; }
+}
@@ -0,0 +1,27 @@
+package com.spingo.event;
+
+// Published when a user's unread notifications change; cleared means none are left unread
+public class UnreadCountChangedEvent {
+
+    private final Long userId;
+    private final long delta;
+    private final boolean cleared;
+
+    public UnreadCountChangedEvent(Long userId, long delta, boolean cleared) {
+        this.userId = userId;
+        this.delta = delta;
+        this.cleared = cleared;
+    }
+
+    public static UnreadCountChangedEvent adjusted(Long userId, long delta) {
+        return new UnreadCountChangedEvent(userId, delta, false);
+    }
+
+    public static UnreadCountChangedEvent cleared(Long userId) {
+        return new UnreadCountChangedEvent(userId, 0, true);
+    }
+
+    public Long getUserId() { return userId; }
+    public long getDelta() { return delta; }
+    public boolean isCleared() { return cleared; }
+}
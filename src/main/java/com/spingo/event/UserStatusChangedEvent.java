@@ -0,0 +1,22 @@
+package com.spingo.event;
+
+import com.spingo.entity.User;
+
+// Published when a user is registered, updated or deleted; status is null after a delete,
+// previousStatus null for a new user
+public class UserStatusChangedEvent {
+
+    private final Long userId;
+    private final User.UserStatus previousStatus;
+    private final User.UserStatus status;
+
+    public UserStatusChangedEvent(Long userId, User.UserStatus previousStatus, User.UserStatus status) {
+        this.userId = userId;
+        this.previousStatus = previousStatus;
+        this.status = status;
+    }
+
+    public Long getUserId() { return userId; }
+    public User.UserStatus getPreviousStatus() { return previousStatus; }
+    public User.UserStatus getStatus() { return status; }
+}
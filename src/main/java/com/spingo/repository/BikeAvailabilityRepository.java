@@ -0,0 +1,9 @@
+package com.spingo.repository;
+
+import com.spingo.entity.BikeAvailability;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BikeAvailabilityRepository extends JpaRepository<BikeAvailability, Long> {
+}
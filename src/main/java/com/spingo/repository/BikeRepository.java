@@ -2,13 +2,19 @@ package com.spingo.repository;
 
 import com.spingo.entity.Bike;
 import com.spingo.entity.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface BikeRepository extends JpaRepository<Bike, Long> {
@@ -19,76 +25,80 @@ public interface BikeRepository extends JpaRepository<Bike, Long> {
     List<Bike> findByFuelType(Bike.FuelType fuelType);
     List<Bike> findByLocation(String location);
     
+    // SELECT ... FOR UPDATE on the bike row; serialises reservations of one bike across nodes
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Bike b WHERE b.id = :id")
+    Optional<Bike> findByIdForUpdate(@Param("id") Long id);
+    
     @Query("SELECT b FROM Bike b WHERE b.status = 'AVAILABLE'")
     List<Bike> findAvailableBikes();
     
-    @Query("SELECT b FROM Bike b WHERE b.status = 'AVAILABLE' AND b.location = :location")
-    List<Bike> findAvailableBikesByLocation(@Param("location") String location);
-    
-    @Query("SELECT b FROM Bike b WHERE b.status = 'AVAILABLE' AND b.dailyRate <= :maxRate")
-    List<Bike> findAvailableBikesByMaxRate(@Param("maxRate") BigDecimal maxRate);
-    
-    @Query("SELECT b FROM Bike b WHERE b.status = 'AVAILABLE' AND b.type = :type AND b.location = :location")
-    List<Bike> findAvailableBikesByTypeAndLocation(@Param("type") Bike.BikeType type, @Param("location") String location);
-    
     @Query("SELECT COUNT(b) FROM Bike b WHERE b.status = 'AVAILABLE'")
     long countAvailableBikes();
     
     @Query("SELECT COUNT(b) FROM Bike b WHERE b.owner = :owner")
     long countBikesByOwner(@Param("owner") User owner);
     
-    // Advanced search queries
-    @Query("SELECT b FROM Bike b WHERE b.status = 'AVAILABLE' " +
-           "AND (:city IS NULL OR b.location LIKE %:city%) " +
-           "AND (:bikeType IS NULL OR b.type = :bikeType) " +
-           "AND (:fuelType IS NULL OR b.fuelType = :fuelType) " +
-           "AND (:minPrice IS NULL OR b.dailyRate >= :minPrice) " +
-           "AND (:maxPrice IS NULL OR b.dailyRate <= :maxPrice) " +
-           "AND (:minYear IS NULL OR b.year >= :minYear) " +
-           "AND (:maxYear IS NULL OR b.year <= :maxYear) " +
-           "AND (:hasHelmet IS NULL OR b.hasHelmet = :hasHelmet) " +
-           "AND (:hasNavigation IS NULL OR b.hasNavigation = :hasNavigation) " +
-           "AND (:isInsured IS NULL OR b.isInsured = :isInsured) " +
-           "AND (:minRating IS NULL OR b.averageRating >= :minRating)")
-    List<Bike> findBikesByAdvancedSearch(@Param("city") String city, 
-                                        @Param("bikeType") String bikeType,
-                                        @Param("fuelType") String fuelType,
-                                        @Param("minPrice") BigDecimal minPrice,
-                                        @Param("maxPrice") BigDecimal maxPrice,
-                                        @Param("minYear") Integer minYear,
-                                        @Param("maxYear") Integer maxYear,
-                                        @Param("hasHelmet") Boolean hasHelmet,
-                                        @Param("hasNavigation") Boolean hasNavigation,
-                                        @Param("isInsured") Boolean isInsured,
-                                        @Param("minRating") Double minRating);
+    // Rows of [status, count] over one owner's bikes
+    @Query("SELECT b.status, COUNT(b) FROM Bike b WHERE b.owner = :owner GROUP BY b.status")
+    List<Object[]> countBikesByStatusForOwner(@Param("owner") User owner);
     
-    @Query("SELECT b FROM Bike b WHERE b.status = 'AVAILABLE'")
-    List<Bike> findBikesNearLocation(@Param("minLat") Double minLat, 
-                                   @Param("maxLat") Double maxLat,
-                                   @Param("minLng") Double minLng, 
-                                   @Param("maxLng") Double maxLng);
+    List<Bike> findByOrderByCreatedAtDesc(Pageable pageable);
     
-    @Query("SELECT b FROM Bike b WHERE b.status = 'AVAILABLE' " +
-           "ORDER BY b.totalReviews DESC, b.averageRating DESC")
-    List<Bike> findPopularBikes();
+    // Rows of [bikeId, latitude, longitude] taken from each available bike's pickup location
+    @Query("SELECT b.id, l.latitude, l.longitude FROM Bike b JOIN b.pickupLocation l WHERE b.status = 'AVAILABLE'")
+    List<Object[]> findAvailableBikeCoordinates();
     
-    @Query("SELECT b FROM Bike b WHERE b.status = 'AVAILABLE' " +
-           "AND b.averageRating >= 4.0 " +
-           "ORDER BY b.averageRating DESC, b.totalReviews DESC")
-    List<Bike> findRecommendedBikes();
+    @Query("SELECT b.id FROM Bike b WHERE b.pickupLocation.id = :locationId AND b.status = 'AVAILABLE'")
+    List<Long> findAvailableBikeIdsByPickupLocation(@Param("locationId") Long locationId);
     
-    @Query("SELECT b FROM Bike b WHERE b.status = 'AVAILABLE' " +
-           "AND b.averageRating >= :minRating " +
-           "ORDER BY b.averageRating DESC")
-    List<Bike> findBikesByMinRating(@Param("minRating") Double minRating);
+    // Folds one review's change into the running aggregates as a single row update, so concurrent
+    // reviews of a bike serialise on its row instead of overwriting each other. averageRating is
+    // assigned first because MySQL evaluates later SET clauses against already-updated columns.
+    @Modifying
+    @Query("UPDATE Bike b SET " +
+           "b.averageRating = CASE WHEN b.totalReviews + :countDelta > 0 " +
+           "THEN CAST(b.ratingSum + :sumDelta AS Double) / (b.totalReviews + :countDelta) ELSE 0.0 END, " +
+           "b.ratingSum = b.ratingSum + :sumDelta, " +
+           "b.totalReviews = b.totalReviews + :countDelta, " +
+           "b.oneStarReviews = b.oneStarReviews + :oneStarDelta, " +
+           "b.twoStarReviews = b.twoStarReviews + :twoStarDelta, " +
+           "b.threeStarReviews = b.threeStarReviews + :threeStarDelta, " +
+           "b.fourStarReviews = b.fourStarReviews + :fourStarDelta, " +
+           "b.fiveStarReviews = b.fiveStarReviews + :fiveStarDelta " +
+           "WHERE b.id = :bikeId")
+    int applyRatingDelta(@Param("bikeId") Long bikeId, @Param("sumDelta") long sumDelta,
+                         @Param("countDelta") int countDelta, @Param("oneStarDelta") int oneStarDelta,
+                         @Param("twoStarDelta") int twoStarDelta, @Param("threeStarDelta") int threeStarDelta,
+                         @Param("fourStarDelta") int fourStarDelta, @Param("fiveStarDelta") int fiveStarDelta);
     
-    @Query("SELECT b FROM Bike b WHERE b.status = 'AVAILABLE' " +
-           "ORDER BY b.createdAt DESC")
-    List<Bike> findRecentlyAddedBikes();
+    // Rows of [averageRating, totalReviews, oneStarReviews, ..., fiveStarReviews]
+    @Query("SELECT b.averageRating, b.totalReviews, b.oneStarReviews, b.twoStarReviews, b.threeStarReviews, " +
+           "b.fourStarReviews, b.fiveStarReviews FROM Bike b WHERE b.id = :bikeId")
+    List<Object[]> findRatingAggregates(@Param("bikeId") Long bikeId);
+    
+    // Bikes stored before the running rating aggregates existed
+    List<Bike> findByRatingSumIsNull();
     
+    // Keyset pages: each query returns the rows sorting after the given key, up to the Pageable's size
     @Query("SELECT b FROM Bike b WHERE b.status = 'AVAILABLE' " +
-           "AND b.dailyRate BETWEEN :minPrice AND :maxPrice " +
-           "ORDER BY b.dailyRate ASC")
-    List<Bike> findBikesByPriceRange(@Param("minPrice") BigDecimal minPrice, 
-                                   @Param("maxPrice") BigDecimal maxPrice);
+           "AND (:location IS NULL OR b.location = :location) " +
+           "AND (:type IS NULL OR b.type = :type) " +
+           "AND (:maxRate IS NULL OR b.dailyRate <= :maxRate) " +
+           "AND (b.createdAt < :createdAt OR (b.createdAt = :createdAt AND b.id < :id)) " +
+           "ORDER BY b.createdAt DESC, b.id DESC")
+    List<Bike> findAvailableBikesPage(@Param("location") String location,
+                                      @Param("type") Bike.BikeType type,
+                                      @Param("maxRate") BigDecimal maxRate,
+                                      @Param("createdAt") LocalDateTime createdAt,
+                                      @Param("id") Long id,
+                                      Pageable pageable);
+    
+    @Query("SELECT b FROM Bike b WHERE b.owner = :owner " +
+           "AND (b.createdAt < :createdAt OR (b.createdAt = :createdAt AND b.id < :id)) " +
+           "ORDER BY b.createdAt DESC, b.id DESC")
+    List<Bike> findOwnerBikesPage(@Param("owner") User owner,
+                                  @Param("createdAt") LocalDateTime createdAt,
+                                  @Param("id") Long id,
+                                  Pageable pageable);
 }
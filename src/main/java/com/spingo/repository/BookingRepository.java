@@ -3,13 +3,19 @@ package com.spingo.repository;
 import com.spingo.entity.Booking;
 import com.spingo.entity.Bike;
 import com.spingo.entity.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface BookingRepository extends JpaRepository<Booking, Long> {
@@ -20,18 +26,59 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     List<Booking> findByPaymentStatus(Booking.PaymentStatus paymentStatus);
     List<Booking> findByBookingType(Booking.BookingType bookingType);
     
-    @Query("SELECT b FROM Booking b WHERE b.user = :user ORDER BY b.createdAt DESC")
-    List<Booking> findUserBookingsOrderByDate(@Param("user") User user);
-    
     @Query("SELECT b FROM Booking b WHERE b.bike = :bike AND b.status IN ('CONFIRMED', 'ACTIVE')")
     List<Booking> findActiveBookingsForBike(@Param("bike") Bike bike);
     
-    @Query("SELECT b FROM Booking b WHERE b.bike = :bike AND " +
-           "((b.startTime <= :endTime AND b.endTime >= :startTime) OR " +
-           "(b.startTime <= :startTime AND b.endTime >= :endTime))")
-    List<Booking> findConflictingBookings(@Param("bike") Bike bike, 
-                                         @Param("startTime") LocalDateTime startTime, 
-                                         @Param("endTime") LocalDateTime endTime);
+    // Rows of [bookingId, bikeId, startTime, endTime] for every booking that still occupies its bike
+    @Query("SELECT b.id, b.bike.id, b.startTime, b.endTime FROM Booking b " +
+           "WHERE b.status IN ('PENDING', 'CONFIRMED', 'ACTIVE', 'EXTENDED')")
+    List<Object[]> findBlockingBookingIntervals();
+    
+    // Rows of [bookingId, status, startTime, endTime] for bookings due to start or finish within (from, until]
+    @Query("SELECT b.id, b.status, b.startTime, b.endTime FROM Booking b " +
+           "WHERE (b.status = 'CONFIRMED' AND b.startTime > :from AND b.startTime <= :until) " +
+           "OR (b.status IN ('ACTIVE', 'EXTENDED') AND b.endTime > :from AND b.endTime <= :until)")
+    List<Object[]> findLifecycleDeadlines(@Param("from") LocalDateTime from,
+                                          @Param("until") LocalDateTime until);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Booking b JOIN FETCH b.user JOIN FETCH b.bike WHERE b.id = :id")
+    Optional<Booking> findByIdForUpdate(@Param("id") Long id);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Booking b WHERE b.id IN :ids AND b.status = 'CONFIRMED' AND b.startTime <= :now")
+    List<Booking> findDueToStartForUpdate(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Booking b JOIN FETCH b.user JOIN FETCH b.bike WHERE b.id IN :ids AND b.status IN ('ACTIVE', 'EXTENDED') AND b.endTime <= :now")
+    List<Booking> findDueToCompleteForUpdate(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+    
+    // Rows of [bookingId, createdAt] for every booking still waiting on payment
+    @Query("SELECT b.id, b.createdAt FROM Booking b WHERE b.status = 'PENDING'")
+    List<Object[]> findPendingBookingHolds();
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Booking b WHERE b.id IN :ids AND b.status = 'PENDING'")
+    List<Booking> findPendingForUpdate(@Param("ids") Collection<Long> ids);
+    
+    // Rows of [bookingId, startTime] for confirmed bookings starting within (from, until] and not yet reminded
+    @Query("SELECT b.id, b.startTime FROM Booking b WHERE b.status = 'CONFIRMED' " +
+           "AND b.startTime > :from AND b.startTime <= :until AND b.reminderSentAt IS NULL")
+    List<Object[]> findReminderCandidates(@Param("from") LocalDateTime from,
+                                          @Param("until") LocalDateTime until);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Booking b JOIN FETCH b.user JOIN FETCH b.bike WHERE b.id IN :ids " +
+           "AND b.status = 'CONFIRMED' AND b.reminderSentAt IS NULL AND b.startTime > :now")
+    List<Booking> findDueForReminderForUpdate(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+    
+    @Query("SELECT COUNT(b) FROM Booking b WHERE b.bike.id = :bikeId AND b.id <> :excludedBookingId " +
+           "AND b.status IN ('PENDING', 'CONFIRMED', 'ACTIVE', 'EXTENDED') " +
+           "AND b.startTime < :endTime AND b.endTime > :startTime")
+    long countOverlappingBookings(@Param("bikeId") Long bikeId,
+                                  @Param("startTime") LocalDateTime startTime,
+                                  @Param("endTime") LocalDateTime endTime,
+                                  @Param("excludedBookingId") Long excludedBookingId);
     
     @Query("SELECT COUNT(b) FROM Booking b WHERE b.status = 'COMPLETED'")
     long countCompletedBookings();
@@ -39,8 +86,34 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     @Query("SELECT COUNT(b) FROM Booking b WHERE b.user = :user AND b.status = 'COMPLETED'")
     long countCompletedBookingsByUser(@Param("user") User user);
     
-    @Query("SELECT b FROM Booking b WHERE b.bike.owner = :owner ORDER BY b.createdAt DESC")
-    List<Booking> findRecentBookingsForOwner(@Param("owner") User owner);
+    // Rows of [status, count] over the bookings of one owner's bikes
+    @Query("SELECT b.status, COUNT(b) FROM Booking b WHERE b.bike.owner = :owner GROUP BY b.status")
+    List<Object[]> countBookingsByStatusForOwner(@Param("owner") User owner);
+    
+    // Rows of [status, count] over one user's own bookings
+    @Query("SELECT b.status, COUNT(b) FROM Booking b WHERE b.user = :user GROUP BY b.status")
+    List<Object[]> countBookingsByStatusForUser(@Param("user") User user);
+    
+    // Keyset pages ordered newest first; pass the last row's (createdAt, id) to get the next page.
+    // The payment side of the one-to-one cannot be lazy, so it is joined rather than loaded per row
+    @Query("SELECT b FROM Booking b JOIN FETCH b.bike bike LEFT JOIN FETCH b.payment WHERE bike.owner = :owner " +
+           "AND (b.createdAt < :createdAt OR (b.createdAt = :createdAt AND b.id < :id)) " +
+           "ORDER BY b.createdAt DESC, b.id DESC")
+    List<Booking> findOwnerBookingsPage(@Param("owner") User owner,
+                                        @Param("createdAt") LocalDateTime createdAt,
+                                        @Param("id") Long id,
+                                        Pageable pageable);
+    
+    @Query("SELECT b FROM Booking b JOIN FETCH b.bike LEFT JOIN FETCH b.payment WHERE b.user = :user " +
+           "AND (b.createdAt < :createdAt OR (b.createdAt = :createdAt AND b.id < :id)) " +
+           "ORDER BY b.createdAt DESC, b.id DESC")
+    List<Booking> findUserBookingsPage(@Param("user") User user,
+                                       @Param("createdAt") LocalDateTime createdAt,
+                                       @Param("id") Long id,
+                                       Pageable pageable);
+    
+    @EntityGraph(attributePaths = {"user", "bike"})
+    List<Booking> findByOrderByCreatedAtDesc(Pageable pageable);
     
     @Query("SELECT b FROM Booking b WHERE b.user = :user AND b.startTime > :now ORDER BY b.startTime ASC")
     List<Booking> findUpcomingBookings(@Param("user") User user, @Param("now") LocalDateTime now);
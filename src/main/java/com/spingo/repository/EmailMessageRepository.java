@@ -0,0 +1,20 @@
+package com.spingo.repository;
+
+import com.spingo.entity.EmailMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface EmailMessageRepository extends JpaRepository<EmailMessage, Long> {
+    
+    // Due messages, oldest first; rows another worker has claimed are skipped rather than waited on
+    @Query(value = "SELECT * FROM email_outbox WHERE status = 'PENDING' AND next_attempt_at <= :now " +
+                   "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<EmailMessage> findDueBatchForUpdate(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
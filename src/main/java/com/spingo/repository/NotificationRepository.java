@@ -2,12 +2,15 @@ package com.spingo.repository;
 
 import com.spingo.entity.Notification;
 import com.spingo.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -20,8 +23,38 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     @Query("SELECT COUNT(n) FROM Notification n WHERE n.user = :user AND n.status = 'UNREAD'")
     Long countUnreadNotificationsByUser(@Param("user") User user);
     
+    @Query("SELECT n.user.id, COUNT(n) FROM Notification n WHERE n.user.id IN :userIds AND n.status = 'UNREAD' GROUP BY n.user.id")
+    List<Object[]> countUnreadNotificationsByUserIds(@Param("userIds") Collection<Long> userIds);
+    
     @Query("SELECT n FROM Notification n WHERE n.user = :user AND n.createdAt >= :since ORDER BY n.createdAt DESC")
     List<Notification> findByUserAndCreatedAtAfter(@Param("user") User user, @Param("since") LocalDateTime since);
     
     void deleteByUserAndStatus(User user, Notification.NotificationStatus status);
+    
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.user = :user AND n.status = :status AND n.createdAt < :cutoff")
+    int deleteByUserAndStatusCreatedBefore(@Param("user") User user,
+                                           @Param("status") Notification.NotificationStatus status,
+                                           @Param("cutoff") LocalDateTime cutoff);
+    
+    @Query("SELECT MIN(n.id) FROM Notification n")
+    Long findMinId();
+    
+    // Newest notifications created before the cutoff, read backwards along the created_at index
+    @Query("SELECT n.id FROM Notification n WHERE n.createdAt < :cutoff ORDER BY n.createdAt DESC, n.id DESC")
+    List<Long> findIdsCreatedBefore(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+    
+    // Unread notifications about to expire in an id range, per user, so cached unread counts can follow the purge
+    @Query("SELECT n.user.id, COUNT(n) FROM Notification n WHERE n.id >= :fromId AND n.id < :toId " +
+           "AND n.status = 'UNREAD' AND n.createdAt < :unreadCutoff GROUP BY n.user.id")
+    List<Object[]> countExpiringUnreadByUserInRange(@Param("fromId") Long fromId, @Param("toId") Long toId,
+                                                    @Param("unreadCutoff") LocalDateTime unreadCutoff);
+    
+    // Bounded by primary key so each chunk locks a short, contiguous stretch of the table
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.id >= :fromId AND n.id < :toId " +
+           "AND ((n.status = 'READ' AND n.createdAt < :readCutoff) OR n.createdAt < :unreadCutoff)")
+    int deleteExpiredInRange(@Param("fromId") Long fromId, @Param("toId") Long toId,
+                             @Param("readCutoff") LocalDateTime readCutoff,
+                             @Param("unreadCutoff") LocalDateTime unreadCutoff);
 }
@@ -0,0 +1,18 @@
+package com.spingo.repository;
+
+import com.spingo.entity.OutboxNotification;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OutboxNotificationRepository extends JpaRepository<OutboxNotification, Long> {
+    
+    // Oldest entries first; rows another relay is draining are skipped rather than waited on
+    @Query(value = "SELECT * FROM notification_outbox ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<OutboxNotification> findBatchForUpdate(@Param("limit") int limit);
+}
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -19,6 +20,10 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     Payment findByBooking(Booking booking);
     Optional<Payment> findByTransactionId(String transactionId);
     
+    @Query("SELECT p.status FROM Payment p WHERE p.transactionId = :transactionId AND p.booking.user.id = :userId")
+    Optional<Payment.PaymentStatus> findStatusForUser(@Param("transactionId") String transactionId,
+                                                      @Param("userId") Long userId);
+    
     @Query("SELECT p FROM Payment p WHERE p.status = 'SUCCESS' AND p.paymentDate >= :startDate AND p.paymentDate <= :endDate")
     List<Payment> findSuccessfulPaymentsBetweenDates(@Param("startDate") LocalDateTime startDate, 
                                                     @Param("endDate") LocalDateTime endDate);
@@ -26,6 +31,9 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     @Query("SELECT SUM(p.amount) FROM Payment p WHERE p.status = 'SUCCESS'")
     Double getTotalRevenue();
     
+    @Query("SELECT COALESCE(SUM(p.amount), 0) FROM Payment p WHERE p.status = 'SUCCESS'")
+    BigDecimal sumSuccessfulAmounts();
+    
     @Query("SELECT SUM(p.amount) FROM Payment p WHERE p.status = 'SUCCESS' AND p.paymentDate >= :startDate AND p.paymentDate <= :endDate")
     Double getRevenueBetweenDates(@Param("startDate") LocalDateTime startDate, 
                                  @Param("endDate") LocalDateTime endDate);
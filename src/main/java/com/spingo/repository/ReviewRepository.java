@@ -20,11 +20,9 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
     
     Optional<Review> findByUserAndBike(User user, Bike bike);
     
-    @Query("SELECT AVG(r.rating) FROM Review r WHERE r.bike = :bike")
-    Double findAverageRatingByBike(@Param("bike") Bike bike);
-    
-    @Query("SELECT COUNT(r) FROM Review r WHERE r.bike = :bike")
-    Long countReviewsByBike(@Param("bike") Bike bike);
+    // Rows of [rating, count] for one bike
+    @Query("SELECT r.rating, COUNT(r) FROM Review r WHERE r.bike = :bike GROUP BY r.rating")
+    List<Object[]> countReviewsByRating(@Param("bike") Bike bike);
     
     @Query("SELECT r FROM Review r WHERE r.bike = :bike AND r.rating >= :minRating ORDER BY r.createdAt DESC")
     List<Review> findByBikeAndRatingGreaterThanEqual(@Param("bike") Bike bike, @Param("minRating") Integer minRating);
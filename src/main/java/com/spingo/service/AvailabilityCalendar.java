@@ -0,0 +1,32 @@
+package com.spingo.service;
+
+import java.time.LocalDate;
+
+// Hourly heatmap of one bike: days[d] has bit h set when hour h of firstDay + d is booked
+public class AvailabilityCalendar {
+
+    private final Long bikeId;
+    private final LocalDate firstDay;
+    private final int[] days;
+    private final int bookedHours;
+
+    public AvailabilityCalendar(Long bikeId, LocalDate firstDay, int[] days, int bookedHours) {
+        this.bikeId = bikeId;
+        this.firstDay = firstDay;
+        this.days = days;
+        this.bookedHours = bookedHours;
+    }
+
+    public Long getBikeId() { return bikeId; }
+    public LocalDate getFirstDay() { return firstDay; }
+    public int[] getDays() { return days; }
+    public int getBookedHours() { return bookedHours; }
+
+    public double getUtilization() {
+        return (double) bookedHours / (days.length * 24);
+    }
+
+    public boolean isBooked(int day, int hour) {
+        return (days[day] & (1 << hour)) != 0;
+    }
+}
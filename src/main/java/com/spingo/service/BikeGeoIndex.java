@@ -0,0 +1,211 @@
+package com.spingo.service;
+
+import com.spingo.repository.BikeRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Uniform lat/lng grid over the pickup coordinates of available bikes.
+ * A radius query only visits the cells overlapping the query's bounding box
+ * and then filters candidates by great-circle distance.
+ */
+@Component
+public class BikeGeoIndex {
+
+    private static final double CELL_DEGREES = 0.05; // ~5.5 km of latitude
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Cell> cells = new HashMap<>();
+    private final Map<Long, Long> cellKeysByBike = new HashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        List<Object[]> coordinates = bikeRepository.findAvailableBikeCoordinates();
+
+        lock.writeLock().lock();
+        try {
+            cells.clear();
+            cellKeysByBike.clear();
+            for (Object[] row : coordinates) {
+                if (row[1] != null && row[2] != null) {
+                    insert((Long) row[0], (Double) row[1], (Double) row[2]);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(Long bikeId, double latitude, double longitude) {
+        lock.writeLock().lock();
+        try {
+            delete(bikeId);
+            insert(bikeId, latitude, longitude);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long bikeId) {
+        lock.writeLock().lock();
+        try {
+            delete(bikeId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return cellKeysByBike.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Bikes within radiusKm of the given point, nearest first
+    public List<Hit> findWithinRadius(double latitude, double longitude, double radiusKm) {
+        double latRange = radiusKm / 111.0;
+        double cosLat = Math.max(Math.cos(Math.toRadians(latitude)), 0.01);
+        double lngRange = Math.min(radiusKm / (111.320 * cosLat), 180.0);
+
+        int minLatCell = cellOf(latitude - latRange);
+        int maxLatCell = cellOf(latitude + latRange);
+        int minLngCell = cellOf(longitude - lngRange);
+        int maxLngCell = cellOf(longitude + lngRange);
+
+        lock.readLock().lock();
+        try {
+            List<Hit> hits = new ArrayList<>();
+            long boxCells = (long) (maxLatCell - minLatCell + 1) * (maxLngCell - minLngCell + 1);
+
+            if (boxCells <= cells.size()) {
+                for (int latCell = minLatCell; latCell <= maxLatCell; latCell++) {
+                    for (int lngCell = minLngCell; lngCell <= maxLngCell; lngCell++) {
+                        Cell cell = cells.get(cellKey(latCell, lngCell));
+                        if (cell != null) {
+                            cell.collect(latitude, longitude, radiusKm, hits);
+                        }
+                    }
+                }
+            } else {
+                // Query box is larger than the occupied grid: walk occupied cells instead
+                for (Map.Entry<Long, Cell> entry : cells.entrySet()) {
+                    int latCell = (int) (entry.getKey() >> 32);
+                    int lngCell = (int) (long) entry.getKey();
+                    if (latCell >= minLatCell && latCell <= maxLatCell
+                            && lngCell >= minLngCell && lngCell <= maxLngCell) {
+                        entry.getValue().collect(latitude, longitude, radiusKm, hits);
+                    }
+                }
+            }
+
+            hits.sort(Comparator.comparingDouble(Hit::getDistanceKm));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static double haversineKm(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+            + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+            * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    private void insert(Long bikeId, double latitude, double longitude) {
+        long key = cellKey(cellOf(latitude), cellOf(longitude));
+        cells.computeIfAbsent(key, k -> new Cell()).add(bikeId, latitude, longitude);
+        cellKeysByBike.put(bikeId, key);
+    }
+
+    private void delete(Long bikeId) {
+        Long key = cellKeysByBike.remove(bikeId);
+        if (key != null) {
+            Cell cell = cells.get(key);
+            cell.remove(bikeId);
+            if (cell.size == 0) {
+                cells.remove(key);
+            }
+        }
+    }
+
+    private static int cellOf(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(int latCell, int lngCell) {
+        return ((long) latCell << 32) | (lngCell & 0xFFFFFFFFL);
+    }
+
+    public static class Hit {
+        private final Long bikeId;
+        private final double distanceKm;
+
+        public Hit(Long bikeId, double distanceKm) {
+            this.bikeId = bikeId;
+            this.distanceKm = distanceKm;
+        }
+
+        public Long getBikeId() { return bikeId; }
+        public double getDistanceKm() { return distanceKm; }
+    }
+
+    // Bikes of one grid cell stored in parallel primitive arrays
+    private static final class Cell {
+        private long[] bikeIds = new long[8];
+        private double[] latitudes = new double[8];
+        private double[] longitudes = new double[8];
+        private int size;
+
+        void add(long bikeId, double latitude, double longitude) {
+            if (size == bikeIds.length) {
+                bikeIds = Arrays.copyOf(bikeIds, size * 2);
+                latitudes = Arrays.copyOf(latitudes, size * 2);
+                longitudes = Arrays.copyOf(longitudes, size * 2);
+            }
+            bikeIds[size] = bikeId;
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            size++;
+        }
+
+        void remove(long bikeId) {
+            for (int i = 0; i < size; i++) {
+                if (bikeIds[i] == bikeId) {
+                    size--;
+                    bikeIds[i] = bikeIds[size];
+                    latitudes[i] = latitudes[size];
+                    longitudes[i] = longitudes[size];
+                    return;
+                }
+            }
+        }
+
+        void collect(double latitude, double longitude, double radiusKm, List<Hit> hits) {
+            for (int i = 0; i < size; i++) {
+                double distance = haversineKm(latitude, longitude, latitudes[i], longitudes[i]);
+                if (distance <= radiusKm) {
+                    hits.add(new Hit(bikeIds[i], distance));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.spingo.service;
+
+import com.spingo.entity.Bike;
+import com.spingo.event.BikeRatingChangedEvent;
+import com.spingo.repository.BikeRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Popular and recommended rankings of available bikes, kept in memory as
+ * bounded top-K sets per city and globally. Bike saves and rating events
+ * adjust them in place; only when a ranked bike drops out is its scope
+ * refilled from the snapshots held here, so serving a page never touches the
+ * database.
+ */
+@Component
+public class BikeRankingIndex {
+
+    public static final double RECOMMENDED_MIN_RATING = 4.0;
+
+    // Most reviewed first, then best rated
+    private static final Comparator<RankedBike> POPULAR = Comparator
+        .comparingInt(RankedBike::getTotalReviews).reversed()
+        .thenComparing(Comparator.comparingDouble(RankedBike::getAverageRating).reversed())
+        .thenComparing(Comparator.comparing(RankedBike::getId).reversed());
+
+    // Best rated first, then most reviewed
+    private static final Comparator<RankedBike> RECOMMENDED = Comparator
+        .comparingDouble(RankedBike::getAverageRating).reversed()
+        .thenComparing(Comparator.comparingInt(RankedBike::getTotalReviews).reversed())
+        .thenComparing(Comparator.comparing(RankedBike::getId).reversed());
+
+    private static final String GLOBAL = "";
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    @Value("${spingo.rankings.top-k:100}")
+    private int topK;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, RankedBike> bikesById = new HashMap<>();
+    private final Ranking popular = new Ranking(POPULAR, bike -> true);
+    private final Ranking recommended = new Ranking(RECOMMENDED,
+        bike -> bike.getAverageRating() >= RECOMMENDED_MIN_RATING);
+
+    @PostConstruct
+    public void rebuild() {
+        List<Bike> availableBikes = bikeRepository.findAvailableBikes();
+
+        lock.writeLock().lock();
+        try {
+            bikesById.clear();
+            for (Bike bike : availableBikes) {
+                bikesById.put(bike.getId(), RankedBike.of(bike));
+            }
+            popular.rebuild();
+            recommended.rebuild();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Adds, refreshes or (when no longer available) removes a bike
+    public void put(Bike bike) {
+        if (bike.getStatus() != Bike.BikeStatus.AVAILABLE) {
+            remove(bike.getId());
+            return;
+        }
+        replace(bike.getId(), existing -> RankedBike.of(bike));
+    }
+
+    public void remove(Long bikeId) {
+        replace(bikeId, existing -> null);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingChanged(BikeRatingChangedEvent event) {
+        replace(event.getBikeId(), existing -> existing != null
+            ? existing.withRating(event.getAverageRating(), event.getTotalReviews())
+            : null);
+    }
+
+    public KeysetPage<RankedBike> getPopular(String city, String cursor, int size) {
+        PageCursor after = PageCursor.decode(cursor, 3);
+        RankedBike from = after != null
+            ? RankedBike.probe(after.getLong(2), after.getDouble(1), after.getInt(0))
+            : null;
+        return KeysetPage.of(popular.page(city, from, size + 1), size,
+            bike -> PageCursor.encode(bike.getTotalReviews(), bike.getAverageRating(), bike.getId()));
+    }
+
+    public KeysetPage<RankedBike> getRecommended(String city, String cursor, int size) {
+        PageCursor after = PageCursor.decode(cursor, 3);
+        RankedBike from = after != null
+            ? RankedBike.probe(after.getLong(2), after.getDouble(0), after.getInt(1))
+            : null;
+        return KeysetPage.of(recommended.page(city, from, size + 1), size,
+            bike -> PageCursor.encode(bike.getAverageRating(), bike.getTotalReviews(), bike.getId()));
+    }
+
+    private void replace(Long bikeId, Function<RankedBike, RankedBike> change) {
+        lock.writeLock().lock();
+        try {
+            RankedBike previous = bikesById.get(bikeId);
+            RankedBike current = change.apply(previous);
+            if (previous == null && current == null) {
+                return;
+            }
+            if (current != null) {
+                bikesById.put(bikeId, current);
+            } else {
+                bikesById.remove(bikeId);
+            }
+            popular.update(previous, current);
+            recommended.update(previous, current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // "Mumbai, Maharashtra" ranks under "mumbai"
+    static String cityOf(String location) {
+        if (location == null || location.isBlank()) {
+            return null;
+        }
+        int comma = location.indexOf(',');
+        return (comma >= 0 ? location.substring(0, comma) : location).trim().toLowerCase();
+    }
+
+    /**
+     * One ordering over the eligible bikes, holding at most topK entries per
+     * scope (each city, plus GLOBAL). Callers hold the write lock for changes
+     * and the read lock for pages.
+     */
+    private class Ranking {
+
+        private final Comparator<RankedBike> order;
+        private final Predicate<RankedBike> eligible;
+        private final Map<String, TreeSet<RankedBike>> topByScope = new HashMap<>();
+
+        Ranking(Comparator<RankedBike> order, Predicate<RankedBike> eligible) {
+            this.order = order;
+            this.eligible = eligible;
+        }
+
+        void rebuild() {
+            topByScope.clear();
+            for (RankedBike bike : bikesById.values()) {
+                if (eligible.test(bike)) {
+                    offer(GLOBAL, bike);
+                    String city = cityOf(bike.getLocation());
+                    if (city != null) {
+                        offer(city, bike);
+                    }
+                }
+            }
+        }
+
+        void update(RankedBike previous, RankedBike current) {
+            updateScope(GLOBAL, previous, current);
+            String previousCity = previous != null ? cityOf(previous.getLocation()) : null;
+            String currentCity = current != null ? cityOf(current.getLocation()) : null;
+            if (previousCity != null) {
+                updateScope(previousCity, previous, previousCity.equals(currentCity) ? current : null);
+            }
+            if (currentCity != null && !currentCity.equals(previousCity)) {
+                updateScope(currentCity, null, current);
+            }
+        }
+
+        private void updateScope(String scope, RankedBike previous, RankedBike current) {
+            TreeSet<RankedBike> top = topByScope.get(scope);
+            // A scope below topK already holds every eligible bike, so there is nothing to refill from
+            boolean wasFull = top != null && top.size() == topK;
+            boolean lostMember = previous != null && top != null && top.remove(previous);
+            if (current != null && eligible.test(current)) {
+                offer(scope, current);
+            }
+            top = topByScope.get(scope);
+            // Bikes left out of a full scope rank below its old cut-off. Refill from the snapshots when the
+            // scope shrank, or when the changed bike now sits at the cut-off where one of them may outrank it
+            if (lostMember && wasFull && (top.size() < topK
+                    || current != null && order.compare(top.last(), current) == 0)) {
+                refill(scope, top);
+            }
+            if (top != null && top.isEmpty()) {
+                topByScope.remove(scope);
+            }
+        }
+
+        private void offer(String scope, RankedBike bike) {
+            TreeSet<RankedBike> top = topByScope.computeIfAbsent(scope, s -> new TreeSet<>(order));
+            if (top.size() < topK) {
+                top.add(bike);
+            } else if (order.compare(bike, top.last()) < 0 && top.add(bike)) {
+                top.pollLast();
+            }
+        }
+
+        private void refill(String scope, TreeSet<RankedBike> top) {
+            for (RankedBike bike : bikesById.values()) {
+                if (eligible.test(bike) && !top.contains(bike)
+                        && (scope.equals(GLOBAL) || scope.equals(cityOf(bike.getLocation())))) {
+                    offer(scope, bike);
+                }
+            }
+        }
+
+        List<RankedBike> page(String city, RankedBike after, int limit) {
+            String scope = city != null && !city.isBlank() ? cityOf(city) : GLOBAL;
+            lock.readLock().lock();
+            try {
+                TreeSet<RankedBike> top = topByScope.get(scope);
+                List<RankedBike> bikes = new ArrayList<>(limit);
+                if (top == null) {
+                    return bikes;
+                }
+                for (RankedBike bike : after != null ? top.tailSet(after, false) : top) {
+                    if (bikes.size() == limit) {
+                        break;
+                    }
+                    bikes.add(bike);
+                }
+                return bikes;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.spingo.service;
+
+import com.spingo.entity.Bike;
+
+import java.math.BigDecimal;
+
+// Filters accepted by the advanced bike search; null fields are not applied
+public class BikeSearchCriteria {
+
+    private String city;
+    private Bike.BikeType bikeType;
+    private Bike.FuelType fuelType;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private Integer minYear;
+    private Integer maxYear;
+    private Boolean hasHelmet;
+    private Boolean hasNavigation;
+    private Boolean isInsured;
+    private Double minRating;
+
+    public BikeSearchCriteria() {}
+
+    public BikeSearchCriteria(String city, Bike.BikeType bikeType, Bike.FuelType fuelType,
+                              BigDecimal minPrice, BigDecimal maxPrice, Integer minYear, Integer maxYear,
+                              Boolean hasHelmet, Boolean hasNavigation, Boolean isInsured, Double minRating) {
+        this.city = city;
+        this.bikeType = bikeType;
+        this.fuelType = fuelType;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.minYear = minYear;
+        this.maxYear = maxYear;
+        this.hasHelmet = hasHelmet;
+        this.hasNavigation = hasNavigation;
+        this.isInsured = isInsured;
+        this.minRating = minRating;
+    }
+
+    // Getters and Setters
+    public String getCity() { return city; }
+    public void setCity(String city) { this.city = city; }
+
+    public Bike.BikeType getBikeType() { return bikeType; }
+    public void setBikeType(Bike.BikeType bikeType) { this.bikeType = bikeType; }
+
+    public Bike.FuelType getFuelType() { return fuelType; }
+    public void setFuelType(Bike.FuelType fuelType) { this.fuelType = fuelType; }
+
+    public BigDecimal getMinPrice() { return minPrice; }
+    public void setMinPrice(BigDecimal minPrice) { this.minPrice = minPrice; }
+
+    public BigDecimal getMaxPrice() { return maxPrice; }
+    public void setMaxPrice(BigDecimal maxPrice) { this.maxPrice = maxPrice; }
+
+    public Integer getMinYear() { return minYear; }
+    public void setMinYear(Integer minYear) { this.minYear = minYear; }
+
+    public Integer getMaxYear() { return maxYear; }
+    public void setMaxYear(Integer maxYear) { this.maxYear = maxYear; }
+
+    public Boolean getHasHelmet() { return hasHelmet; }
+    public void setHasHelmet(Boolean hasHelmet) { this.hasHelmet = hasHelmet; }
+
+    public Boolean getHasNavigation() { return hasNavigation; }
+    public void setHasNavigation(Boolean hasNavigation) { this.hasNavigation = hasNavigation; }
+
+    public Boolean getIsInsured() { return isInsured; }
+    public void setIsInsured(Boolean isInsured) { this.isInsured = isInsured; }
+
+    public Double getMinRating() { return minRating; }
+    public void setMinRating(Double minRating) { this.minRating = minRating; }
+}
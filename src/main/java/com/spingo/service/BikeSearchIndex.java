@@ -0,0 +1,448 @@
+package com.spingo.service;
+
+import com.spingo.entity.Bike;
+import com.spingo.event.BikeRatingChangedEvent;
+import com.spingo.repository.BikeRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * In-memory index over available bikes used by the advanced search.
+ * Every bike gets a dense slot number; categorical filters are bitmaps over
+ * slots and numeric filters are sorted (value, slot) arrays, so a search is a
+ * handful of bitmap intersections instead of a table scan. Slots are looked
+ * up through an id-ordered map, so a page is read newest first from its
+ * cursor without sorting the hits.
+ */
+@Component
+public class BikeSearchIndex {
+
+    private static final int ABSENT = Integer.MIN_VALUE;
+    // Below one hit in this many bikes, sorting the hits beats walking every bike in id order
+    private static final int SPARSE_RATIO = 16;
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final NavigableMap<Long, Integer> slotsById = new TreeMap<>();
+    private long[] bikeIds = new long[1024];
+    private String[] locations = new String[1024];
+    private int[] ratesInPaise = new int[1024];
+    private int[] years = new int[1024];
+    private int[] ratingsInMillis = new int[1024];
+    private int[] freeSlots = new int[64];
+    private int freeSlotCount;
+    private int nextSlot;
+
+    private final BitSet live = new BitSet();
+    private final Map<Bike.BikeType, BitSet> byType = new EnumMap<>(Bike.BikeType.class);
+    private final Map<Bike.FuelType, BitSet> byFuelType = new EnumMap<>(Bike.FuelType.class);
+    private final Map<String, BitSet> byLocation = new HashMap<>();
+    private final BitSet withHelmet = new BitSet();
+    private final BitSet withNavigation = new BitSet();
+    private final BitSet insured = new BitSet();
+
+    private final SortedIntColumn rateColumn = new SortedIntColumn();
+    private final SortedIntColumn yearColumn = new SortedIntColumn();
+    private final SortedIntColumn ratingColumn = new SortedIntColumn();
+
+    @PostConstruct
+    public void rebuild() {
+        List<Bike> availableBikes = bikeRepository.findAvailableBikes();
+
+        lock.writeLock().lock();
+        try {
+            slotsById.clear();
+            freeSlotCount = 0;
+            nextSlot = 0;
+            live.clear();
+            byType.clear();
+            byFuelType.clear();
+            byLocation.clear();
+            withHelmet.clear();
+            withNavigation.clear();
+            insured.clear();
+            rateColumn.clear();
+            yearColumn.clear();
+            ratingColumn.clear();
+
+            for (Bike bike : availableBikes) {
+                fillSlot(allocateSlot(bike.getId()), bike);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Adds, refreshes or drops a bike depending on whether it is currently available
+    public void put(Bike bike) {
+        if (bike.getId() == null) {
+            return;
+        }
+        if (bike.getStatus() != Bike.BikeStatus.AVAILABLE) {
+            remove(bike.getId());
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotsById.get(bike.getId());
+            if (slot != null) {
+                clearSlot(slot);
+            } else {
+                slot = allocateSlot(bike.getId());
+            }
+            fillSlot(slot, bike);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Applied once the review's transaction commits, so a rolled-back review never shows up in search
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingChanged(BikeRatingChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotsById.get(event.getBikeId());
+            if (slot != null) {
+                ratingColumn.remove(ratingsInMillis[slot], slot);
+                ratingsInMillis[slot] = (int) Math.floor(event.getAverageRating() * 1000);
+                ratingColumn.insert(ratingsInMillis[slot], slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long bikeId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotsById.remove(bikeId);
+            if (slot != null) {
+                clearSlot(slot);
+                releaseSlot(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(Long bikeId) {
+        lock.readLock().lock();
+        try {
+            return slotsById.containsKey(bikeId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids below beforeId matching every non-null filter of the criteria, newest
+     * first, stopping as soon as limit of them pass accept. Dense results are
+     * walked in id order from the cursor; sparse ones are read off the bitmap,
+     * which is then cheaper than stepping over the bikes that do not match.
+     */
+    public List<Long> searchNewestFirst(BikeSearchCriteria criteria, long beforeId, int limit, LongPredicate accept) {
+        lock.readLock().lock();
+        try {
+            BitSet result = matching(criteria);
+            List<Long> ids = new ArrayList<>(limit);
+            int hits = result.isEmpty() ? 0 : result.cardinality();
+            if (hits == 0) {
+                return ids;
+            }
+            if (hits < slotsById.size() / SPARSE_RATIO) {
+                long[] hitIds = new long[hits];
+                int count = 0;
+                for (int slot = result.nextSetBit(0); slot >= 0; slot = result.nextSetBit(slot + 1)) {
+                    if (bikeIds[slot] < beforeId) {
+                        hitIds[count++] = bikeIds[slot];
+                    }
+                }
+                Arrays.sort(hitIds, 0, count);
+                for (int i = count - 1; i >= 0 && ids.size() < limit; i--) {
+                    if (accept.test(hitIds[i])) {
+                        ids.add(hitIds[i]);
+                    }
+                }
+                return ids;
+            }
+            for (Map.Entry<Long, Integer> entry : slotsById.headMap(beforeId, false).descendingMap().entrySet()) {
+                if (ids.size() == limit) {
+                    break;
+                }
+                if (result.get(entry.getValue()) && accept.test(entry.getKey())) {
+                    ids.add(entry.getKey());
+                }
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The candidate ids that match every non-null filter of the criteria, in candidate order
+    public List<Long> filter(BikeSearchCriteria criteria, Collection<Long> candidateIds) {
+        lock.readLock().lock();
+        try {
+            BitSet result = matching(criteria);
+            List<Long> ids = new ArrayList<>();
+            for (Long id : candidateIds) {
+                Integer slot = slotsById.get(id);
+                if (slot != null && result.get(slot)) {
+                    ids.add(id);
+                }
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Slots of the available bikes matching the criteria; callers hold the read lock
+    private BitSet matching(BikeSearchCriteria criteria) {
+        BitSet result = (BitSet) live.clone();
+
+        if (criteria.getBikeType() != null) {
+            and(result, byType.get(criteria.getBikeType()));
+        }
+        if (criteria.getFuelType() != null) {
+            and(result, byFuelType.get(criteria.getFuelType()));
+        }
+        if (criteria.getHasHelmet() != null) {
+            andFlag(result, withHelmet, criteria.getHasHelmet());
+        }
+        if (criteria.getHasNavigation() != null) {
+            andFlag(result, withNavigation, criteria.getHasNavigation());
+        }
+        if (criteria.getIsInsured() != null) {
+            andFlag(result, insured, criteria.getIsInsured());
+        }
+        if (hasText(criteria.getCity()) && !result.isEmpty()) {
+            result.and(matchLocation(criteria.getCity().trim()));
+        }
+        if ((criteria.getMinPrice() != null || criteria.getMaxPrice() != null) && !result.isEmpty()) {
+            result.and(rateColumn.select(
+                criteria.getMinPrice() != null ? toPaise(criteria.getMinPrice(), RoundingMode.CEILING) : Integer.MIN_VALUE,
+                criteria.getMaxPrice() != null ? toPaise(criteria.getMaxPrice(), RoundingMode.FLOOR) : Integer.MAX_VALUE));
+        }
+        if ((criteria.getMinYear() != null || criteria.getMaxYear() != null) && !result.isEmpty()) {
+            result.and(yearColumn.select(
+                criteria.getMinYear() != null ? criteria.getMinYear() : Integer.MIN_VALUE,
+                criteria.getMaxYear() != null ? criteria.getMaxYear() : Integer.MAX_VALUE));
+        }
+        if (criteria.getMinRating() != null && !result.isEmpty()) {
+            result.and(ratingColumn.select(
+                (int) Math.ceil(criteria.getMinRating() * 1000), Integer.MAX_VALUE));
+        }
+        return result;
+    }
+
+    private BitSet matchLocation(String city) {
+        // Same semantics as the old "location LIKE %city%": substring match, case-insensitive
+        String needle = city.toLowerCase();
+        BitSet matches = new BitSet();
+        for (Map.Entry<String, BitSet> entry : byLocation.entrySet()) {
+            if (entry.getKey().contains(needle)) {
+                matches.or(entry.getValue());
+            }
+        }
+        return matches;
+    }
+
+    private void fillSlot(int slot, Bike bike) {
+        live.set(slot);
+
+        if (bike.getType() != null) {
+            byType.computeIfAbsent(bike.getType(), t -> new BitSet()).set(slot);
+        }
+        if (bike.getFuelType() != null) {
+            byFuelType.computeIfAbsent(bike.getFuelType(), t -> new BitSet()).set(slot);
+        }
+        String location = bike.getLocation() != null ? bike.getLocation().trim().toLowerCase() : null;
+        locations[slot] = location;
+        if (location != null) {
+            byLocation.computeIfAbsent(location, l -> new BitSet()).set(slot);
+        }
+        withHelmet.set(slot, Boolean.TRUE.equals(bike.getHasHelmet()));
+        withNavigation.set(slot, Boolean.TRUE.equals(bike.getHasNavigation()));
+        insured.set(slot, Boolean.TRUE.equals(bike.getIsInsured()));
+
+        ratesInPaise[slot] = bike.getDailyRate() != null ? toPaise(bike.getDailyRate(), RoundingMode.HALF_UP) : ABSENT;
+        years[slot] = bike.getYear() != null ? bike.getYear() : ABSENT;
+        ratingsInMillis[slot] = bike.getAverageRating() != null ? (int) Math.floor(bike.getAverageRating() * 1000) : ABSENT;
+        rateColumn.insert(ratesInPaise[slot], slot);
+        yearColumn.insert(years[slot], slot);
+        ratingColumn.insert(ratingsInMillis[slot], slot);
+    }
+
+    private void clearSlot(int slot) {
+        live.clear(slot);
+        for (BitSet bitmap : byType.values()) {
+            bitmap.clear(slot);
+        }
+        for (BitSet bitmap : byFuelType.values()) {
+            bitmap.clear(slot);
+        }
+        if (locations[slot] != null) {
+            BitSet bitmap = byLocation.get(locations[slot]);
+            bitmap.clear(slot);
+            if (bitmap.isEmpty()) {
+                byLocation.remove(locations[slot]);
+            }
+            locations[slot] = null;
+        }
+        withHelmet.clear(slot);
+        withNavigation.clear(slot);
+        insured.clear(slot);
+
+        rateColumn.remove(ratesInPaise[slot], slot);
+        yearColumn.remove(years[slot], slot);
+        ratingColumn.remove(ratingsInMillis[slot], slot);
+    }
+
+    private int allocateSlot(Long bikeId) {
+        int slot;
+        if (freeSlotCount > 0) {
+            slot = freeSlots[--freeSlotCount];
+        } else {
+            slot = nextSlot++;
+            if (slot == bikeIds.length) {
+                int capacity = bikeIds.length * 2;
+                bikeIds = Arrays.copyOf(bikeIds, capacity);
+                locations = Arrays.copyOf(locations, capacity);
+                ratesInPaise = Arrays.copyOf(ratesInPaise, capacity);
+                years = Arrays.copyOf(years, capacity);
+                ratingsInMillis = Arrays.copyOf(ratingsInMillis, capacity);
+            }
+        }
+        bikeIds[slot] = bikeId;
+        slotsById.put(bikeId, slot);
+        return slot;
+    }
+
+    private void releaseSlot(int slot) {
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    private static void and(BitSet result, BitSet bitmap) {
+        if (bitmap == null) {
+            result.clear();
+        } else {
+            result.and(bitmap);
+        }
+    }
+
+    private static void andFlag(BitSet result, BitSet bitmap, boolean expected) {
+        if (expected) {
+            result.and(bitmap);
+        } else {
+            result.andNot(bitmap);
+        }
+    }
+
+    private static int toPaise(BigDecimal amount, RoundingMode roundingMode) {
+        BigDecimal paise = amount.movePointRight(2).setScale(0, roundingMode);
+        if (paise.compareTo(BigDecimal.valueOf(Integer.MAX_VALUE)) > 0) {
+            return Integer.MAX_VALUE;
+        }
+        if (paise.compareTo(BigDecimal.valueOf(Integer.MIN_VALUE + 1L)) < 0) {
+            return Integer.MIN_VALUE + 1;
+        }
+        return paise.intValue();
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    // Sorted array of (value, slot) pairs packed into longs, answering range predicates by binary search
+    private static final class SortedIntColumn {
+
+        private long[] entries = new long[1024];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        void insert(int value, int slot) {
+            if (value == ABSENT) {
+                return;
+            }
+            long key = pack(value, slot);
+            int index = Arrays.binarySearch(entries, 0, size, key);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            System.arraycopy(entries, index, entries, index + 1, size - index);
+            entries[index] = key;
+            size++;
+        }
+
+        void remove(int value, int slot) {
+            if (value == ABSENT) {
+                return;
+            }
+            int index = Arrays.binarySearch(entries, 0, size, pack(value, slot));
+            if (index >= 0) {
+                System.arraycopy(entries, index + 1, entries, index, size - index - 1);
+                size--;
+            }
+        }
+
+        BitSet select(int min, int max) {
+            BitSet matches = new BitSet();
+            if (min > max) {
+                return matches;
+            }
+            int from = Arrays.binarySearch(entries, 0, size, pack(min, 0));
+            from = from >= 0 ? from : -from - 1;
+            int to = Arrays.binarySearch(entries, 0, size, pack(max, Integer.MAX_VALUE));
+            to = to >= 0 ? to + 1 : -to - 1;
+            for (int i = from; i < to; i++) {
+                matches.set((int) entries[i]);
+            }
+            return matches;
+        }
+
+        private static long pack(int value, int slot) {
+            return ((long) value << 32) | (slot & 0xFFFFFFFFL);
+        }
+    }
+}
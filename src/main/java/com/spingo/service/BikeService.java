@@ -1,51 +1,129 @@
 package com.spingo.service;
 
 import com.spingo.entity.Bike;
+import com.spingo.entity.Location;
 import com.spingo.entity.User;
+import com.spingo.event.BikeRatingChangedEvent;
+import com.spingo.event.BikeStatusChangedEvent;
 import com.spingo.repository.BikeRepository;
+import com.spingo.repository.LocationRepository;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.PriorityQueue;
 
 @Service
 public class BikeService {
 
+    private static final int WINDOW_BATCH_SIZE = 200;
+
     @Autowired
     private BikeRepository bikeRepository;
 
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private BikeSearchIndex bikeSearchIndex;
+
+    @Autowired
+    private BikeGeoIndex bikeGeoIndex;
+
+    @Autowired
+    private BikeRankingIndex bikeRankingIndex;
+
+    @Autowired
+    private BikeTextIndex bikeTextIndex;
+
+    @Autowired
+    private BookingAvailabilityIndex availabilityIndex;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     public Bike addBike(Bike bike) {
-        return bikeRepository.save(bike);
+        Bike savedBike = bikeRepository.save(bike);
+        index(savedBike, null);
+        return savedBike;
     }
 
     public List<Bike> getAllBikes() {
         return bikeRepository.findAll();
     }
 
-    public List<Bike> getAvailableBikes() {
-        return bikeRepository.findAvailableBikes();
+    // Available bikes newest first, optionally filtered by exact location, type and maximum daily rate
+    public KeysetPage<Bike> getAvailableBikes(String location, Bike.BikeType type, BigDecimal maxRate,
+                                              String cursor, int size) {
+        return getAvailableBikes(location, type, maxRate, null, null, cursor, size);
     }
 
-    public List<Bike> getAvailableBikesByLocation(String location) {
-        return bikeRepository.findAvailableBikesByLocation(location);
+    /**
+     * As above, further limited to bikes with no blocking booking overlapping
+     * [start, end) when a window is given. Booked bikes are skipped in memory,
+     * so the seek continues past them until the page is full.
+     */
+    public KeysetPage<Bike> getAvailableBikes(String location, Bike.BikeType type, BigDecimal maxRate,
+                                              LocalDateTime start, LocalDateTime end,
+                                              String cursor, int size) {
+        checkWindow(start, end);
+        PageCursor after = PageCursor.decode(cursor, 2);
+        LocalDateTime createdAt = after != null ? after.getDateTime(0) : PageCursor.NEWEST;
+        long id = after != null ? after.getLong(1) : Long.MAX_VALUE;
+        
+        // With a window some rows get skipped, so read ahead in larger batches
+        int batchSize = start != null ? Math.max(size + 1, WINDOW_BATCH_SIZE) : size + 1;
+        List<Bike> bikes = new ArrayList<>(size + 1);
+        while (true) {
+            List<Bike> batch = bikeRepository.findAvailableBikesPage(location, type, maxRate, createdAt, id,
+                PageRequest.of(0, batchSize));
+            for (Bike bike : batch) {
+                if (bikes.size() <= size && isFreeDuring(bike.getId(), start, end)) {
+                    bikes.add(bike);
+                }
+            }
+            if (bikes.size() > size || batch.size() < batchSize) {
+                break;
+            }
+            Bike last = batch.get(batch.size() - 1);
+            createdAt = last.getCreatedAt();
+            id = last.getId();
+        }
+        return KeysetPage.of(bikes, size, BikeService::createdAtCursor);
     }
 
-    public List<Bike> getAvailableBikesByTypeAndLocation(Bike.BikeType type, String location) {
-        return bikeRepository.findAvailableBikesByTypeAndLocation(type, location);
+    public KeysetPage<Bike> getBikesByOwner(User owner, String cursor, int size) {
+        PageCursor after = PageCursor.decode(cursor, 2);
+        List<Bike> bikes = bikeRepository.findOwnerBikesPage(owner,
+            after != null ? after.getDateTime(0) : PageCursor.NEWEST,
+            after != null ? after.getLong(1) : Long.MAX_VALUE,
+            PageRequest.of(0, size + 1));
+        return KeysetPage.of(bikes, size, BikeService::createdAtCursor);
     }
 
-    public List<Bike> getBikesByOwner(User owner) {
-        return bikeRepository.findByOwner(owner);
+    // Most reviewed first, then best rated; served from the in-memory rankings
+    public KeysetPage<RankedBike> getPopularBikes(String city, String cursor, int size) {
+        return bikeRankingIndex.getPopular(city, cursor, size);
     }
 
-    public List<Bike> getBikesByType(Bike.BikeType type) {
-        return bikeRepository.findByType(type);
+    // Bikes rated 4.0 or better, best rated first; served from the in-memory rankings
+    public KeysetPage<RankedBike> getRecommendedBikes(String city, String cursor, int size) {
+        return bikeRankingIndex.getRecommended(city, cursor, size);
     }
 
-    public List<Bike> getBikesByMaxRate(BigDecimal maxRate) {
-        return bikeRepository.findAvailableBikesByMaxRate(maxRate);
+    private static String createdAtCursor(Bike bike) {
+        return PageCursor.encode(bike.getCreatedAt(), bike.getId());
     }
 
     public Optional<Bike> getBikeById(Long id) {
@@ -57,11 +135,91 @@ public class BikeService {
     }
 
     public Bike updateBike(Bike bike) {
-        return bikeRepository.save(bike);
+        Bike.BikeStatus previousStatus = bike.getPersistedStatus();
+        Bike savedBike = bikeRepository.save(bike);
+        index(savedBike, previousStatus);
+        return savedBike;
     }
 
     public void deleteBike(Long id) {
-        bikeRepository.deleteById(id);
+        Bike.BikeStatus previousStatus = bikeRepository.findById(id).map(bike -> {
+            bikeRepository.delete(bike);
+            return bike.getStatus();
+        }).orElse(null);
+        bikeSearchIndex.remove(id);
+        bikeGeoIndex.remove(id);
+        bikeRankingIndex.remove(id);
+        bikeTextIndex.remove(id);
+        eventPublisher.publishEvent(new BikeStatusChangedEvent(id, previousStatus, null));
+    }
+    
+    // Re-places the available bikes parked at a location whose coordinates changed
+    public void refreshPickupLocation(Location location) {
+        for (Long bikeId : bikeRepository.findAvailableBikeIdsByPickupLocation(location.getId())) {
+            bikeGeoIndex.put(bikeId, location.getLatitude(), location.getLongitude());
+        }
+    }
+    
+    /**
+     * Moves one review's rating in or out of the bike's running sum, count and
+     * star histogram. Pass null as removedRating for a new review and null as
+     * addedRating for a deleted one.
+     */
+    @Transactional
+    public RatingSummary applyRatingChange(Long bikeId, Integer removedRating, Integer addedRating) {
+        int[] starDeltas = new int[5];
+        long sumDelta = 0;
+        int countDelta = 0;
+        if (removedRating != null) {
+            starDeltas[starIndex(removedRating)]--;
+            sumDelta -= removedRating;
+            countDelta--;
+        }
+        if (addedRating != null) {
+            starDeltas[starIndex(addedRating)]++;
+            sumDelta += addedRating;
+            countDelta++;
+        }
+        
+        bikeRepository.applyRatingDelta(bikeId, sumDelta, countDelta,
+            starDeltas[0], starDeltas[1], starDeltas[2], starDeltas[3], starDeltas[4]);
+        
+        RatingSummary summary = bikeRepository.findRatingAggregates(bikeId).stream()
+            .findFirst()
+            .map(RatingSummary::of)
+            .orElseThrow(() -> new RuntimeException("Bike not found"));
+        eventPublisher.publishEvent(
+            new BikeRatingChangedEvent(bikeId, summary.getAverageRating(), summary.getTotalReviews()));
+        return summary;
+    }
+    
+    private static int starIndex(int rating) {
+        if (rating < 1 || rating > 5) {
+            throw new RuntimeException("Rating must be between 1 and 5");
+        }
+        return rating - 1;
+    }
+    
+    private void index(Bike bike, Bike.BikeStatus previousStatus) {
+        eventPublisher.publishEvent(new BikeStatusChangedEvent(bike.getId(), previousStatus, bike.getStatus()));
+        bikeSearchIndex.put(bike);
+        bikeRankingIndex.put(bike);
+        bikeTextIndex.put(bike);
+        
+        Location pickupLocation = bike.getPickupLocation();
+        if (pickupLocation != null && !Hibernate.isInitialized(pickupLocation)) {
+            pickupLocation = locationRepository.findById(pickupLocation.getId()).orElse(null);
+        }
+        if (bike.getStatus() != Bike.BikeStatus.AVAILABLE || pickupLocation == null
+                || pickupLocation.getLatitude() == null || pickupLocation.getLongitude() == null) {
+            bikeGeoIndex.remove(bike.getId());
+        } else {
+            bikeGeoIndex.put(bike.getId(), pickupLocation.getLatitude(), pickupLocation.getLongitude());
+        }
+    }
+
+    public long getBikeCount() {
+        return bikeRepository.count();
     }
 
     public long getAvailableBikeCount() {
@@ -72,60 +230,115 @@ public class BikeService {
         return bikeRepository.countBikesByOwner(owner);
     }
 
-    public List<Bike> searchBikes(String location, Bike.BikeType type, BigDecimal maxRate) {
-        if (location != null && type != null) {
-            return getAvailableBikesByTypeAndLocation(type, location);
-        } else if (location != null) {
-            return getAvailableBikesByLocation(location);
-        } else if (type != null) {
-            return getBikesByType(type);
-        } else if (maxRate != null) {
-            return getBikesByMaxRate(maxRate);
-        } else {
-            return getAvailableBikes();
+    /**
+     * Advanced search, answered from the in-memory indexes. Without a text query
+     * pages run newest bike id first; with one, only bikes matching every word
+     * are kept and pages run best text match first. A start/end window keeps
+     * only bikes with no blocking booking overlapping it.
+     */
+    public KeysetPage<Bike> searchBikes(String query, LocalDateTime start, LocalDateTime end, String city, String bikeType, String fuelType,
+                                      BigDecimal minPrice, BigDecimal maxPrice, 
+                                      Integer minYear, Integer maxYear, Boolean hasHelmet, 
+                                      Boolean hasNavigation, Boolean isInsured, Double minRating,
+                                      String cursor, int size) {
+        BikeSearchCriteria criteria;
+        try {
+            criteria = new BikeSearchCriteria(city, parseEnum(Bike.BikeType.class, bikeType),
+                parseEnum(Bike.FuelType.class, fuelType), minPrice, maxPrice, minYear, maxYear,
+                hasHelmet, hasNavigation, isInsured, minRating);
+        } catch (IllegalArgumentException e) {
+            // Unknown bike or fuel type can never match
+            return new KeysetPage<>(new ArrayList<>(), null);
         }
+        checkWindow(start, end);
+        
+        if (query != null && !query.isBlank()) {
+            return searchBikesByText(query, criteria, start, end, cursor, size);
+        }
+        
+        PageCursor after = PageCursor.decode(cursor, 1);
+        long afterId = after != null ? after.getLong(0) : Long.MAX_VALUE;
+        List<Long> bikeIds = bikeSearchIndex.searchNewestFirst(criteria, afterId, size + 1,
+            id -> isFreeDuring(id, start, end));
+        return KeysetPage.of(findAllInOrder(bikeIds), size, bike -> PageCursor.encode(bike.getId()));
     }
     
-    // Advanced search method
-    public List<Bike> searchBikes(String city, String bikeType, String fuelType, 
-                                BigDecimal minPrice, BigDecimal maxPrice, 
-                                Integer minYear, Integer maxYear, Boolean hasHelmet, 
-                                Boolean hasNavigation, Boolean isInsured, Double minRating) {
-        return bikeRepository.findBikesByAdvancedSearch(city, bikeType, fuelType, minPrice, 
-                                                       maxPrice, minYear, maxYear, hasHelmet, 
-                                                       hasNavigation, isInsured, minRating);
-    }
-    
-    public List<Bike> findBikesNearLocation(Double latitude, Double longitude, Double radius) {
-        // Calculate bounding box for the radius
-        double latRange = radius / 111.0; // Approximate km per degree latitude
-        double lngRange = radius / (111.0 * Math.cos(Math.toRadians(latitude))); // Approximate km per degree longitude
-        
-        double minLat = latitude - latRange;
-        double maxLat = latitude + latRange;
-        double minLng = longitude - lngRange;
-        double maxLng = longitude + lngRange;
+    // Highest score first, ties broken by newest id; the cursor carries the last row's (score, id)
+    private KeysetPage<Bike> searchBikesByText(String query, BikeSearchCriteria criteria,
+                                               LocalDateTime start, LocalDateTime end, String cursor, int size) {
+        Map<Long, Double> scores = bikeTextIndex.search(query);
+        if (scores.isEmpty()) {
+            return new KeysetPage<>(new ArrayList<>(), null);
+        }
         
-        return bikeRepository.findBikesNearLocation(minLat, maxLat, minLng, maxLng);
+        PageCursor after = PageCursor.decode(cursor, 2);
+        double afterScore = after != null ? after.getDouble(0) : Double.MAX_VALUE;
+        long afterId = after != null ? after.getLong(1) : Long.MAX_VALUE;
+        Comparator<Long> bestFirst = Comparator.<Long>comparingDouble(scores::get).reversed()
+            .thenComparing(Comparator.reverseOrder());
+        // Keeps only the best size + 1 past the cursor, worst on top, instead of sorting every match
+        PriorityQueue<Long> best = new PriorityQueue<>(size + 2, bestFirst.reversed());
+        for (Long id : bikeSearchIndex.filter(criteria, scores.keySet())) {
+            double score = scores.get(id);
+            boolean pastCursor = score < afterScore || (score == afterScore && id < afterId);
+            if (pastCursor && (best.size() <= size || bestFirst.compare(id, best.peek()) < 0)
+                    && isFreeDuring(id, start, end)) {
+                best.add(id);
+                if (best.size() > size + 1) {
+                    best.poll();
+                }
+            }
+        }
+        List<Long> bikeIds = new ArrayList<>(best);
+        bikeIds.sort(bestFirst);
+        return KeysetPage.of(findAllInOrder(bikeIds), size,
+            bike -> PageCursor.encode(scores.get(bike.getId()), bike.getId()));
     }
     
-    public List<Bike> getPopularBikes() {
-        return bikeRepository.findPopularBikes();
+    // Without a window every bike counts as free
+    private boolean isFreeDuring(Long bikeId, LocalDateTime start, LocalDateTime end) {
+        return start == null || availabilityIndex.isFree(bikeId, start, end, null);
     }
     
-    public List<Bike> getRecommendedBikes() {
-        return bikeRepository.findRecommendedBikes();
+    private static void checkWindow(LocalDateTime start, LocalDateTime end) {
+        if ((start == null) != (end == null)) {
+            throw new RuntimeException("Both start and end time are required");
+        }
+        if (start != null && !end.isAfter(start)) {
+            throw new RuntimeException("End time must be after start time");
+        }
     }
     
-    public List<Bike> getBikesByRating(Double minRating) {
-        return bikeRepository.findBikesByMinRating(minRating);
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return Enum.valueOf(type, value.trim().toUpperCase());
     }
     
-    public List<Bike> getRecentlyAddedBikes() {
-        return bikeRepository.findRecentlyAddedBikes();
+    public List<Bike> findBikesNearLocation(Double latitude, Double longitude, Double radius) {
+        List<Long> bikeIds = bikeGeoIndex.findWithinRadius(latitude, longitude, radius).stream()
+            .map(BikeGeoIndex.Hit::getBikeId)
+            .toList();
+        return findAllInOrder(bikeIds);
     }
     
-    public List<Bike> getBikesByPriceRange(BigDecimal minPrice, BigDecimal maxPrice) {
-        return bikeRepository.findBikesByPriceRange(minPrice, maxPrice);
+    // Loads bikes by id while keeping the order the ids were ranked in
+    private List<Bike> findAllInOrder(List<Long> bikeIds) {
+        if (bikeIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Bike> bikesById = new HashMap<>();
+        for (Bike bike : bikeRepository.findAllById(bikeIds)) {
+            bikesById.put(bike.getId(), bike);
+        }
+        List<Bike> bikes = new ArrayList<>(bikeIds.size());
+        for (Long bikeId : bikeIds) {
+            Bike bike = bikesById.get(bikeId);
+            if (bike != null) {
+                bikes.add(bike);
+            }
+        }
+        return bikes;
     }
 }
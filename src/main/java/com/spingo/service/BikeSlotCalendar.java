@@ -0,0 +1,174 @@
+package com.spingo.service;
+
+import com.spingo.entity.BikeAvailability;
+import com.spingo.repository.BikeAvailabilityRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Booked hours of each bike over the next 90 days as a 2,160-bit bitmap,
+ * derived from the blocking bookings in BookingAvailabilityIndex. Bitmaps
+ * are stored in bike_availability and reloaded at startup; only rows from an
+ * earlier day are re-derived. Arrays are never modified once published, so
+ * readers need no lock, and fleet utilization is a popcount over the words.
+ */
+@Component
+public class BikeSlotCalendar {
+
+    public static final int DAYS = 90;
+    public static final int HOURS = DAYS * 24;
+    private static final int WORDS = (HOURS + 63) / 64;
+    private static final int LOCK_STRIPES = 1024;
+
+    @Autowired
+    private BikeAvailabilityRepository bikeAvailabilityRepository;
+
+    @Autowired
+    private BookingAvailabilityIndex availabilityIndex;
+
+    private volatile LocalDate firstDay = LocalDate.now();
+    private final Map<Long, long[]> bookedHoursByBike = new ConcurrentHashMap<>();
+    private final ReentrantLock[] bikeLocks = new ReentrantLock[LOCK_STRIPES];
+
+    public BikeSlotCalendar() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            bikeLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        firstDay = LocalDate.now();
+        bookedHoursByBike.clear();
+        Set<Long> stale = new HashSet<>(availabilityIndex.getScheduledBikeIds());
+        for (BikeAvailability row : bikeAvailabilityRepository.findAll()) {
+            if (row.getFirstDay().equals(firstDay)) {
+                bookedHoursByBike.put(row.getBikeId(), fromBytes(row.getBookedHours()));
+                stale.remove(row.getBikeId());
+            } else {
+                stale.add(row.getBikeId());
+            }
+        }
+        // Rows written before today, or bikes booked before the table existed
+        for (Long bikeId : stale) {
+            refresh(bikeId);
+        }
+    }
+
+    // Moves the window on at midnight; every bitmap shifts by a day, so all are re-derived
+    @Scheduled(cron = "0 0 0 * * *")
+    public void rollOver() {
+        firstDay = LocalDate.now();
+        Set<Long> bikeIds = new HashSet<>(bookedHoursByBike.keySet());
+        bikeIds.addAll(availabilityIndex.getScheduledBikeIds());
+        for (Long bikeId : bikeIds) {
+            refresh(bikeId);
+        }
+    }
+
+    /**
+     * Re-derives and stores the bike's bitmap; call after any change to its
+     * blocking bookings. Refreshes of one bike run one at a time, so the last
+     * to finish has read the latest bookings and neither the map nor the row
+     * can be left holding an older bitmap.
+     */
+    public void refresh(Long bikeId) {
+        ReentrantLock lock = lockFor(bikeId);
+        lock.lock();
+        try {
+            LocalDate day = firstDay;
+            long from = day.atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+            long[] words = new long[WORDS];
+            boolean booked = false;
+            for (long[] interval : availabilityIndex.findBlockedIntervals(bikeId, day.atStartOfDay(),
+                    day.plusDays(DAYS).atStartOfDay())) {
+                int firstHour = (int) Math.max(0, (interval[0] - from) / 3600);
+                int endHour = (int) Math.min(HOURS, (interval[1] - from + 3599) / 3600);
+                for (int hour = firstHour; hour < endHour; hour++) {
+                    words[hour >>> 6] |= 1L << hour;
+                    booked = true;
+                }
+            }
+
+            if (booked) {
+                bookedHoursByBike.put(bikeId, words);
+                BikeAvailability row = new BikeAvailability(bikeId, day, toBytes(words));
+                row.setUpdatedAt(LocalDateTime.now());
+                bikeAvailabilityRepository.save(row);
+            } else if (bookedHoursByBike.remove(bikeId) != null || bikeAvailabilityRepository.existsById(bikeId)) {
+                bikeAvailabilityRepository.deleteById(bikeId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public AvailabilityCalendar getCalendar(Long bikeId) {
+        long[] words = bookedHoursByBike.get(bikeId);
+        int[] days = new int[DAYS];
+        if (words == null) {
+            return new AvailabilityCalendar(bikeId, firstDay, days, 0);
+        }
+        for (int hour = 0; hour < HOURS; hour++) {
+            if ((words[hour >>> 6] & (1L << hour)) != 0) {
+                days[hour / 24] |= 1 << (hour % 24);
+            }
+        }
+        return new AvailabilityCalendar(bikeId, firstDay, days, popcount(words));
+    }
+
+    // Share of the fleet's bike-hours over the window that are booked
+    public double getFleetUtilization(long bikeCount) {
+        if (bikeCount == 0) {
+            return 0.0;
+        }
+        long bookedHours = 0;
+        for (long[] words : bookedHoursByBike.values()) {
+            bookedHours += popcount(words);
+        }
+        return (double) bookedHours / (bikeCount * HOURS);
+    }
+
+    private ReentrantLock lockFor(Long bikeId) {
+        long hash = bikeId * 0x9E3779B97F4A7C15L;
+        return bikeLocks[(int) (hash >>> 32) & (LOCK_STRIPES - 1)];
+    }
+
+    private static int popcount(long[] words) {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    private static byte[] toBytes(long[] words) {
+        ByteBuffer buffer = ByteBuffer.allocate(WORDS * Long.BYTES);
+        for (long word : words) {
+            buffer.putLong(word);
+        }
+        return buffer.array();
+    }
+
+    private static long[] fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long[] words = new long[WORDS];
+        for (int i = 0; i < WORDS && buffer.remaining() >= Long.BYTES; i++) {
+            words[i] = buffer.getLong();
+        }
+        return words;
+    }
+}
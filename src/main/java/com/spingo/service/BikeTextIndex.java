@@ -0,0 +1,203 @@
+package com.spingo.service;
+
+import com.spingo.entity.Bike;
+import com.spingo.repository.BikeRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over the text of available bikes (name, brand,
+ * model, color and description) used by the free-text search. Terms are kept
+ * sorted so a query word also matches every indexed word it is a prefix of;
+ * matches are ranked with BM25, with name, brand and model weighted above
+ * color and description.
+ */
+@Component
+public class BikeTextIndex {
+
+    // BM25 term frequency saturation and length normalisation
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // A word only reached through prefix expansion scores less than an exact match
+    private static final double PREFIX_WEIGHT = 0.7;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private static final int NAME_WEIGHT = 3;
+    private static final int BRAND_WEIGHT = 2;
+    private static final int MODEL_WEIGHT = 2;
+    private static final int TEXT_WEIGHT = 1;
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // term -> (bike id -> weighted term frequency)
+    private final TreeMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    // bike id -> its weighted terms, kept so an edit or delete can undo the old postings
+    private final Map<Long, Map<String, Integer>> termsByBike = new HashMap<>();
+    private final Map<Long, Integer> lengthsByBike = new HashMap<>();
+    private long totalLength;
+
+    @PostConstruct
+    public void rebuild() {
+        List<Bike> availableBikes = bikeRepository.findAvailableBikes();
+
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            termsByBike.clear();
+            lengthsByBike.clear();
+            totalLength = 0;
+            for (Bike bike : availableBikes) {
+                add(bike);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Adds or re-indexes a bike; bikes that are not available are dropped
+    public void put(Bike bike) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(bike.getId());
+            if (bike.getStatus() == Bike.BikeStatus.AVAILABLE) {
+                add(bike);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long bikeId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(bikeId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Scores every bike matching all words of the query. Returns an empty map
+     * when nothing matches, including when the query has no indexable words.
+     */
+    public Map<Long, Double> search(String query) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Map<Long, Double>> perWord = new ArrayList<>(words.size());
+            for (String word : words) {
+                Map<Long, Double> scores = scoreWord(word);
+                if (scores.isEmpty()) {
+                    return scores;
+                }
+                perWord.add(scores);
+            }
+
+            // Intersect starting from the rarest word so the candidate set only shrinks
+            perWord.sort(Comparator.comparingInt(Map::size));
+            Map<Long, Double> result = new HashMap<>(perWord.get(0));
+            for (int i = 1; i < perWord.size() && !result.isEmpty(); i++) {
+                Map<Long, Double> scores = perWord.get(i);
+                result.entrySet().removeIf(entry -> !scores.containsKey(entry.getKey()));
+                result.replaceAll((bikeId, score) -> score + scores.get(bikeId));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Best BM25 score each bike gets from the word or any indexed word it is a prefix of
+    private Map<Long, Double> scoreWord(String word) {
+        Map<Long, Double> scores = new HashMap<>();
+        int bikeCount = lengthsByBike.size();
+        double averageLength = bikeCount > 0 ? (double) totalLength / bikeCount : 0;
+
+        int expansions = 0;
+        for (Map.Entry<String, Map<Long, Integer>> term : postings.tailMap(word, true).entrySet()) {
+            if (!term.getKey().startsWith(word) || expansions++ == MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            Map<Long, Integer> bikes = term.getValue();
+            double idf = Math.log(1 + (bikeCount - bikes.size() + 0.5) / (bikes.size() + 0.5));
+            double weight = term.getKey().length() == word.length() ? 1.0 : PREFIX_WEIGHT;
+            for (Map.Entry<Long, Integer> posting : bikes.entrySet()) {
+                int frequency = posting.getValue();
+                double norm = K1 * (1 - B + B * lengthsByBike.get(posting.getKey()) / averageLength);
+                double score = weight * idf * frequency * (K1 + 1) / (frequency + norm);
+                scores.merge(posting.getKey(), score, Math::max);
+            }
+        }
+        return scores;
+    }
+
+    private void add(Bike bike) {
+        Map<String, Integer> terms = new HashMap<>();
+        addField(terms, bike.getName(), NAME_WEIGHT);
+        addField(terms, bike.getBrand(), BRAND_WEIGHT);
+        addField(terms, bike.getModel(), MODEL_WEIGHT);
+        addField(terms, bike.getColor(), TEXT_WEIGHT);
+        addField(terms, bike.getDescription(), TEXT_WEIGHT);
+
+        int length = 0;
+        for (Map.Entry<String, Integer> term : terms.entrySet()) {
+            postings.computeIfAbsent(term.getKey(), t -> new HashMap<>()).put(bike.getId(), term.getValue());
+            length += term.getValue();
+        }
+        termsByBike.put(bike.getId(), terms);
+        lengthsByBike.put(bike.getId(), length);
+        totalLength += length;
+    }
+
+    private void removeLocked(Long bikeId) {
+        Map<String, Integer> terms = termsByBike.remove(bikeId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms.keySet()) {
+            Map<Long, Integer> bikes = postings.get(term);
+            bikes.remove(bikeId);
+            if (bikes.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+        totalLength -= lengthsByBike.remove(bikeId);
+    }
+
+    private static void addField(Map<String, Integer> terms, String text, int weight) {
+        for (String word : tokenize(text)) {
+            terms.merge(word, weight, Integer::sum);
+        }
+    }
+
+    // Lower-cased runs of letters and digits: "Royal Enfield Classic-350" -> royal, enfield, classic, 350
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        for (String word : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
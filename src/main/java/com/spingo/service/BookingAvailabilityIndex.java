@@ -0,0 +1,238 @@
+package com.spingo.service;
+
+import com.spingo.entity.Booking;
+import com.spingo.repository.BookingRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-bike schedule of the bookings that still occupy the bike (pending,
+ * confirmed, active or extended). Each schedule is a start-sorted interval
+ * array with a running maximum of end times, so overlap checks are a binary
+ * search rather than a database round trip.
+ */
+@Component
+public class BookingAvailabilityIndex {
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    private final Map<Long, BikeSchedule> schedules = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        schedules.clear();
+        for (Object[] row : bookingRepository.findBlockingBookingIntervals()) {
+            schedule((Long) row[1]).add((Long) row[0], toEpochSecond((LocalDateTime) row[2]),
+                toEpochSecond((LocalDateTime) row[3]));
+        }
+    }
+
+    public static boolean blocks(Booking.BookingStatus status) {
+        return status == Booking.BookingStatus.PENDING
+            || status == Booking.BookingStatus.CONFIRMED
+            || status == Booking.BookingStatus.ACTIVE
+            || status == Booking.BookingStatus.EXTENDED;
+    }
+
+    // Records the booking's current window, or forgets it once it no longer blocks the bike
+    public void put(Booking booking) {
+        BikeSchedule schedule = schedule(booking.getBike().getId());
+        if (blocks(booking.getStatus())) {
+            schedule.add(booking.getId(), toEpochSecond(booking.getStartTime()), toEpochSecond(booking.getEndTime()));
+        } else {
+            schedule.remove(booking.getId());
+        }
+    }
+
+    public void remove(Booking booking) {
+        BikeSchedule schedule = schedules.get(booking.getBike().getId());
+        if (schedule != null) {
+            schedule.remove(booking.getId());
+        }
+    }
+
+    // True when no blocking booking other than ignoredBookingId overlaps [start, end)
+    public boolean isFree(Long bikeId, LocalDateTime start, LocalDateTime end, Long ignoredBookingId) {
+        BikeSchedule schedule = schedules.get(bikeId);
+        return schedule == null
+            || schedule.isFree(toEpochSecond(start), toEpochSecond(end), ignoredBookingId != null ? ignoredBookingId : -1L);
+    }
+
+    // Earliest start at or after 'from' where the bike is free for the whole duration
+    public LocalDateTime findNextFreeSlot(Long bikeId, LocalDateTime from, Duration duration) {
+        BikeSchedule schedule = schedules.get(bikeId);
+        if (schedule == null) {
+            return from;
+        }
+        long start = schedule.nextFreeSlot(toEpochSecond(from), duration.getSeconds());
+        return LocalDateTime.ofEpochSecond(start, 0, ZoneOffset.UTC);
+    }
+
+    // [start, end) epoch-second pairs of the blocking bookings overlapping [from, to)
+    public List<long[]> findBlockedIntervals(Long bikeId, LocalDateTime from, LocalDateTime to) {
+        BikeSchedule schedule = schedules.get(bikeId);
+        return schedule == null ? new ArrayList<>()
+            : schedule.intervalsBetween(toEpochSecond(from), toEpochSecond(to));
+    }
+
+    public Set<Long> getScheduledBikeIds() {
+        return schedules.keySet();
+    }
+
+    private BikeSchedule schedule(Long bikeId) {
+        return schedules.computeIfAbsent(bikeId, id -> new BikeSchedule());
+    }
+
+    private static long toEpochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    // Intervals sorted by start; maxEnds[i] is the largest end among intervals 0..i
+    static final class BikeSchedule {
+        private long[] bookingIds = new long[4];
+        private long[] starts = new long[4];
+        private long[] ends = new long[4];
+        private long[] maxEnds = new long[4];
+        private int size;
+
+        synchronized void add(long bookingId, long start, long end) {
+            removeAt(indexOf(bookingId));
+            if (size == starts.length) {
+                int capacity = size * 2;
+                bookingIds = Arrays.copyOf(bookingIds, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                maxEnds = Arrays.copyOf(maxEnds, capacity);
+            }
+            int index = firstStartAfter(start);
+            System.arraycopy(bookingIds, index, bookingIds, index + 1, size - index);
+            System.arraycopy(starts, index, starts, index + 1, size - index);
+            System.arraycopy(ends, index, ends, index + 1, size - index);
+            bookingIds[index] = bookingId;
+            starts[index] = start;
+            ends[index] = end;
+            size++;
+            recomputeMaxEnds(index);
+        }
+
+        synchronized void remove(long bookingId) {
+            removeAt(indexOf(bookingId));
+        }
+
+        synchronized boolean isFree(long start, long end, long ignoredBookingId) {
+            // Only intervals starting before 'end' can overlap; walk back while one may still reach past 'start'
+            for (int i = firstStartAtOrAfter(end) - 1; i >= 0 && maxEnds[i] > start; i--) {
+                if (ends[i] > start && bookingIds[i] != ignoredBookingId) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        synchronized List<long[]> intervalsBetween(long from, long to) {
+            List<long[]> intervals = new ArrayList<>();
+            for (int i = firstMaxEndAfter(from); i < size && starts[i] < to; i++) {
+                if (ends[i] > from) {
+                    intervals.add(new long[] {starts[i], ends[i]});
+                }
+            }
+            return intervals;
+        }
+
+        synchronized long nextFreeSlot(long from, long duration) {
+            long cursor = from;
+            for (int i = firstMaxEndAfter(cursor); i < size; i++) {
+                if (ends[i] <= cursor) {
+                    continue;
+                }
+                if (starts[i] >= cursor + duration) {
+                    return cursor;
+                }
+                cursor = ends[i];
+            }
+            return cursor;
+        }
+
+        private int indexOf(long bookingId) {
+            for (int i = 0; i < size; i++) {
+                if (bookingIds[i] == bookingId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void removeAt(int index) {
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(bookingIds, index + 1, bookingIds, index, size - index - 1);
+            System.arraycopy(starts, index + 1, starts, index, size - index - 1);
+            System.arraycopy(ends, index + 1, ends, index, size - index - 1);
+            size--;
+            recomputeMaxEnds(index);
+        }
+
+        private void recomputeMaxEnds(int from) {
+            long maxEnd = from > 0 ? maxEnds[from - 1] : Long.MIN_VALUE;
+            for (int i = from; i < size; i++) {
+                maxEnd = Math.max(maxEnd, ends[i]);
+                maxEnds[i] = maxEnd;
+            }
+        }
+
+        private int firstStartAtOrAfter(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int firstStartAfter(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid] <= time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int firstMaxEndAfter(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (maxEnds[mid] <= time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
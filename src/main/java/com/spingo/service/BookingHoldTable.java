@@ -0,0 +1,146 @@
+package com.spingo.service;
+
+import com.spingo.entity.Booking;
+import com.spingo.event.BookingStatusChangedEvent;
+import com.spingo.repository.BookingRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Time-limited holds on the slots of bookings still waiting on payment. A
+ * PENDING booking blocks its bike's window (through the availability index)
+ * only while its hold lasts; holds live in memory, so taking, renewing and
+ * dropping one costs no database write. A sweeper cancels the bookings of
+ * expired holds in batches, which frees their slots. After a restart the
+ * holds are rebuilt from the PENDING rows, expiring ttl after creation.
+ */
+@Component
+public class BookingHoldTable {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingHoldTable.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final Comparator<Hold> BY_EXPIRY = Comparator
+        .comparingLong((Hold hold) -> hold.expiresAt)
+        .thenComparingLong(hold -> hold.bookingId);
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private BookingService bookingService;
+
+    private final long ttlMillis;
+
+    private final Map<Long, Hold> holdsByBooking = new HashMap<>();
+    private final TreeSet<Hold> holdsByExpiry = new TreeSet<>(BY_EXPIRY);
+
+    public BookingHoldTable(MeterRegistry meterRegistry,
+                            @Value("${spingo.holds.ttl-seconds:900}") long ttlSeconds) {
+        this.ttlMillis = ttlSeconds * 1000;
+        meterRegistry.gauge("spingo.holds.active", this, BookingHoldTable::size);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        for (Object[] row : bookingRepository.findPendingBookingHolds()) {
+            LocalDateTime createdAt = (LocalDateTime) row[1];
+            long heldSince = createdAt != null
+                ? createdAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : System.currentTimeMillis();
+            put((Long) row[0], heldSince + ttlMillis);
+        }
+    }
+
+    // New PENDING bookings take a hold; any other status means the hold is no longer needed
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookingStatusChanged(BookingStatusChangedEvent event) {
+        if (event.getStatus() == Booking.BookingStatus.PENDING) {
+            put(event.getBookingId(), System.currentTimeMillis() + ttlMillis);
+        } else {
+            release(event.getBookingId());
+        }
+    }
+
+    // Gives a booking that is being paid for a fresh ttl; returns false when it holds nothing
+    public synchronized boolean renew(Long bookingId) {
+        if (!holdsByBooking.containsKey(bookingId)) {
+            return false;
+        }
+        put(bookingId, System.currentTimeMillis() + ttlMillis);
+        return true;
+    }
+
+    public synchronized int size() {
+        return holdsByBooking.size();
+    }
+
+    @Scheduled(fixedDelayString = "${spingo.holds.sweep-interval-ms:5000}")
+    public void releaseExpired() {
+        List<Long> expired;
+        while (!(expired = takeExpired(System.currentTimeMillis())).isEmpty()) {
+            try {
+                bookingService.releaseExpiredHolds(expired);
+            } catch (RuntimeException e) {
+                log.error("Could not release {} expired booking holds; retrying on the next sweep", expired.size(), e);
+                long retryAt = System.currentTimeMillis();
+                for (Long bookingId : expired) {
+                    put(bookingId, retryAt);
+                }
+                return;
+            }
+        }
+    }
+
+    private synchronized List<Long> takeExpired(long now) {
+        List<Long> expired = new ArrayList<>();
+        while (expired.size() < BATCH_SIZE && !holdsByExpiry.isEmpty() && holdsByExpiry.first().expiresAt <= now) {
+            Hold hold = holdsByExpiry.pollFirst();
+            holdsByBooking.remove(hold.bookingId);
+            expired.add(hold.bookingId);
+        }
+        return expired;
+    }
+
+    private synchronized void put(Long bookingId, long expiresAt) {
+        release(bookingId);
+        Hold hold = new Hold(bookingId, expiresAt);
+        holdsByBooking.put(bookingId, hold);
+        holdsByExpiry.add(hold);
+    }
+
+    private synchronized void release(Long bookingId) {
+        Hold hold = holdsByBooking.remove(bookingId);
+        if (hold != null) {
+            holdsByExpiry.remove(hold);
+        }
+    }
+
+    private static final class Hold {
+        private final Long bookingId;
+        private final long expiresAt;
+
+        Hold(Long bookingId, long expiresAt) {
+            this.bookingId = bookingId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.spingo.service;
+
+import com.spingo.entity.Booking;
+import com.spingo.event.BookingStatusChangedEvent;
+import com.spingo.repository.BookingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moves bookings from CONFIRMED to ACTIVE at their start time and from
+ * ACTIVE or EXTENDED to COMPLETED at their end time. Deadlines within the
+ * load horizon sit in a hierarchical timing wheel; one range query fills it
+ * at startup (picking up every deadline missed while the application was
+ * down) and each reload pulls in the next slice. Status change events add
+ * deadlines for bookings changed in between. Due bookings are re-checked
+ * and moved in locked batches, so stale or duplicate wheel entries are
+ * harmless.
+ */
+@Component
+public class BookingLifecycleEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingLifecycleEngine.class);
+
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_LEVELS = 3;
+    private static final int BATCH_SIZE = 500;
+    private static final long RETRY_DELAY_MILLIS = 30_000;
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Value("${spingo.lifecycle.horizon-hours:6}")
+    private long horizonHours;
+
+    private final TimingWheel<Transition> wheel =
+        new TimingWheel<>(TICK_MILLIS, WHEEL_LEVELS, System.currentTimeMillis());
+
+    // Deadlines up to here are in the wheel; later ones are left to the next reload
+    private volatile LocalDateTime loadedUntil = EARLIEST;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        load();
+    }
+
+    @Scheduled(fixedDelayString = "${spingo.lifecycle.reload-interval-ms:600000}",
+               initialDelayString = "${spingo.lifecycle.reload-interval-ms:600000}")
+    public void load() {
+        LocalDateTime from = loadedUntil;
+        // The wheel cannot hold deadlines beyond its span (about 72 hours)
+        long horizonMillis = Math.min(horizonHours * 3_600_000, wheel.getSpanMillis() - TICK_MILLIS);
+        LocalDateTime until = LocalDateTime.now().plus(Duration.ofMillis(horizonMillis));
+        // Raise the mark before querying, so a change committed meanwhile is added by its event
+        loadedUntil = until;
+        for (Object[] row : bookingRepository.findLifecycleDeadlines(from, until)) {
+            Long bookingId = (Long) row[0];
+            if (row[1] == Booking.BookingStatus.CONFIRMED) {
+                schedule(new Transition(bookingId, true), (LocalDateTime) row[2]);
+            } else {
+                schedule(new Transition(bookingId, false), (LocalDateTime) row[3]);
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookingStatusChanged(BookingStatusChangedEvent event) {
+        if (event.getStatus() == Booking.BookingStatus.CONFIRMED) {
+            schedule(new Transition(event.getBookingId(), true), event.getStartTime());
+        } else if (event.getStatus() == Booking.BookingStatus.ACTIVE
+                || event.getStatus() == Booking.BookingStatus.EXTENDED) {
+            schedule(new Transition(event.getBookingId(), false), event.getEndTime());
+        }
+    }
+
+    @Scheduled(fixedDelay = TICK_MILLIS)
+    public void tick() {
+        List<Transition> due;
+        synchronized (wheel) {
+            due = wheel.advance(System.currentTimeMillis());
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+
+        Set<Long> toStart = new LinkedHashSet<>();
+        Set<Long> toComplete = new LinkedHashSet<>();
+        for (Transition transition : due) {
+            (transition.start ? toStart : toComplete).add(transition.bookingId);
+        }
+        // Starts first: a booking whose whole window was missed is started, then completed on a later tick
+        LocalDateTime now = LocalDateTime.now();
+        for (List<Long> batch : batches(toStart)) {
+            try {
+                bookingService.startDueBookings(batch, now);
+            } catch (RuntimeException e) {
+                log.error("Could not start {} due bookings; retrying", batch.size(), e);
+                retry(batch, true);
+            }
+        }
+        for (List<Long> batch : batches(toComplete)) {
+            try {
+                bookingService.completeDueBookings(batch, now);
+            } catch (RuntimeException e) {
+                log.error("Could not complete {} due bookings; retrying", batch.size(), e);
+                retry(batch, false);
+            }
+        }
+    }
+
+    public int getPendingTransitions() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    private void schedule(Transition transition, LocalDateTime deadline) {
+        if (deadline == null || deadline.isAfter(loadedUntil)) {
+            return;
+        }
+        synchronized (wheel) {
+            wheel.add(transition, deadline.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+    }
+
+    private void retry(List<Long> bookingIds, boolean start) {
+        long retryAt = System.currentTimeMillis() + RETRY_DELAY_MILLIS;
+        synchronized (wheel) {
+            for (Long bookingId : bookingIds) {
+                wheel.add(new Transition(bookingId, start), retryAt);
+            }
+        }
+    }
+
+    private static List<List<Long>> batches(Set<Long> bookingIds) {
+        List<List<Long>> batches = new ArrayList<>();
+        List<Long> batch = new ArrayList<>(BATCH_SIZE);
+        for (Long bookingId : bookingIds) {
+            batch.add(bookingId);
+            if (batch.size() == BATCH_SIZE) {
+                batches.add(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    // Either "start this booking" or "complete this booking"
+    private static final class Transition {
+        private final Long bookingId;
+        private final boolean start;
+
+        Transition(Long bookingId, boolean start) {
+            this.bookingId = bookingId;
+            this.start = start;
+        }
+    }
+}
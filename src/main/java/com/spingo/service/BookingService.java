@@ -3,40 +3,100 @@ package com.spingo.service;
 import com.spingo.entity.Bike;
 import com.spingo.entity.Booking;
 import com.spingo.entity.User;
+import com.spingo.event.BookingCompletedEvent;
+import com.spingo.event.BookingStatusChangedEvent;
+import com.spingo.repository.BikeRepository;
 import com.spingo.repository.BookingRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class BookingService {
 
+    private static final int LOCK_STRIPES = 1024;
+
     @Autowired
     private BookingRepository bookingRepository;
 
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    @Autowired
+    private BookingAvailabilityIndex availabilityIndex;
+
+    @Autowired
+    private BikeSlotCalendar slotCalendar;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Reservations of the same bike queue up here instead of on the database row lock
+    private final ReentrantLock[] bikeLocks = new ReentrantLock[LOCK_STRIPES];
+
+    @Autowired
+    public BookingService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            bikeLocks[i] = new ReentrantLock();
+        }
+    }
+
     public Booking createBooking(Booking booking) {
-        // Check for conflicts
-        List<Booking> conflicts = bookingRepository.findConflictingBookings(
-            booking.getBike(), booking.getStartTime(), booking.getEndTime());
+        if (!booking.getEndTime().isAfter(booking.getStartTime())) {
+            throw new RuntimeException("End time must be after start time");
+        }
+        
+        Long bikeId = booking.getBike().getId();
         
-        if (!conflicts.isEmpty()) {
+        // Reject known conflicts from memory before touching the database
+        if (!availabilityIndex.isFree(bikeId, booking.getStartTime(), booking.getEndTime(), null)) {
             throw new RuntimeException("Bike is not available for the selected time period");
         }
         
-        return bookingRepository.save(booking);
+        ReentrantLock lock = lockFor(bikeId);
+        lock.lock();
+        try {
+            Booking savedBooking = transactionTemplate.execute(status -> {
+                // The bike row lock is held until commit, so the overlap check below
+                // stays valid even against reservations made on other nodes
+                lockBike(bikeId);
+                if (bookingRepository.countOverlappingBookings(bikeId, booking.getStartTime(),
+                        booking.getEndTime(), -1L) > 0) {
+                    throw new RuntimeException("Bike is not available for the selected time period");
+                }
+                return bookingRepository.save(booking);
+            });
+            availabilityIndex.put(savedBooking);
+            slotCalendar.refresh(bikeId);
+            publishStatusChange(savedBooking);
+            return savedBooking;
+        } finally {
+            lock.unlock();
+        }
     }
 
     public List<Booking> getAllBookings() {
         return bookingRepository.findAll();
     }
 
-    public List<Booking> getUserBookings(User user) {
-        return bookingRepository.findUserBookingsOrderByDate(user);
-    }
-
     public List<Booking> getBikeBookings(Bike bike) {
         return bookingRepository.findByBike(bike);
     }
@@ -58,7 +118,11 @@ public class BookingService {
     }
 
     public Booking updateBooking(Booking booking) {
-        return bookingRepository.save(booking);
+        Booking savedBooking = bookingRepository.save(booking);
+        availabilityIndex.put(savedBooking);
+        slotCalendar.refresh(savedBooking.getBike().getId());
+        publishStatusChange(savedBooking);
+        return savedBooking;
     }
 
     public void cancelBooking(Long id) {
@@ -71,42 +135,101 @@ public class BookingService {
         
         booking.setStatus(Booking.BookingStatus.CANCELLED);
         bookingRepository.save(booking);
+        availabilityIndex.remove(booking);
+        slotCalendar.refresh(booking.getBike().getId());
+        publishStatusChange(booking);
     }
 
     public void extendBooking(Long id, LocalDateTime newEndTime) {
-        Booking booking = bookingRepository.findById(id)
+        Booking existingBooking = bookingRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Booking not found"));
+        Long bikeId = existingBooking.getBike().getId();
         
-        if (booking.getStatus() != Booking.BookingStatus.ACTIVE) {
-            throw new RuntimeException("Can only extend active bookings");
-        }
-        
-        if (newEndTime.isBefore(booking.getEndTime())) {
-            throw new RuntimeException("New end time must be after current end time");
-        }
-        
-        // Check for conflicts with the new end time
-        List<Booking> conflicts = bookingRepository.findConflictingBookings(
-            booking.getBike(), booking.getStartTime(), newEndTime);
-        
-        // Remove current booking from conflicts
-        conflicts.removeIf(b -> b.getId().equals(booking.getId()));
-        
-        if (!conflicts.isEmpty()) {
-            throw new RuntimeException("Bike is not available for the extended time period");
+        ReentrantLock lock = lockFor(bikeId);
+        lock.lock();
+        try {
+            Booking extendedBooking = transactionTemplate.execute(status -> {
+                lockBike(bikeId);
+                Booking booking = bookingRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Booking not found"));
+                
+                if (booking.getStatus() != Booking.BookingStatus.ACTIVE) {
+                    throw new RuntimeException("Can only extend active bookings");
+                }
+                
+                if (newEndTime.isBefore(booking.getEndTime())) {
+                    throw new RuntimeException("New end time must be after current end time");
+                }
+                
+                // Check for conflicts with the new end time, ignoring the booking itself
+                if (!availabilityIndex.isFree(bikeId, booking.getEndTime(), newEndTime, booking.getId())
+                        || bookingRepository.countOverlappingBookings(bikeId, booking.getEndTime(),
+                            newEndTime, booking.getId()) > 0) {
+                    throw new RuntimeException("Bike is not available for the extended time period");
+                }
+                
+                booking.setEndTime(newEndTime);
+                booking.setStatus(Booking.BookingStatus.EXTENDED);
+                return bookingRepository.save(booking);
+            });
+            availabilityIndex.put(extendedBooking);
+            slotCalendar.refresh(bikeId);
+            publishStatusChange(extendedBooking);
+        } finally {
+            lock.unlock();
         }
-        
-        booking.setEndTime(newEndTime);
-        booking.setStatus(Booking.BookingStatus.EXTENDED);
-        bookingRepository.save(booking);
     }
 
     public void confirmBooking(Long id) {
-        Booking booking = bookingRepository.findById(id)
+        Booking booking = transactionTemplate.execute(status -> {
+            Booking confirmed = confirmLocked(id);
+            if (confirmed == null) {
+                throw new RuntimeException("Bike is no longer available for this booking");
+            }
+            return confirmed;
+        });
+        refreshAvailability(booking);
+    }
+
+    /**
+     * Confirms a paid booking inside the caller's transaction, so it commits
+     * together with the payment. A booking whose hold lapsed (and was
+     * cancelled) is reinstated if its window is still free; returns false
+     * when the slot has been taken since, and the caller refunds. The caller
+     * re-indexes the booking after commit with {@link #refreshAvailability}.
+     */
+    public boolean confirmPaidBooking(Long id) {
+        return confirmLocked(id) != null;
+    }
+
+    // Brings the in-memory availability of the booking's bike in line with its committed status
+    public void refreshAvailability(Booking booking) {
+        availabilityIndex.put(booking);
+        slotCalendar.refresh(booking.getBike().getId());
+    }
+
+    // Must run in a transaction; returns null when a cancelled booking's window has been taken
+    private Booking confirmLocked(Long id) {
+        Booking booking = bookingRepository.findByIdForUpdate(id)
             .orElseThrow(() -> new RuntimeException("Booking not found"));
         
+        if (booking.getStatus() == Booking.BookingStatus.CANCELLED) {
+            // The hold lapsed while the payment was in flight; take the slot back only if nobody else has
+            Long bikeId = booking.getBike().getId();
+            lockBike(bikeId);
+            if (bookingRepository.countOverlappingBookings(bikeId, booking.getStartTime(),
+                    booking.getEndTime(), booking.getId()) > 0) {
+                return null;
+            }
+        } else if (booking.getStatus() != Booking.BookingStatus.PENDING) {
+            // Already confirmed, or past confirmation
+            return booking;
+        }
+        
         booking.setStatus(Booking.BookingStatus.CONFIRMED);
-        bookingRepository.save(booking);
+        notificationService.createBookingConfirmation(booking.getUser(), booking.getBike().getName());
+        publishStatusChange(booking);
+        return bookingRepository.save(booking);
     }
 
     public void startBooking(Long id) {
@@ -119,18 +242,114 @@ public class BookingService {
         
         booking.setStatus(Booking.BookingStatus.ACTIVE);
         bookingRepository.save(booking);
+        publishStatusChange(booking);
     }
 
     public void completeBooking(Long id) {
-        Booking booking = bookingRepository.findById(id)
-            .orElseThrow(() -> new RuntimeException("Booking not found"));
+        Booking booking = transactionTemplate.execute(status -> {
+            Booking completed = bookingRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Booking not found"));
+            
+            if (completed.getStatus() != Booking.BookingStatus.ACTIVE
+                    && completed.getStatus() != Booking.BookingStatus.EXTENDED) {
+                throw new RuntimeException("Can only complete active bookings");
+            }
+            
+            completed.setStatus(Booking.BookingStatus.COMPLETED);
+            notificationService.createReviewRequest(completed.getUser(), completed.getBike().getName());
+            return bookingRepository.save(completed);
+        });
+        availabilityIndex.remove(booking);
+        slotCalendar.refresh(booking.getBike().getId());
+        publishStatusChange(booking);
+        eventPublisher.publishEvent(new BookingCompletedEvent(booking.getId()));
+    }
+    
+    /**
+     * Starts those of the given bookings that are still confirmed and whose
+     * start time has passed, locking and updating them in one transaction.
+     * Returns the bookings that were started.
+     */
+    public List<Booking> startDueBookings(Collection<Long> bookingIds, LocalDateTime now) {
+        return transactionTemplate.execute(status -> {
+            List<Booking> bookings = bookingRepository.findDueToStartForUpdate(bookingIds, now);
+            for (Booking booking : bookings) {
+                booking.setStatus(Booking.BookingStatus.ACTIVE);
+                publishStatusChange(booking);
+            }
+            return bookings;
+        });
+    }
+    
+    // Completes those of the given bookings that are active or extended and past their end time
+    public List<Booking> completeDueBookings(Collection<Long> bookingIds, LocalDateTime now) {
+        List<Booking> completed = transactionTemplate.execute(status -> {
+            List<Booking> bookings = bookingRepository.findDueToCompleteForUpdate(bookingIds, now);
+            for (Booking booking : bookings) {
+                booking.setStatus(Booking.BookingStatus.COMPLETED);
+                notificationService.createReviewRequest(booking.getUser(), booking.getBike().getName());
+                publishStatusChange(booking);
+                eventPublisher.publishEvent(new BookingCompletedEvent(booking.getId()));
+            }
+            return bookings;
+        });
         
-        if (booking.getStatus() != Booking.BookingStatus.ACTIVE) {
-            throw new RuntimeException("Can only complete active bookings");
+        Set<Long> bikeIds = new HashSet<>();
+        for (Booking booking : completed) {
+            availabilityIndex.remove(booking);
+            bikeIds.add(booking.getBike().getId());
         }
+        bikeIds.forEach(slotCalendar::refresh);
+        return completed;
+    }
+    
+    // Queues a ride reminder for those of the given bookings still confirmed, upcoming and not yet reminded
+    public List<Booking> sendRideReminders(Collection<Long> bookingIds, LocalDateTime now) {
+        return transactionTemplate.execute(status -> {
+            List<Booking> bookings = bookingRepository.findDueForReminderForUpdate(bookingIds, now);
+            for (Booking booking : bookings) {
+                booking.setReminderSentAt(now);
+                notificationService.createRideReminder(booking.getUser(), booking.getBike().getName(),
+                    booking.getStartTime());
+            }
+            return bookings;
+        });
+    }
+    
+    // Cancels those of the given bookings still waiting on payment, freeing the slots their holds kept
+    public List<Booking> releaseExpiredHolds(Collection<Long> bookingIds) {
+        List<Booking> released = transactionTemplate.execute(status -> {
+            List<Booking> bookings = bookingRepository.findPendingForUpdate(bookingIds);
+            for (Booking booking : bookings) {
+                booking.setStatus(Booking.BookingStatus.CANCELLED);
+                publishStatusChange(booking);
+            }
+            return bookings;
+        });
         
-        booking.setStatus(Booking.BookingStatus.COMPLETED);
-        bookingRepository.save(booking);
+        Set<Long> bikeIds = new HashSet<>();
+        for (Booking booking : released) {
+            availabilityIndex.remove(booking);
+            bikeIds.add(booking.getBike().getId());
+        }
+        bikeIds.forEach(slotCalendar::refresh);
+        return released;
+    }
+    
+    public boolean isBikeAvailable(Bike bike, LocalDateTime startTime, LocalDateTime endTime) {
+        return availabilityIndex.isFree(bike.getId(), startTime, endTime, null);
+    }
+    
+    public LocalDateTime findNextAvailableSlot(Bike bike, LocalDateTime from, Duration duration) {
+        return availabilityIndex.findNextFreeSlot(bike.getId(), from, duration);
+    }
+
+    public AvailabilityCalendar getAvailabilityCalendar(Long bikeId) {
+        return slotCalendar.getCalendar(bikeId);
+    }
+    
+    public double getFleetUtilization(long bikeCount) {
+        return slotCalendar.getFleetUtilization(bikeCount);
     }
 
     public long getCompletedBookingsCount() {
@@ -145,8 +364,28 @@ public class BookingService {
         return bookingRepository.findByUser(user);
     }
     
-    public List<Booking> getRecentBookingsForOwner(User owner) {
-        return bookingRepository.findRecentBookingsForOwner(owner);
+    // A user's own bookings, newest first, with their bikes fetched
+    public KeysetPage<Booking> getUserBookings(User user, String cursor, int size) {
+        PageCursor after = PageCursor.decode(cursor, 2);
+        List<Booking> bookings = bookingRepository.findUserBookingsPage(user,
+            after != null ? after.getDateTime(0) : PageCursor.NEWEST,
+            after != null ? after.getLong(1) : Long.MAX_VALUE,
+            PageRequest.of(0, size + 1));
+        return KeysetPage.of(bookings, size, BookingService::createdAtCursor);
+    }
+    
+    // Bookings made on an owner's bikes, newest first, with their bikes fetched
+    public KeysetPage<Booking> getOwnerBookings(User owner, String cursor, int size) {
+        PageCursor after = PageCursor.decode(cursor, 2);
+        List<Booking> bookings = bookingRepository.findOwnerBookingsPage(owner,
+            after != null ? after.getDateTime(0) : PageCursor.NEWEST,
+            after != null ? after.getLong(1) : Long.MAX_VALUE,
+            PageRequest.of(0, size + 1));
+        return KeysetPage.of(bookings, size, BookingService::createdAtCursor);
+    }
+    
+    private static String createdAtCursor(Booking booking) {
+        return PageCursor.encode(booking.getCreatedAt(), booking.getId());
     }
     
     public List<Booking> getUpcomingBookings(User user) {
@@ -156,4 +395,19 @@ public class BookingService {
     public List<Booking> getActiveBookings(User user) {
         return bookingRepository.findActiveBookingsByUser(user);
     }
+    
+    private void publishStatusChange(Booking booking) {
+        eventPublisher.publishEvent(new BookingStatusChangedEvent(booking.getId(), booking.getStatus(),
+            booking.getStartTime(), booking.getEndTime()));
+    }
+    
+    private void lockBike(Long bikeId) {
+        bikeRepository.findByIdForUpdate(bikeId)
+            .orElseThrow(() -> new RuntimeException("Bike not found"));
+    }
+    
+    private ReentrantLock lockFor(Long bikeId) {
+        long hash = bikeId * 0x9E3779B97F4A7C15L;
+        return bikeLocks[(int) (hash >>> 32) & (LOCK_STRIPES - 1)];
+    }
 }
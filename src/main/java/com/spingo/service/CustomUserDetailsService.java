@@ -1,24 +1,104 @@
 package com.spingo.service;
 
-import com.spingo.entity.User;
+import com.spingo.event.UserStatusChangedEvent;
 import com.spingo.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads users for authentication as slim UserPrincipals, caching them by
+ * username for a short TTL so repeated logins skip the database. Entries
+ * are dropped when the user is updated, locked, unlocked or deleted (every
+ * UserService write publishes a UserStatusChangedEvent); the TTL bounds the
+ * staleness of anything changed elsewhere.
+ */
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
     @Autowired
     private UserRepository userRepository;
 
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Counter hits;
+    private final Counter misses;
+
+    public CustomUserDetailsService(MeterRegistry meterRegistry,
+                                    @Value("${spingo.user-details.ttl-seconds:300}") long ttlSeconds,
+                                    @Value("${spingo.user-details.max-entries:10000}") int maxEntries) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxEntries = maxEntries;
+        this.hits = meterRegistry.counter("spingo.user-details.requests", "outcome", "hit");
+        this.misses = meterRegistry.counter("spingo.user-details.requests", "outcome", "miss");
+        meterRegistry.gaugeMapSize("spingo.user-details.entries", Collections.emptyList(), entries);
+    }
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
+        long now = System.currentTimeMillis();
+        Entry cached = entries.get(username);
+        if (cached != null && cached.expiresAt > now) {
+            hits.increment();
+            return cached.principal;
+        }
+        misses.increment();
+        long generationBeforeLoad = generation.get();
+        UserPrincipal principal = userRepository.findByUsername(username)
+                .map(UserPrincipal::of)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
         
-        return user;
+        // A full cache still serves the login, it just does not remember it until the sweep makes room
+        if (entries.size() < maxEntries) {
+            Entry entry = new Entry(principal, now + ttlMillis);
+            entries.put(username, entry);
+            // A user write that landed during the load may have missed this entry; let the eviction win
+            if (generation.get() != generationBeforeLoad) {
+                entries.remove(username, entry);
+            }
+        }
+        return principal;
+    }
+
+    public void evict(String username) {
+        entries.remove(username);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserStatusChanged(UserStatusChangedEvent event) {
+        // Bumped first, so a load that read the user before this write drops its own entry
+        generation.incrementAndGet();
+        // Keyed by username, so find the user's entry by id; user writes are rare
+        entries.values().removeIf(entry -> entry.principal.getId().equals(event.getUserId()));
+    }
+
+    @Scheduled(fixedDelayString = "${spingo.user-details.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+    }
+
+    private static final class Entry {
+        private final UserPrincipal principal;
+        private final long expiresAt;
+
+        Entry(UserPrincipal principal, long expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
     }
 }
@@ -0,0 +1,96 @@
+package com.spingo.service;
+
+import com.spingo.entity.Bike;
+import com.spingo.entity.Booking;
+import com.spingo.entity.User;
+import com.spingo.repository.BikeRepository;
+import com.spingo.repository.BookingRepository;
+import com.spingo.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Figures for the dashboards. Counts come from one grouped query per entity
+ * and lists are keyset pages from BikeService and BookingService, so a
+ * dashboard costs the same handful of statements no matter how many bikes or
+ * bookings exist.
+ */
+@Service
+@Transactional(readOnly = true)
+public class DashboardStatsService {
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    @Qualifier("dashboardExecutor")
+    private Executor dashboardExecutor;
+
+    public Map<Bike.BikeStatus, Long> getBikeStatusCountsForOwner(User owner) {
+        return toCounts(Bike.BikeStatus.class, bikeRepository.countBikesByStatusForOwner(owner));
+    }
+
+    public Map<Booking.BookingStatus, Long> getBookingStatusCountsForOwner(User owner) {
+        return toCounts(Booking.BookingStatus.class, bookingRepository.countBookingsByStatusForOwner(owner));
+    }
+
+    public Map<Booking.BookingStatus, Long> getBookingStatusCountsForUser(User user) {
+        return toCounts(Booking.BookingStatus.class, bookingRepository.countBookingsByStatusForUser(user));
+    }
+
+    /**
+     * Loads the newest users, bikes and bookings concurrently, each with an
+     * index-ordered LIMIT query, so the call takes as long as the slowest feed.
+     * Bookings come with their user and bike already fetched.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public RecentActivity getRecentActivity(int limit) {
+        PageRequest newest = PageRequest.of(0, limit);
+        CompletableFuture<List<User>> users = CompletableFuture.supplyAsync(
+            () -> userRepository.findByOrderByCreatedAtDesc(newest), dashboardExecutor);
+        CompletableFuture<List<Bike>> bikes = CompletableFuture.supplyAsync(
+            () -> bikeRepository.findByOrderByCreatedAtDesc(newest), dashboardExecutor);
+        CompletableFuture<List<Booking>> bookings = CompletableFuture.supplyAsync(
+            () -> bookingRepository.findByOrderByCreatedAtDesc(newest), dashboardExecutor);
+        
+        return new RecentActivity(users.join(), bikes.join(), bookings.join());
+    }
+
+    public static long total(Map<?, Long> counts) {
+        long total = 0;
+        for (Long count : counts.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    // Every constant is present, so absent statuses read as zero
+    private static <E extends Enum<E>> Map<E, Long> toCounts(Class<E> type, List<Object[]> rows) {
+        Map<E, Long> counts = new EnumMap<>(type);
+        for (E constant : type.getEnumConstants()) {
+            counts.put(constant, 0L);
+        }
+        for (Object[] row : rows) {
+            if (row[0] != null) {
+                counts.put(type.cast(row[0]), (Long) row[1]);
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,313 @@
+package com.spingo.service;
+
+import com.spingo.entity.EmailMessage;
+import com.spingo.repository.EmailMessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers email through a persistent queue. Callers add messages inside
+ * their own transaction, so no request waits on SMTP. A scheduled drain
+ * claims due messages, holds back those over their recipient domain's rate
+ * limit, and hands the rest to the mail workers in chunks; each chunk goes
+ * out over a single SMTP connection. Sent messages are deleted, failed ones
+ * retried with exponential backoff until they run out of attempts.
+ */
+@Service
+public class EmailDeliveryService {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailDeliveryService.class);
+
+    private static final int BATCH_SIZE = 200;
+    private static final int CHUNK_SIZE = 25;
+    // A claimed message becomes due again after this long if its worker never reports back
+    private static final long CLAIM_LEASE_SECONDS = 300;
+    private static final long MAX_BACKOFF_SECONDS = 3600;
+
+    @Autowired
+    private EmailMessageRepository emailMessageRepository;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Autowired
+    @Qualifier("mailExecutor")
+    private Executor mailExecutor;
+
+    @Autowired
+    @Qualifier("mailDrainExecutor")
+    private Executor mailDrainExecutor;
+
+    @Value("${spingo.mail.enabled:false}")
+    private boolean enabled;
+
+    @Value("${spingo.mail.from:${spring.mail.username:}}")
+    private String from;
+
+    @Value("${spingo.mail.max-attempts:6}")
+    private int maxAttempts;
+
+    @Value("${spingo.mail.backoff-seconds:30}")
+    private long backoffSeconds;
+
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final DomainRateLimiter rateLimiter;
+    // Held messages by id, with the time their reserved send slot opens; claiming one again spends that slot
+    private final Map<Long, Long> reservedSlots = new ConcurrentHashMap<>();
+    private final Counter sent;
+    private final Counter failed;
+    private final Counter deferred;
+
+    @Autowired
+    public EmailDeliveryService(PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                @Value("${spingo.mail.per-domain-per-second:5}") double perDomainPerSecond,
+                                @Value("${spingo.mail.per-domain-burst:20}") int perDomainBurst) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rateLimiter = new DomainRateLimiter(perDomainPerSecond, perDomainBurst);
+        this.sent = meterRegistry.counter("spingo.mail.messages", "outcome", "sent");
+        this.failed = meterRegistry.counter("spingo.mail.messages", "outcome", "failed");
+        this.deferred = meterRegistry.counter("spingo.mail.messages", "outcome", "deferred");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Queues a message in the caller's transaction; a no-op while mail is disabled
+    public void enqueue(String recipient, String subject, String body) {
+        if (enabled && recipient != null && !recipient.isBlank()) {
+            emailMessageRepository.save(new EmailMessage(recipient, subject, body));
+        }
+    }
+
+    // Only triggers the drain; SMTP waits happen on the drain thread, never on a scheduler thread
+    @Scheduled(fixedDelayString = "${spingo.mail.poll-interval-ms:2000}")
+    public void scheduleDrain() {
+        if (!enabled || !draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            mailDrainExecutor.execute(() -> {
+                try {
+                    drain();
+                } finally {
+                    draining.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+        }
+    }
+
+    // Package-private so a drain can also be run synchronously
+    void drain() {
+        try {
+            forgetStaleReservations();
+            List<EmailMessage> batch;
+            int attempted;
+            do {
+                LocalDateTime now = LocalDateTime.now();
+                batch = transactionTemplate.execute(status -> claimBatch(now));
+                attempted = deliver(batch, now);
+                // A full batch that was all rate limited means the rest of the backlog is too
+            } while (batch.size() == BATCH_SIZE && attempted > 0);
+        } catch (RuntimeException e) {
+            log.error("Email drain failed; claimed messages are retried once their lease ends", e);
+        }
+    }
+
+    private List<EmailMessage> claimBatch(LocalDateTime now) {
+        List<EmailMessage> batch = emailMessageRepository.findDueBatchForUpdate(now, BATCH_SIZE);
+        for (EmailMessage message : batch) {
+            message.setNextAttemptAt(now.plusSeconds(CLAIM_LEASE_SECONDS));
+        }
+        return batch;
+    }
+
+    // Returns how many messages were handed to SMTP
+    private int deliver(List<EmailMessage> batch, LocalDateTime now) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        long nowMillis = System.currentTimeMillis();
+        List<EmailMessage> allowed = new ArrayList<>();
+        Map<Long, LocalDateTime> held = new HashMap<>();
+        for (EmailMessage message : batch) {
+            if (reservedSlots.remove(message.getId()) != null) {
+                // Its token was taken when it was held; it only comes due once that slot opens
+                allowed.add(message);
+                continue;
+            }
+            long waitMillis = rateLimiter.reserve(domainOf(message.getRecipient()));
+            if (waitMillis == 0) {
+                allowed.add(message);
+            } else {
+                reservedSlots.put(message.getId(), nowMillis + waitMillis);
+                held.put(message.getId(), now.plusNanos(waitMillis * 1_000_000));
+            }
+        }
+
+        List<CompletableFuture<Map<Long, String>>> chunks = new ArrayList<>();
+        for (int from = 0; from < allowed.size(); from += CHUNK_SIZE) {
+            List<EmailMessage> chunk = allowed.subList(from, Math.min(from + CHUNK_SIZE, allowed.size()));
+            chunks.add(CompletableFuture.supplyAsync(() -> send(chunk), mailExecutor));
+        }
+        Map<Long, String> failures = new HashMap<>();
+        for (CompletableFuture<Map<Long, String>> chunk : chunks) {
+            failures.putAll(chunk.join());
+        }
+
+        List<Long> sentIds = new ArrayList<>();
+        for (EmailMessage message : allowed) {
+            if (!failures.containsKey(message.getId())) {
+                sentIds.add(message.getId());
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> recordOutcome(sentIds, failures, held, now));
+        sent.increment(sentIds.size());
+        failed.increment(failures.size());
+        deferred.increment(held.size());
+        return allowed.size();
+    }
+
+    // Sends the chunk over one SMTP connection; returns the error of each message that failed, by id
+    private Map<Long, String> send(List<EmailMessage> chunk) {
+        Map<MimeMessage, Long> ids = new IdentityHashMap<>();
+        Map<Long, String> failures = new HashMap<>();
+        for (EmailMessage message : chunk) {
+            try {
+                MimeMessage mime = mailSender.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(mime, "UTF-8");
+                if (from != null && !from.isBlank()) {
+                    helper.setFrom(from);
+                }
+                helper.setTo(message.getRecipient());
+                helper.setSubject(message.getSubject());
+                helper.setText(message.getBody());
+                ids.put(mime, message.getId());
+            } catch (MessagingException e) {
+                failures.put(message.getId(), e.getMessage());
+            }
+        }
+        if (ids.isEmpty()) {
+            return failures;
+        }
+        try {
+            mailSender.send(ids.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            if (e.getFailedMessages().isEmpty()) {
+                // Nothing was attempted, e.g. the connection could not be opened
+                ids.values().forEach(id -> failures.put(id, e.getMessage()));
+            }
+            e.getFailedMessages().forEach((mime, cause) -> failures.put(ids.get(mime), cause.getMessage()));
+        } catch (MailException e) {
+            ids.values().forEach(id -> failures.put(id, e.getMessage()));
+        }
+        return failures;
+    }
+
+    private void recordOutcome(List<Long> sentIds, Map<Long, String> failures,
+                               Map<Long, LocalDateTime> held, LocalDateTime now) {
+        if (!sentIds.isEmpty()) {
+            emailMessageRepository.deleteAllByIdInBatch(sentIds);
+        }
+        List<Long> pendingIds = new ArrayList<>(failures.keySet());
+        pendingIds.addAll(held.keySet());
+        if (pendingIds.isEmpty()) {
+            return;
+        }
+        List<EmailMessage> pending = emailMessageRepository.findAllById(pendingIds);
+        for (EmailMessage message : pending) {
+            LocalDateTime heldUntil = held.get(message.getId());
+            if (heldUntil != null) {
+                // Rate limited: not an attempt, just later
+                message.setNextAttemptAt(heldUntil);
+                continue;
+            }
+            int attempts = message.getAttempts() + 1;
+            message.setAttempts(attempts);
+            message.setLastError(truncate(failures.get(message.getId())));
+            if (attempts >= maxAttempts) {
+                message.setStatus(EmailMessage.EmailStatus.FAILED);
+                log.warn("Giving up on email {} to {} after {} attempts", message.getId(), message.getRecipient(), attempts);
+            } else {
+                long backoff = Math.min(MAX_BACKOFF_SECONDS, backoffSeconds << Math.min(attempts - 1, 20));
+                message.setNextAttemptAt(now.plusSeconds(backoff));
+            }
+        }
+        emailMessageRepository.saveAll(pending);
+    }
+
+    // Slots of messages another instance ended up sending, or that were deleted, are never claimed here
+    private void forgetStaleReservations() {
+        long cutoff = System.currentTimeMillis() - CLAIM_LEASE_SECONDS * 1000;
+        reservedSlots.values().removeIf(slot -> slot < cutoff);
+    }
+
+    private static String domainOf(String recipient) {
+        int at = recipient.lastIndexOf('@');
+        return at >= 0 ? recipient.substring(at + 1).toLowerCase() : "";
+    }
+
+    private static String truncate(String error) {
+        return error != null && error.length() > 500 ? error.substring(0, 500) : error;
+    }
+
+    // One token bucket per recipient domain
+    private static final class DomainRateLimiter {
+        private final double tokensPerMilli;
+        private final int burst;
+        private final Map<String, double[]> buckets = new HashMap<>();
+
+        DomainRateLimiter(double perSecond, int burst) {
+            this.tokensPerMilli = perSecond / 1000.0;
+            this.burst = burst;
+        }
+
+        /**
+         * Takes a token, letting the bucket go into debt: returns 0 when one was
+         * available, otherwise the milliseconds until the token reserved for
+         * this caller is refilled. The n-th caller over the limit waits n/rate.
+         */
+        synchronized long reserve(String domain) {
+            long now = System.currentTimeMillis();
+            // [tokens, last refill time]
+            double[] bucket = buckets.computeIfAbsent(domain, d -> new double[] { burst, now });
+            bucket[0] = Math.min(burst, bucket[0] + (now - bucket[1]) * tokensPerMilli);
+            bucket[1] = now;
+            bucket[0] -= 1;
+            if (bucket[0] >= 0) {
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil(-bucket[0] / tokensPerMilli));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.spingo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, TTL-evicting map from idempotency keys to the result of the first
+ * request that claimed the key. Later requests with the same key get that
+ * result (or wait for it while it is still being produced) instead of
+ * repeating the work.
+ */
+@Component
+public class IdempotencyStore {
+
+    // While the store is full, at most one request per interval pays for the O(n) sweep; the rest bypass it
+    private static final long FULL_SWEEP_INTERVAL_MILLIS = 1_000;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter bypasses;
+    private final AtomicLong nextFullSweepAt = new AtomicLong();
+
+    public IdempotencyStore(MeterRegistry meterRegistry,
+                            @Value("${spingo.idempotency.ttl-seconds:600}") long ttlSeconds,
+                            @Value("${spingo.idempotency.max-entries:100000}") int maxEntries) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxEntries = maxEntries;
+        this.hits = meterRegistry.counter("spingo.idempotency.requests", "outcome", "hit");
+        this.misses = meterRegistry.counter("spingo.idempotency.requests", "outcome", "miss");
+        this.bypasses = meterRegistry.counter("spingo.idempotency.requests", "outcome", "bypass");
+        meterRegistry.gaugeMapSize("spingo.idempotency.entries", Collections.emptyList(), entries);
+    }
+
+    /**
+     * Claims the key for the caller. Returns null when the caller now owns the
+     * key and must either complete the claim or hand it to {@link #release};
+     * otherwise returns the earlier request's result.
+     */
+    public CompletableFuture<String> claim(String key, CompletableFuture<String> claim) {
+        long now = System.currentTimeMillis();
+        if (entries.size() >= maxEntries) {
+            long sweepDue = nextFullSweepAt.get();
+            if (now >= sweepDue && nextFullSweepAt.compareAndSet(sweepDue, now + FULL_SWEEP_INTERVAL_MILLIS)) {
+                evictExpired();
+            }
+            if (entries.size() >= maxEntries) {
+                // Store is full: the database unique constraints still prevent duplicates
+                bypasses.increment();
+                return null;
+            }
+        }
+
+        Entry fresh = new Entry(claim, now + ttlMillis);
+        Entry existing = entries.putIfAbsent(key, fresh);
+        if (existing != null && existing.expiresAt < now) {
+            if (entries.replace(key, existing, fresh)) {
+                existing = null;
+            } else {
+                existing = entries.putIfAbsent(key, fresh);
+            }
+        }
+
+        if (existing == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return existing.result;
+    }
+
+    // Forgets the key so a later request can try again
+    public void release(String key, CompletableFuture<String> claim, RuntimeException failure) {
+        entries.computeIfPresent(key, (k, entry) -> entry.result == claim ? null : entry);
+        claim.completeExceptionally(failure);
+    }
+
+    public void forget(String key) {
+        entries.remove(key);
+    }
+
+    public double getHitRate() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0.0 : hits.count() / total;
+    }
+
+    @Scheduled(fixedDelayString = "${spingo.idempotency.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAt < now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final CompletableFuture<String> result;
+        private final long expiresAt;
+
+        Entry(CompletableFuture<String> result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
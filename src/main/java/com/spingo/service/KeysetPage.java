@@ -0,0 +1,38 @@
+package com.spingo.service;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated list. The next page is requested with
+ * nextCursor, which encodes the sort key of this page's last row, so every
+ * page costs an index seek plus LIMIT no matter how deep it is.
+ */
+public class KeysetPage<T> {
+
+    public static final int DEFAULT_SIZE = 20;
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public KeysetPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    // 'fetched' holds up to size + 1 rows; the extra row only tells us another page exists
+    public static <T> KeysetPage<T> of(List<T> fetched, int size, Function<T, String> cursorOf) {
+        if (fetched.size() <= size) {
+            return new KeysetPage<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, size);
+        return new KeysetPage<>(items, cursorOf.apply(items.get(size - 1)));
+    }
+
+    public List<T> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
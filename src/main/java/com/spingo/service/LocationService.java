@@ -17,6 +17,9 @@ public class LocationService {
     @Autowired
     private LocationRepository locationRepository;
     
+    @Autowired
+    private BikeService bikeService;
+    
     public Location createLocation(String name, String address, String city, String state, 
                                  String pincode, Double latitude, Double longitude, 
                                  Location.LocationType type) {
@@ -55,7 +58,9 @@ public class LocationService {
     
     public Location updateLocation(Location location) {
         location.setUpdatedAt(LocalDateTime.now());
-        return locationRepository.save(location);
+        Location savedLocation = locationRepository.save(location);
+        bikeService.refreshPickupLocation(savedLocation);
+        return savedLocation;
     }
     
     public void deleteLocation(Long id) {
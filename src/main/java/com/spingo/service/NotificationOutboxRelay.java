@@ -0,0 +1,95 @@
+package com.spingo.service;
+
+import com.spingo.entity.Notification;
+import com.spingo.entity.OutboxNotification;
+import com.spingo.event.UnreadCountChangedEvent;
+import com.spingo.repository.OutboxNotificationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Moves notifications from the outbox into the notifications table. Each
+ * batch is read, inserted with one JDBC batch and deleted from the outbox in
+ * a single transaction, so a crash at any point either leaves the whole
+ * batch in the outbox for the next run or delivers it exactly once.
+ */
+@Component
+public class NotificationOutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationOutboxRelay.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_NOTIFICATION =
+        "INSERT INTO notifications (user_id, title, message, template_id, params, type, status, created_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private OutboxNotificationRepository outboxNotificationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public NotificationOutboxRelay(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${spingo.notifications.relay-interval-ms:1000}")
+    public void relay() {
+        try {
+            List<OutboxNotification> relayed;
+            do {
+                relayed = transactionTemplate.execute(status -> relayBatch());
+                // Only committed notifications are pushed to open streams
+                notificationService.pushDelivered(relayed);
+            } while (relayed.size() == BATCH_SIZE);
+        } catch (RuntimeException e) {
+            log.error("Notification outbox relay failed; the batch stays queued", e);
+        }
+    }
+
+    private List<OutboxNotification> relayBatch() {
+        List<OutboxNotification> batch = outboxNotificationRepository.findBatchForUpdate(BATCH_SIZE);
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        jdbcTemplate.batchUpdate(INSERT_NOTIFICATION, batch, batch.size(), (statement, entry) -> {
+            statement.setLong(1, entry.getUserId());
+            statement.setString(2, entry.getTitle());
+            statement.setString(3, entry.getMessage());
+            statement.setObject(4, entry.getTemplateId(), Types.SMALLINT);
+            statement.setString(5, entry.getParams());
+            statement.setString(6, entry.getType().name());
+            statement.setString(7, Notification.NotificationStatus.UNREAD.name());
+            statement.setTimestamp(8, Timestamp.valueOf(entry.getCreatedAt()));
+        });
+        outboxNotificationRepository.deleteAllByIdInBatch(batch.stream().map(OutboxNotification::getId).toList());
+        Map<Long, Long> deliveredByUser = batch.stream()
+            .collect(Collectors.groupingBy(OutboxNotification::getUserId, Collectors.counting()));
+        deliveredByUser.forEach((userId, count) ->
+            eventPublisher.publishEvent(UnreadCountChangedEvent.adjusted(userId, count)));
+        return batch;
+    }
+}
@@ -0,0 +1,151 @@
+package com.spingo.service;
+
+import com.spingo.event.NotificationCreatedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Server-sent event streams of logged-in users, keyed by user id. Streams
+ * are async servlet responses, so an idle subscriber holds a socket and an
+ * emitter but no thread. NotificationService pushes "unread-count" and
+ * "notification" events here as notifications are delivered or read; a
+ * periodic heartbeat keeps proxies from closing idle streams and weeds out
+ * dead ones. Writes never run on the caller's thread: each user is served by
+ * one single-threaded lane, so their events stay in order and a slow client
+ * delays only its lane, not the outbox relay or the request that pushed.
+ */
+@Service
+public class NotificationPushService {
+
+    private final Map<Long, Set<SseEmitter>> emittersByUser = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor[] lanes;
+    private final Counter dropped;
+
+    public NotificationPushService(MeterRegistry meterRegistry,
+                                   @Value("${spingo.notifications.stream-timeout-ms:1800000}") long timeoutMillis,
+                                   @Value("${spingo.notifications.push-lanes:4}") int laneCount,
+                                   @Value("${spingo.notifications.push-queue-capacity:10000}") int queueCapacity) {
+        this.timeoutMillis = timeoutMillis;
+        meterRegistry.gauge("spingo.notifications.streams", connections);
+        this.dropped = meterRegistry.counter("spingo.notifications.push.dropped");
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            String name = "push-" + (i + 1);
+            // A full lane drops the event rather than blocking the pusher; clients re-sync on reconnect
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name);
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (task, executor) -> dropped.increment());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdownNow();
+        }
+    }
+
+    public SseEmitter subscribe(Long userId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        // Added inside compute, so a concurrent unsubscribe cannot drop the set this emitter joins
+        emittersByUser.compute(userId, (id, emitters) -> {
+            Set<SseEmitter> joined = emitters != null ? emitters : new CopyOnWriteArraySet<>();
+            joined.add(emitter);
+            return joined;
+        });
+        connections.incrementAndGet();
+        Runnable unsubscribe = () -> unsubscribe(userId, emitter);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+        return emitter;
+    }
+
+    // Lets callers skip computing a payload nobody would receive
+    public boolean isSubscribed(Long userId) {
+        return emittersByUser.containsKey(userId);
+    }
+
+    public void pushUnreadCount(Long userId, long unreadCount) {
+        send(userId, "unread-count", unreadCount);
+    }
+
+    public void pushNotification(Long userId, Object notification) {
+        send(userId, "notification", notification);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNotificationCreated(NotificationCreatedEvent event) {
+        pushNotification(event.getUserId(), event.getPayload());
+    }
+
+    @Scheduled(fixedDelayString = "${spingo.notifications.heartbeat-interval-ms:25000}")
+    public void heartbeat() {
+        for (int i = 0; i < lanes.length; i++) {
+            int lane = i;
+            lanes[lane].execute(() -> {
+                for (Map.Entry<Long, Set<SseEmitter>> entry : emittersByUser.entrySet()) {
+                    if (laneOf(entry.getKey()) == lane) {
+                        write(entry.getKey(), entry.getValue(), () -> SseEmitter.event().comment("keep-alive"));
+                    }
+                }
+            });
+        }
+    }
+
+    private void send(Long userId, String name, Object data) {
+        Set<SseEmitter> emitters = emittersByUser.get(userId);
+        if (emitters == null) {
+            return;
+        }
+        lanes[laneOf(userId)].execute(() -> write(userId, emitters, () -> SseEmitter.event().name(name).data(data)));
+    }
+
+    // A built event cannot be sent twice, so each emitter gets a fresh one
+    private void write(Long userId, Set<SseEmitter> emitters, Supplier<SseEmitter.SseEventBuilder> event) {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(event.get());
+            } catch (IOException | IllegalStateException e) {
+                // The client went away; the servlet container completes the emitter
+                unsubscribe(userId, emitter);
+            }
+        }
+    }
+
+    private int laneOf(Long userId) {
+        return (int) Math.floorMod(userId, (long) lanes.length);
+    }
+
+    private void unsubscribe(Long userId, SseEmitter emitter) {
+        emittersByUser.computeIfPresent(userId, (id, emitters) -> {
+            if (emitters.remove(emitter)) {
+                connections.decrementAndGet();
+            }
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
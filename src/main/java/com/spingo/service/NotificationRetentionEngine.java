@@ -0,0 +1,157 @@
+package com.spingo.service;
+
+import com.spingo.event.UnreadCountChangedEvent;
+import com.spingo.repository.NotificationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes READ notifications past the read retention and any notification
+ * past the unread retention. A run walks the primary key from the lowest id
+ * to the newest one old enough to expire, deleting one id range per
+ * short transaction, and sleeps between chunks in proportion to how long
+ * the last one took so replicas and other writers keep up. Runs happen on
+ * the maintenance executor, never on the scheduler thread.
+ */
+@Component
+public class NotificationRetentionEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationRetentionEngine.class);
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    @Qualifier("maintenanceExecutor")
+    private Executor maintenanceExecutor;
+
+    @Value("${spingo.notifications.retention.read-days:30}")
+    private int readRetentionDays;
+
+    @Value("${spingo.notifications.retention.unread-days:180}")
+    private int unreadRetentionDays;
+
+    @Value("${spingo.notifications.retention.chunk-size:5000}")
+    private long chunkSize;
+
+    // Pause after each chunk, as a multiple of the time the chunk took, and at least min-pause-ms
+    @Value("${spingo.notifications.retention.throttle-ratio:1.0}")
+    private double throttleRatio;
+
+    @Value("${spingo.notifications.retention.min-pause-ms:50}")
+    private long minPauseMillis;
+
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Counter deletedRows;
+    private final AtomicLong lastRunRowsPerSecond = new AtomicLong();
+
+    @Autowired
+    public NotificationRetentionEngine(PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.deletedRows = meterRegistry.counter("spingo.notifications.retention.deleted");
+        meterRegistry.gauge("spingo.notifications.retention.rows-per-second", lastRunRowsPerSecond);
+    }
+
+    @Scheduled(cron = "${spingo.notifications.retention.cron:0 30 3 * * *}")
+    public void schedulePurge() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            maintenanceExecutor.execute(() -> {
+                try {
+                    purge();
+                } catch (RuntimeException e) {
+                    log.error("Notification retention purge failed; the next run starts again from the lowest id", e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+            log.warn("Maintenance executor is busy; notification retention purge skipped");
+        }
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public long getLastRunRowsPerSecond() {
+        return lastRunRowsPerSecond.get();
+    }
+
+    private void purge() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime readCutoff = now.minusDays(readRetentionDays);
+        LocalDateTime unreadCutoff = now.minusDays(unreadRetentionDays);
+        
+        // Nothing created after the later cutoff can expire, so the walk stops at the newest id before it
+        LocalDateTime latestCutoff = readCutoff.isAfter(unreadCutoff) ? readCutoff : unreadCutoff;
+        Long minId = notificationRepository.findMinId();
+        Long maxId = notificationRepository.findIdsCreatedBefore(latestCutoff, PageRequest.of(0, 1)).stream()
+            .findFirst()
+            .orElse(null);
+        if (minId == null || maxId == null) {
+            return;
+        }
+
+        long startedAt = System.currentTimeMillis();
+        long deleted = 0;
+        for (long fromId = minId; fromId <= maxId; fromId += chunkSize) {
+            long chunkFrom = fromId;
+            long chunkTo = Math.min(fromId + chunkSize, maxId + 1);
+            long chunkStartedAt = System.currentTimeMillis();
+            Integer chunkDeleted = transactionTemplate.execute(status -> deleteChunk(chunkFrom, chunkTo, readCutoff, unreadCutoff));
+            deleted += chunkDeleted;
+            deletedRows.increment(chunkDeleted);
+            if (!pause(System.currentTimeMillis() - chunkStartedAt)) {
+                break;
+            }
+        }
+
+        long elapsedMillis = Math.max(1, System.currentTimeMillis() - startedAt);
+        long rowsPerSecond = deleted * 1000 / elapsedMillis;
+        lastRunRowsPerSecond.set(rowsPerSecond);
+        log.info("Notification retention purge deleted {} rows in {} ms ({} rows/s)", deleted, elapsedMillis, rowsPerSecond);
+    }
+
+    private int deleteChunk(long fromId, long toId, LocalDateTime readCutoff, LocalDateTime unreadCutoff) {
+        for (Object[] row : notificationRepository.countExpiringUnreadByUserInRange(fromId, toId, unreadCutoff)) {
+            eventPublisher.publishEvent(UnreadCountChangedEvent.adjusted((Long) row[0], -(Long) row[1]));
+        }
+        return notificationRepository.deleteExpiredInRange(fromId, toId, readCutoff, unreadCutoff);
+    }
+
+    // Returns false when the thread was interrupted, i.e. the application is shutting down
+    private boolean pause(long chunkMillis) {
+        try {
+            Thread.sleep(Math.max(minPauseMillis, (long) (chunkMillis * throttleRatio)));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
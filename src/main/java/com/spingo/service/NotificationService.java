@@ -1,14 +1,23 @@
 package com.spingo.service;
 
 import com.spingo.entity.Notification;
+import com.spingo.entity.NotificationTemplate;
+import com.spingo.entity.OutboxNotification;
 import com.spingo.entity.User;
+import com.spingo.event.NotificationCreatedEvent;
+import com.spingo.event.UnreadCountChangedEvent;
 import com.spingo.repository.NotificationRepository;
+import com.spingo.repository.OutboxNotificationRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @Transactional
@@ -17,10 +26,32 @@ public class NotificationService {
     @Autowired
     private NotificationRepository notificationRepository;
     
+    @Autowired
+    private OutboxNotificationRepository outboxNotificationRepository;
+    
+    @Autowired
+    private NotificationPushService notificationPushService;
+    
+    @Autowired
+    private UnreadCounterCache unreadCounterCache;
+    
+    @Autowired
+    private EmailDeliveryService emailDeliveryService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     public Notification createNotification(User user, String title, String message, 
                                          Notification.NotificationType type) {
         Notification notification = new Notification(user, title, message, type);
-        return notificationRepository.save(notification);
+        Notification saved = notificationRepository.save(notification);
+        eventPublisher.publishEvent(UnreadCountChangedEvent.adjusted(user.getId(), 1));
+        // Pushed once the row has committed, so a stream never shows a notification that rolled back
+        if (notificationPushService.isSubscribed(user.getId())) {
+            eventPublisher.publishEvent(
+                new NotificationCreatedEvent(user.getId(), toPayload(title, message, type, saved.getCreatedAt())));
+        }
+        return saved;
     }
     
     public List<Notification> getUserNotifications(User user) {
@@ -33,13 +64,16 @@ public class NotificationService {
     }
     
     public Long getUnreadNotificationCount(User user) {
-        return notificationRepository.countUnreadNotificationsByUser(user);
+        return unreadCounterCache.getUnreadCount(user);
     }
     
     public Notification markAsRead(Long notificationId) {
         Notification notification = notificationRepository.findById(notificationId)
             .orElseThrow(() -> new RuntimeException("Notification not found"));
         
+        if (notification.getStatus() == Notification.NotificationStatus.UNREAD) {
+            eventPublisher.publishEvent(UnreadCountChangedEvent.adjusted(notification.getUser().getId(), -1));
+        }
         notification.setStatus(Notification.NotificationStatus.READ);
         notification.setReadAt(LocalDateTime.now());
         
@@ -53,46 +87,82 @@ public class NotificationService {
             notification.setReadAt(LocalDateTime.now());
         }
         notificationRepository.saveAll(unreadNotifications);
+        eventPublisher.publishEvent(UnreadCountChangedEvent.cleared(user.getId()));
     }
     
     public void deleteNotification(Long notificationId) {
-        notificationRepository.deleteById(notificationId);
+        notificationRepository.findById(notificationId).ifPresent(notification -> {
+            notificationRepository.delete(notification);
+            if (notification.getStatus() == Notification.NotificationStatus.UNREAD) {
+                eventPublisher.publishEvent(UnreadCountChangedEvent.adjusted(notification.getUser().getId(), -1));
+            }
+        });
     }
     
     public void deleteOldNotifications(User user, int daysOld) {
         LocalDateTime cutoffDate = LocalDateTime.now().minusDays(daysOld);
-        List<Notification> oldNotifications = notificationRepository
-            .findByUserAndCreatedAtAfter(user, cutoffDate);
-        
-        for (Notification notification : oldNotifications) {
-            if (notification.getCreatedAt().isBefore(cutoffDate)) {
-                notificationRepository.delete(notification);
+        notificationRepository.deleteByUserAndStatusCreatedBefore(user, Notification.NotificationStatus.READ, cutoffDate);
+        int unreadDeleted = notificationRepository.deleteByUserAndStatusCreatedBefore(user,
+            Notification.NotificationStatus.UNREAD, cutoffDate);
+        if (unreadDeleted > 0) {
+            eventPublisher.publishEvent(UnreadCountChangedEvent.adjusted(user.getId(), -unreadDeleted));
+        }
+    }
+    
+    /**
+     * Queues a notification in the outbox within the caller's transaction, so
+     * it is committed (or rolled back) with the action that caused it; the
+     * relay inserts it into the notifications table shortly after. When mail
+     * is enabled the same text is queued as an email to the user.
+     */
+    public void enqueueNotification(User user, String title, String message,
+                                    Notification.NotificationType type) {
+        outboxNotificationRepository.save(new OutboxNotification(user.getId(), title, message, type));
+        emailDeliveryService.enqueue(user.getEmail(), title, message);
+    }
+    
+    // Templated variant: only the template id and parameters are stored, the text is rendered when read
+    public void enqueueNotification(User user, NotificationTemplate template, String... params) {
+        String encoded = NotificationTemplate.encodeParams(params);
+        outboxNotificationRepository.save(new OutboxNotification(user.getId(), template, encoded));
+        emailDeliveryService.enqueue(user.getEmail(), template.getTitle(), template.render(encoded));
+    }
+    
+    // Pushes notifications the outbox relay has just committed to the users that have a stream open
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void pushDelivered(List<OutboxNotification> delivered) {
+        for (OutboxNotification entry : delivered) {
+            if (notificationPushService.isSubscribed(entry.getUserId())) {
+                notificationPushService.pushNotification(entry.getUserId(),
+                    toPayload(entry.renderTitle(), entry.renderMessage(), entry.getType(), entry.getCreatedAt()));
             }
         }
     }
     
+    private static Map<String, Object> toPayload(String title, String message,
+                                                 Notification.NotificationType type, LocalDateTime createdAt) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("title", title);
+        payload.put("message", message);
+        payload.put("type", type.name());
+        payload.put("createdAt", createdAt.toString());
+        return payload;
+    }
+    
     // Convenience methods for common notification types
-    public Notification createBookingConfirmation(User user, String bikeName) {
-        return createNotification(user, "Booking Confirmed", 
-            "Your booking for " + bikeName + " has been confirmed.", 
-            Notification.NotificationType.BOOKING_CONFIRMED);
+    public void createBookingConfirmation(User user, String bikeName) {
+        enqueueNotification(user, NotificationTemplate.BOOKING_CONFIRMED, bikeName);
     }
     
-    public Notification createPaymentSuccess(User user, String amount) {
-        return createNotification(user, "Payment Successful", 
-            "Payment of ₹" + amount + " has been processed successfully.", 
-            Notification.NotificationType.PAYMENT_SUCCESS);
+    public void createPaymentSuccess(User user, String amount) {
+        enqueueNotification(user, NotificationTemplate.PAYMENT_SUCCESS, amount);
     }
     
-    public Notification createRideReminder(User user, String bikeName, LocalDateTime startTime) {
-        return createNotification(user, "Ride Reminder", 
-            "Your ride with " + bikeName + " starts at " + startTime.toString(), 
-            Notification.NotificationType.RIDE_REMINDER);
+    public void createRideReminder(User user, String bikeName, LocalDateTime startTime) {
+        enqueueNotification(user, NotificationTemplate.RIDE_REMINDER, bikeName, startTime.toString());
     }
     
-    public Notification createReviewRequest(User user, String bikeName) {
-        return createNotification(user, "Review Request", 
-            "How was your experience with " + bikeName + "? Please leave a review.", 
-            Notification.NotificationType.REVIEW_REQUEST);
+    public void createReviewRequest(User user, String bikeName) {
+        enqueueNotification(user, NotificationTemplate.REVIEW_REQUEST, bikeName);
     }
 }
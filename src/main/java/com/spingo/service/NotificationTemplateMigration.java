@@ -0,0 +1,120 @@
+package com.spingo.service;
+
+import com.spingo.entity.NotificationTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Converts notifications stored as rendered text into template id and
+ * params. Rows are walked by primary key in chunks, each rewritten in its
+ * own short transaction; rows that match no template (free-form messages)
+ * keep their text. Converted rows are skipped on later runs, so the
+ * migration can be interrupted and resumed, and switched off once done.
+ */
+@Component
+public class NotificationTemplateMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationTemplateMigration.class);
+
+    private static final int CHUNK_SIZE = 2000;
+    private static final long PAUSE_MILLIS = 50;
+
+    private static final String SELECT_CHUNK =
+        "SELECT id, title, message FROM notifications WHERE id >= ? AND id < ? AND template_id IS NULL";
+    private static final String CONVERT_ROW =
+        "UPDATE notifications SET template_id = ?, params = ?, title = NULL, message = NULL WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    @Qualifier("maintenanceExecutor")
+    private Executor maintenanceExecutor;
+
+    @Value("${spingo.notifications.template-migration.enabled:true}")
+    private boolean enabled;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public NotificationTemplateMigration(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // ddl-auto adds the new columns but never drops NOT NULL from the old ones
+        relaxNotNull("notification_outbox", "title", "VARCHAR(255)");
+        relaxNotNull("notification_outbox", "message", "TEXT");
+        if (enabled) {
+            maintenanceExecutor.execute(this::migrate);
+        }
+    }
+
+    private void relaxNotNull(String table, String column, String definition) {
+        List<String> nullable = jdbcTemplate.queryForList(
+            "SELECT IS_NULLABLE FROM information_schema.COLUMNS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?",
+            String.class, table, column);
+        if (!nullable.isEmpty() && "NO".equals(nullable.get(0))) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " MODIFY " + column + " " + definition + " NULL");
+        }
+    }
+
+    private void migrate() {
+        try {
+            Long minId = jdbcTemplate.queryForObject(
+                "SELECT MIN(id) FROM notifications WHERE template_id IS NULL", Long.class);
+            Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM notifications", Long.class);
+            if (minId == null) {
+                return;
+            }
+            long converted = 0;
+            for (long fromId = minId; fromId <= maxId; fromId += CHUNK_SIZE) {
+                long chunkFrom = fromId;
+                long chunkTo = Math.min(fromId + CHUNK_SIZE, maxId + 1);
+                converted += transactionTemplate.execute(status -> convertChunk(chunkFrom, chunkTo));
+                Thread.sleep(PAUSE_MILLIS);
+            }
+            if (converted > 0) {
+                log.info("Converted {} notifications to templates", converted);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Notification template migration failed; it resumes on the next start", e);
+        }
+    }
+
+    private int convertChunk(long fromId, long toId) {
+        List<Object[]> updates = new ArrayList<>();
+        jdbcTemplate.query(SELECT_CHUNK, row -> {
+            String title = row.getString("title");
+            String message = row.getString("message");
+            for (NotificationTemplate template : NotificationTemplate.values()) {
+                String params = template.extractParams(title, message);
+                if (params != null) {
+                    updates.add(new Object[] { template.getId(), params, row.getLong("id") });
+                    break;
+                }
+            }
+        }, fromId, toId);
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(CONVERT_ROW, updates);
+        }
+        return updates.size();
+    }
+}
@@ -0,0 +1,77 @@
+package com.spingo.service;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor: the sort key values of a row, joined and Base64 encoded.
+ * An absent cursor decodes to sentinels that sort before every real row, so
+ * the first page uses the same seek query as every later one.
+ */
+final class PageCursor {
+
+    static final LocalDateTime NEWEST = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private final String[] values;
+
+    private PageCursor(String[] values) {
+        this.values = values;
+    }
+
+    static String encode(Object... values) {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                key.append('|');
+            }
+            key.append(values[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Returns null for a missing cursor
+    static PageCursor decode(String cursor, int size) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String[] values = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+            if (values.length != size) {
+                throw new IllegalArgumentException();
+            }
+            return new PageCursor(values);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid page cursor");
+        }
+    }
+
+    LocalDateTime getDateTime(int index) {
+        try {
+            return LocalDateTime.parse(values[index]);
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid page cursor");
+        }
+    }
+
+    long getLong(int index) {
+        return parse(index).longValue();
+    }
+
+    int getInt(int index) {
+        return parse(index).intValue();
+    }
+
+    double getDouble(int index) {
+        return parse(index).doubleValue();
+    }
+
+    private BigDecimal parse(int index) {
+        try {
+            return new BigDecimal(values[index]);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid page cursor");
+        }
+    }
+}
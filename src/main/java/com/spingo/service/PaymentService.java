@@ -2,53 +2,244 @@ package com.spingo.service;
 
 import com.spingo.entity.Booking;
 import com.spingo.entity.Payment;
+import com.spingo.event.PaymentSettledEvent;
 import com.spingo.repository.PaymentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 public class PaymentService {
 
+    private static final Logger log = LoggerFactory.getLogger(PaymentService.class);
+
     @Autowired
     private PaymentRepository paymentRepository;
 
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private BookingHoldTable bookingHoldTable;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    @Qualifier("paymentExecutor")
+    private Executor paymentExecutor;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Payments whose gateway call is queued or running, by transaction id
+    private final Map<String, CompletableFuture<Payment>> inFlightPayments = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PaymentService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
     public Payment createPayment(Booking booking, Payment.PaymentMethod paymentMethod) {
+        return createPayment(booking, paymentMethod, null);
+    }
+
+    public Payment createPayment(Booking booking, Payment.PaymentMethod paymentMethod, String idempotencyKey) {
         Payment payment = new Payment();
         payment.setBooking(booking);
         payment.setAmount(booking.getTotalAmount());
         payment.setPaymentMethod(paymentMethod);
         payment.setStatus(Payment.PaymentStatus.PENDING);
         payment.setTransactionId(generateTransactionId());
+        payment.setIdempotencyKey(idempotencyKey);
         
         return paymentRepository.save(payment);
     }
 
+    /**
+     * Creates (or reuses) the booking's payment and submits it. Requests that
+     * repeat an idempotency key get the first request's payment back, waiting
+     * for it if that request is still running, and never reach the gateway a
+     * second time. Without a key, or when the key store is full, duplicates are
+     * still caught by the unique booking constraint and the in-flight map.
+     */
+    public Payment checkout(Booking booking, Payment.PaymentMethod paymentMethod,
+                            String paymentGatewayResponse, String idempotencyKey) {
+        // Keep the slot held while the gateway works; a lapsed hold may already have freed it
+        if (booking.getStatus() == Booking.BookingStatus.PENDING && !bookingHoldTable.renew(booking.getId())) {
+            throw new RuntimeException("Booking hold has expired, please book again");
+        }
+        
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            Payment payment = findOrCreatePayment(booking, paymentMethod, null);
+            return submitPayment(payment.getTransactionId(), paymentMethod, paymentGatewayResponse);
+        }
+        
+        String key = "payment:" + booking.getId() + ":" + idempotencyKey;
+        CompletableFuture<String> claim = new CompletableFuture<>();
+        CompletableFuture<String> earlier = idempotencyStore.claim(key, claim);
+        if (earlier != null) {
+            String transactionId;
+            try {
+                transactionId = earlier.join();
+            } catch (CompletionException e) {
+                throw new RuntimeException("Payment could not be processed: " + e.getCause().getMessage());
+            }
+            return paymentRepository.findByTransactionId(transactionId)
+                .orElseThrow(() -> new RuntimeException("Payment not found"));
+        }
+        
+        try {
+            Payment payment = findOrCreatePayment(booking, paymentMethod, idempotencyKey);
+            Payment submitted = submitPayment(payment.getTransactionId(), paymentMethod, paymentGatewayResponse);
+            claim.complete(submitted.getTransactionId());
+            return submitted;
+        } catch (RuntimeException e) {
+            idempotencyStore.release(key, claim, e);
+            throw e;
+        }
+    }
+
+    private Payment findOrCreatePayment(Booking booking, Payment.PaymentMethod paymentMethod, String idempotencyKey) {
+        Payment existing = paymentRepository.findByBooking(booking);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            return createPayment(booking, paymentMethod, idempotencyKey);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request created the booking's payment first
+            return findByBooking(booking)
+                .orElseThrow(() -> new RuntimeException("Payment not found"));
+        }
+    }
+
+    // Blocking variant: calls the gateway on the current thread and records the outcome
     public Payment processPayment(String transactionId, String paymentGatewayResponse) {
         Payment payment = paymentRepository.findByTransactionId(transactionId)
             .orElseThrow(() -> new RuntimeException("Payment not found"));
         
-        // Simulate payment processing with dummy API
-        boolean paymentSuccess = simulatePaymentProcessing(payment, paymentGatewayResponse);
+        boolean paymentSuccess = simulatePaymentProcessing(payment.getPaymentMethod(), paymentGatewayResponse);
+        return recordOutcome(transactionId, paymentSuccess, paymentGatewayResponse, false);
+    }
+
+    /**
+     * Queues the gateway call on the payment executor and returns straight away
+     * with the payment in PENDING state. The worker records the outcome and
+     * confirms the booking on success; callers follow it via getPaymentStatus
+     * or the success/failure pages. Resubmitting a transaction that is already
+     * in flight does not queue a second gateway call.
+     */
+    public Payment submitPayment(String transactionId, Payment.PaymentMethod paymentMethod,
+                                 String paymentGatewayResponse) {
+        Payment payment = transactionTemplate.execute(status -> {
+            Payment pending = paymentRepository.findByTransactionId(transactionId)
+                .orElseThrow(() -> new RuntimeException("Payment not found"));
+            if (pending.getStatus() == Payment.PaymentStatus.SUCCESS || inFlightPayments.containsKey(transactionId)) {
+                return pending;
+            }
+            pending.setPaymentMethod(paymentMethod);
+            pending.setStatus(Payment.PaymentStatus.PENDING);
+            pending.setFailureReason(null);
+            return paymentRepository.save(pending);
+        });
         
-        if (paymentSuccess) {
-            payment.setStatus(Payment.PaymentStatus.SUCCESS);
-            payment.setPaymentDate(LocalDateTime.now());
-            payment.setPaymentGatewayResponse(paymentGatewayResponse);
-            
-            // Update booking payment status
-            Booking booking = payment.getBooking();
-            booking.setPaymentStatus(Booking.PaymentStatus.PAID);
-        } else {
-            payment.setStatus(Payment.PaymentStatus.FAILED);
-            payment.setFailureReason("Payment processing failed");
+        if (payment.getStatus() == Payment.PaymentStatus.SUCCESS) {
+            return payment;
         }
         
-        return paymentRepository.save(payment);
+        CompletableFuture<Payment> outcome = new CompletableFuture<>();
+        if (inFlightPayments.putIfAbsent(transactionId, outcome) != null) {
+            return payment;
+        }
+        
+        try {
+            paymentExecutor.execute(() -> {
+                try {
+                    boolean paymentSuccess = simulatePaymentProcessing(paymentMethod, paymentGatewayResponse);
+                    Payment processedPayment = recordOutcome(transactionId, paymentSuccess, paymentGatewayResponse, true);
+                    if (paymentSuccess) {
+                        bookingService.refreshAvailability(processedPayment.getBooking());
+                    }
+                    outcome.complete(processedPayment);
+                } catch (RuntimeException e) {
+                    log.error("Payment {} could not be processed", transactionId, e);
+                    outcome.completeExceptionally(e);
+                } finally {
+                    inFlightPayments.remove(transactionId, outcome);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlightPayments.remove(transactionId, outcome);
+            throw new RuntimeException("Payment service is busy, please try again shortly");
+        }
+        
+        return payment;
+    }
+
+    // Only the user who made the booking can see its payment; to anyone else it does not exist
+    public Payment.PaymentStatus getPaymentStatus(String transactionId, Long userId) {
+        return paymentRepository.findStatusForUser(transactionId, userId)
+            .orElseThrow(() -> new RuntimeException("Payment not found"));
+    }
+
+    public boolean isInFlight(String transactionId) {
+        return inFlightPayments.containsKey(transactionId);
+    }
+
+    // With confirmBooking, a successful payment and its booking's confirmation commit together
+    private Payment recordOutcome(String transactionId, boolean paymentSuccess, String paymentGatewayResponse,
+                                  boolean confirmBooking) {
+        return transactionTemplate.execute(status -> {
+            Payment payment = paymentRepository.findByTransactionId(transactionId)
+                .orElseThrow(() -> new RuntimeException("Payment not found"));
+            
+            if (paymentSuccess && confirmBooking && !bookingService.confirmPaidBooking(payment.getBooking().getId())) {
+                // The hold lapsed and the slot was booked by someone else: give the money back
+                payment.setStatus(Payment.PaymentStatus.REFUNDED);
+                payment.setPaymentGatewayResponse(paymentGatewayResponse);
+                payment.setFailureReason("Booking hold expired and the slot was taken; payment refunded");
+                payment.getBooking().setPaymentStatus(Booking.PaymentStatus.REFUNDED);
+                log.warn("Payment {} refunded: booking {} lost its slot", transactionId, payment.getBooking().getId());
+            } else if (paymentSuccess) {
+                payment.setStatus(Payment.PaymentStatus.SUCCESS);
+                payment.setPaymentDate(LocalDateTime.now());
+                payment.setPaymentGatewayResponse(paymentGatewayResponse);
+                
+                // Update booking payment status
+                Booking booking = payment.getBooking();
+                booking.setPaymentStatus(Booking.PaymentStatus.PAID);
+                notificationService.createPaymentSuccess(booking.getUser(), payment.getAmount().toString());
+                eventPublisher.publishEvent(new PaymentSettledEvent(payment.getId(), payment.getAmount()));
+            } else {
+                payment.setStatus(Payment.PaymentStatus.FAILED);
+                payment.setFailureReason("Payment processing failed");
+            }
+            
+            return paymentRepository.save(payment);
+        });
     }
 
     public Payment refundPayment(Long paymentId, String reason) {
@@ -66,7 +257,9 @@ public class PaymentService {
         Booking booking = payment.getBooking();
         booking.setPaymentStatus(Booking.PaymentStatus.REFUNDED);
         
-        return paymentRepository.save(payment);
+        Payment refundedPayment = paymentRepository.save(payment);
+        eventPublisher.publishEvent(new PaymentSettledEvent(refundedPayment.getId(), refundedPayment.getAmount().negate()));
+        return refundedPayment;
     }
 
     public Optional<Payment> findByTransactionId(String transactionId) {
@@ -99,7 +292,7 @@ public class PaymentService {
         return "TXN_" + UUID.randomUUID().toString().replace("-", "").substring(0, 12).toUpperCase();
     }
 
-    private boolean simulatePaymentProcessing(Payment payment, String paymentGatewayResponse) {
+    private boolean simulatePaymentProcessing(Payment.PaymentMethod paymentMethod, String paymentGatewayResponse) {
         // Simulate payment processing with 90% success rate
         // In real implementation, this would call actual payment gateway APIs
         
@@ -108,7 +301,7 @@ public class PaymentService {
             Thread.sleep(2000);
             
             // Simulate different payment method success rates
-            switch (payment.getPaymentMethod()) {
+            switch (paymentMethod) {
                 case UPI:
                     return Math.random() > 0.05; // 95% success rate
                 case CREDIT_CARD:
@@ -0,0 +1,107 @@
+package com.spingo.service;
+
+import com.spingo.entity.Bike;
+import com.spingo.entity.User;
+import com.spingo.event.BikeStatusChangedEvent;
+import com.spingo.event.BookingCompletedEvent;
+import com.spingo.event.PaymentSettledEvent;
+import com.spingo.event.UserStatusChangedEvent;
+import com.spingo.repository.BikeRepository;
+import com.spingo.repository.BookingRepository;
+import com.spingo.repository.PaymentRepository;
+import com.spingo.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headline platform numbers kept in memory. Domain events from the services
+ * keep them current after each commit, and a periodic reconcile against the
+ * database repairs any drift (changes made outside the services, or events
+ * racing a reconcile). Reads never touch the database.
+ */
+@Component
+public class PlatformCounters {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    private final AtomicLong activeUsers = new AtomicLong();
+    private final AtomicLong availableBikes = new AtomicLong();
+    private final AtomicLong completedBookings = new AtomicLong();
+    private final AtomicLong revenueInPaise = new AtomicLong();
+
+    public long getActiveUsers() {
+        return activeUsers.get();
+    }
+
+    public long getAvailableBikes() {
+        return availableBikes.get();
+    }
+
+    public long getCompletedBookings() {
+        return completedBookings.get();
+    }
+
+    public double getTotalRevenue() {
+        return revenueInPaise.get() / 100.0;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${spingo.counters.reconcile-interval-ms:300000}",
+               initialDelayString = "${spingo.counters.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        activeUsers.set(userRepository.countActiveUsers());
+        availableBikes.set(bikeRepository.countAvailableBikes());
+        completedBookings.set(bookingRepository.countCompletedBookings());
+        revenueInPaise.set(toPaise(paymentRepository.sumSuccessfulAmounts()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserStatusChanged(UserStatusChangedEvent event) {
+        adjust(activeUsers, event.getPreviousStatus() == User.UserStatus.ACTIVE,
+            event.getStatus() == User.UserStatus.ACTIVE);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBikeStatusChanged(BikeStatusChangedEvent event) {
+        adjust(availableBikes, event.getPreviousStatus() == Bike.BikeStatus.AVAILABLE,
+            event.getStatus() == Bike.BikeStatus.AVAILABLE);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookingCompleted(BookingCompletedEvent event) {
+        completedBookings.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentSettled(PaymentSettledEvent event) {
+        revenueInPaise.addAndGet(toPaise(event.getRevenueChange()));
+    }
+
+    // Only a change into or out of the counted status moves the count
+    private static void adjust(AtomicLong count, boolean wasCounted, boolean isCounted) {
+        if (wasCounted != isCounted) {
+            count.addAndGet(isCounted ? 1 : -1);
+        }
+    }
+
+    private static long toPaise(BigDecimal amount) {
+        return amount != null ? amount.movePointRight(2).longValue() : 0L;
+    }
+}
@@ -0,0 +1,66 @@
+package com.spingo.service;
+
+import com.spingo.entity.Bike;
+
+import java.math.BigDecimal;
+
+// Immutable snapshot of the bike fields shown in popular and recommended listings
+public class RankedBike {
+
+    private final Long id;
+    private final String name;
+    private final String brand;
+    private final String model;
+    private final Bike.BikeType type;
+    private final String location;
+    private final String imageUrl;
+    private final BigDecimal dailyRate;
+    private final BigDecimal hourlyRate;
+    private final double averageRating;
+    private final int totalReviews;
+
+    private RankedBike(Long id, String name, String brand, String model, Bike.BikeType type, String location,
+                       String imageUrl, BigDecimal dailyRate, BigDecimal hourlyRate,
+                       double averageRating, int totalReviews) {
+        this.id = id;
+        this.name = name;
+        this.brand = brand;
+        this.model = model;
+        this.type = type;
+        this.location = location;
+        this.imageUrl = imageUrl;
+        this.dailyRate = dailyRate;
+        this.hourlyRate = hourlyRate;
+        this.averageRating = averageRating;
+        this.totalReviews = totalReviews;
+    }
+
+    public static RankedBike of(Bike bike) {
+        return new RankedBike(bike.getId(), bike.getName(), bike.getBrand(), bike.getModel(), bike.getType(),
+            bike.getLocation(), bike.getImageUrl(), bike.getDailyRate(), bike.getHourlyRate(),
+            bike.getAverageRating() != null ? bike.getAverageRating() : 0.0,
+            bike.getTotalReviews() != null ? bike.getTotalReviews() : 0);
+    }
+
+    RankedBike withRating(double averageRating, int totalReviews) {
+        return new RankedBike(id, name, brand, model, type, location, imageUrl, dailyRate, hourlyRate,
+            averageRating, totalReviews);
+    }
+
+    // Search key carrying only the fields the rankings compare
+    static RankedBike probe(Long id, double averageRating, int totalReviews) {
+        return new RankedBike(id, null, null, null, null, null, null, null, null, averageRating, totalReviews);
+    }
+
+    public Long getId() { return id; }
+    public String getName() { return name; }
+    public String getBrand() { return brand; }
+    public String getModel() { return model; }
+    public Bike.BikeType getType() { return type; }
+    public String getLocation() { return location; }
+    public String getImageUrl() { return imageUrl; }
+    public BigDecimal getDailyRate() { return dailyRate; }
+    public BigDecimal getHourlyRate() { return hourlyRate; }
+    public double getAverageRating() { return averageRating; }
+    public int getTotalReviews() { return totalReviews; }
+}
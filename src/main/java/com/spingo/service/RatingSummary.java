@@ -0,0 +1,59 @@
+package com.spingo.service;
+
+import com.spingo.entity.Bike;
+
+// Average, review count and 1-5 star histogram of a bike, read from its running aggregates
+public class RatingSummary {
+
+    private final double averageRating;
+    private final int totalReviews;
+    private final int[] starCounts;
+
+    public RatingSummary(double averageRating, int totalReviews, int[] starCounts) {
+        this.averageRating = averageRating;
+        this.totalReviews = totalReviews;
+        this.starCounts = starCounts;
+    }
+
+    public static RatingSummary of(Bike bike) {
+        return new RatingSummary(
+            valueOf(bike.getAverageRating()),
+            valueOf(bike.getTotalReviews()),
+            new int[] {
+                valueOf(bike.getOneStarReviews()),
+                valueOf(bike.getTwoStarReviews()),
+                valueOf(bike.getThreeStarReviews()),
+                valueOf(bike.getFourStarReviews()),
+                valueOf(bike.getFiveStarReviews())
+            });
+    }
+
+    // Row of [averageRating, totalReviews, oneStarReviews, ..., fiveStarReviews]
+    static RatingSummary of(Object[] row) {
+        int[] starCounts = new int[5];
+        for (int i = 0; i < 5; i++) {
+            starCounts[i] = valueOf((Integer) row[i + 2]);
+        }
+        return new RatingSummary(valueOf((Double) row[0]), valueOf((Integer) row[1]), starCounts);
+    }
+
+    public double getAverageRating() { return averageRating; }
+
+    public int getTotalReviews() { return totalReviews; }
+
+    public int getStarCount(int stars) {
+        return starCounts[stars - 1];
+    }
+
+    public int getStarPercentage(int stars) {
+        return totalReviews == 0 ? 0 : Math.round(100f * starCounts[stars - 1] / totalReviews);
+    }
+
+    private static double valueOf(Double value) {
+        return value != null ? value : 0.0;
+    }
+
+    private static int valueOf(Integer value) {
+        return value != null ? value : 0;
+    }
+}
@@ -0,0 +1,25 @@
+package com.spingo.service;
+
+import com.spingo.entity.Bike;
+import com.spingo.entity.Booking;
+import com.spingo.entity.User;
+
+import java.util.List;
+
+// Newest users, bikes and bookings shown on the admin dashboard
+public class RecentActivity {
+
+    private final List<User> users;
+    private final List<Bike> bikes;
+    private final List<Booking> bookings;
+
+    public RecentActivity(List<User> users, List<Bike> bikes, List<Booking> bookings) {
+        this.users = users;
+        this.bikes = bikes;
+        this.bookings = bookings;
+    }
+
+    public List<User> getUsers() { return users; }
+    public List<Bike> getBikes() { return bikes; }
+    public List<Booking> getBookings() { return bookings; }
+}
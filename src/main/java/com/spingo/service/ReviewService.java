@@ -4,8 +4,11 @@ import com.spingo.entity.Review;
 import com.spingo.entity.Bike;
 import com.spingo.entity.User;
 import com.spingo.entity.Booking;
+import com.spingo.repository.BikeRepository;
 import com.spingo.repository.ReviewRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,6 +25,9 @@ public class ReviewService {
     @Autowired
     private BikeService bikeService;
     
+    @Autowired
+    private BikeRepository bikeRepository;
+    
     public Review createReview(User user, Bike bike, Booking booking, Integer rating, String reviewText) {
         // Check if user has already reviewed this bike
         Optional<Review> existingReview = reviewRepository.findByUserAndBike(user, bike);
@@ -37,8 +43,7 @@ public class ReviewService {
         Review review = new Review(user, bike, booking, rating, reviewText);
         Review savedReview = reviewRepository.save(review);
         
-        // Update bike rating
-        updateBikeRating(bike);
+        bikeService.applyRatingChange(bike.getId(), null, rating);
         
         return savedReview;
     }
@@ -52,38 +57,61 @@ public class ReviewService {
     }
     
     public Double getAverageRating(Bike bike) {
-        Double averageRating = reviewRepository.findAverageRatingByBike(bike);
-        return averageRating != null ? averageRating : 0.0;
+        return getRatingSummary(bike).getAverageRating();
     }
     
     public Long getReviewCount(Bike bike) {
-        return reviewRepository.countReviewsByBike(bike);
+        return (long) getRatingSummary(bike).getTotalReviews();
+    }
+    
+    public RatingSummary getRatingSummary(Bike bike) {
+        return RatingSummary.of(bike);
     }
     
     public List<Review> getReviewsByRating(Bike bike, Integer minRating) {
         return reviewRepository.findByBikeAndRatingGreaterThanEqual(bike, minRating);
     }
     
-    private void updateBikeRating(Bike bike) {
-        Double averageRating = getAverageRating(bike);
-        Long reviewCount = getReviewCount(bike);
-        
-        bike.setAverageRating(averageRating);
-        bike.setTotalReviews(reviewCount.intValue());
-        bikeService.updateBike(bike);
+    // Seeds the running aggregates of bikes stored before they existed
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillRatingAggregates() {
+        for (Bike bike : bikeRepository.findByRatingSumIsNull()) {
+            int[] starCounts = new int[5];
+            long ratingSum = 0;
+            int totalReviews = 0;
+            for (Object[] row : reviewRepository.countReviewsByRating(bike)) {
+                int rating = (Integer) row[0];
+                int count = ((Long) row[1]).intValue();
+                starCounts[rating - 1] = count;
+                ratingSum += (long) rating * count;
+                totalReviews += count;
+            }
+            
+            bike.setRatingSum(ratingSum);
+            bike.setTotalReviews(totalReviews);
+            bike.setAverageRating(totalReviews > 0 ? (double) ratingSum / totalReviews : 0.0);
+            bike.setOneStarReviews(starCounts[0]);
+            bike.setTwoStarReviews(starCounts[1]);
+            bike.setThreeStarReviews(starCounts[2]);
+            bike.setFourStarReviews(starCounts[3]);
+            bike.setFiveStarReviews(starCounts[4]);
+            bikeService.updateBike(bike);
+        }
     }
     
     public Review updateReview(Long reviewId, Integer rating, String reviewText) {
         Review review = reviewRepository.findById(reviewId)
             .orElseThrow(() -> new RuntimeException("Review not found"));
         
+        Integer previousRating = review.getRating();
         review.setRating(rating);
         review.setReviewText(reviewText);
         
         Review updatedReview = reviewRepository.save(review);
         
-        // Update bike rating
-        updateBikeRating(review.getBike());
+        if (!previousRating.equals(rating)) {
+            bikeService.applyRatingChange(review.getBike().getId(), previousRating, rating);
+        }
         
         return updatedReview;
     }
@@ -92,10 +120,10 @@ public class ReviewService {
         Review review = reviewRepository.findById(reviewId)
             .orElseThrow(() -> new RuntimeException("Review not found"));
         
-        Bike bike = review.getBike();
+        Long bikeId = review.getBike().getId();
+        Integer rating = review.getRating();
         reviewRepository.delete(review);
         
-        // Update bike rating
-        updateBikeRating(bike);
+        bikeService.applyRatingChange(bikeId, rating, null);
     }
 }
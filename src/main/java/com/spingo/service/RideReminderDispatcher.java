@@ -0,0 +1,136 @@
+package com.spingo.service;
+
+import com.spingo.entity.Booking;
+import com.spingo.event.BookingStatusChangedEvent;
+import com.spingo.repository.BookingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Sends each confirmed booking a ride reminder lead-minutes before it
+ * starts. Upcoming start times are kept in a time-ordered queue that holds
+ * only the bookings starting within the load window; each reload pulls in
+ * the next slice and confirmation events add bookings confirmed in between,
+ * so the work per sweep depends on the reminders due, not on how many
+ * bookings lie further ahead. A booking's reminder is queued in the same
+ * transaction that stamps reminderSentAt, so it goes out exactly once, even
+ * across restarts.
+ */
+@Component
+public class RideReminderDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(RideReminderDispatcher.class);
+
+    private static final int BATCH_SIZE = 500;
+    private static final long RETRY_DELAY_MINUTES = 1;
+
+    private static final Comparator<Reminder> BY_DUE_TIME = Comparator
+        .comparing((Reminder reminder) -> reminder.dueAt)
+        .thenComparing(reminder -> reminder.bookingId);
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Value("${spingo.reminders.lead-minutes:30}")
+    private long leadMinutes;
+
+    @Value("${spingo.reminders.window-hours:2}")
+    private long windowHours;
+
+    private final TreeSet<Reminder> queue = new TreeSet<>(BY_DUE_TIME);
+
+    // Start times up to here are queued; later ones are left to the next reload
+    private volatile LocalDateTime loadedUntil;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // Bookings already started get no reminder; ones whose reminder time passed while down get it now
+        loadedUntil = LocalDateTime.now();
+        load();
+    }
+
+    @Scheduled(fixedDelayString = "${spingo.reminders.reload-interval-ms:600000}",
+               initialDelayString = "${spingo.reminders.reload-interval-ms:600000}")
+    public void load() {
+        LocalDateTime from = loadedUntil;
+        LocalDateTime until = LocalDateTime.now().plusHours(windowHours);
+        if (from == null || !until.isAfter(from)) {
+            return;
+        }
+        // Raise the mark before querying, so a booking confirmed meanwhile is added by its event
+        loadedUntil = until;
+        for (Object[] row : bookingRepository.findReminderCandidates(from, until)) {
+            add((Long) row[0], (LocalDateTime) row[1]);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookingStatusChanged(BookingStatusChangedEvent event) {
+        LocalDateTime until = loadedUntil;
+        if (event.getStatus() == Booking.BookingStatus.CONFIRMED && until != null
+                && event.getStartTime() != null && !event.getStartTime().isAfter(until)) {
+            add(event.getBookingId(), event.getStartTime());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${spingo.reminders.sweep-interval-ms:5000}")
+    public void dispatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> due;
+        while (!(due = takeDue(now)).isEmpty()) {
+            try {
+                bookingService.sendRideReminders(due, now);
+            } catch (RuntimeException e) {
+                log.error("Could not send {} ride reminders; retrying", due.size(), e);
+                synchronized (this) {
+                    for (Long bookingId : due) {
+                        queue.add(new Reminder(bookingId, now.plusMinutes(RETRY_DELAY_MINUTES)));
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    public synchronized int getQueuedReminders() {
+        return queue.size();
+    }
+
+    private synchronized void add(Long bookingId, LocalDateTime startTime) {
+        queue.add(new Reminder(bookingId, startTime.minusMinutes(leadMinutes)));
+    }
+
+    private synchronized List<Long> takeDue(LocalDateTime now) {
+        List<Long> due = new ArrayList<>();
+        while (due.size() < BATCH_SIZE && !queue.isEmpty() && !queue.first().dueAt.isAfter(now)) {
+            due.add(queue.pollFirst().bookingId);
+        }
+        return due;
+    }
+
+    private static final class Reminder {
+        private final Long bookingId;
+        private final LocalDateTime dueAt;
+
+        Reminder(Long bookingId, LocalDateTime dueAt) {
+            this.bookingId = bookingId;
+            this.dueAt = dueAt;
+        }
+    }
+}
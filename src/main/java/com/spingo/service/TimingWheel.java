@@ -0,0 +1,125 @@
+package com.spingo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel. Level l has 64 buckets, each spanning 64^l
+ * ticks; an entry sits in the lowest level whose range reaches its deadline
+ * and cascades one level down each time the wheel turns past its bucket, so
+ * adding and firing cost O(levels) however many entries are pending.
+ * Not thread safe; callers synchronise.
+ */
+final class TimingWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+
+    private final long tickMillis;
+    private final int levels;
+    private final List<Entry<T>>[] buckets;
+    private final List<T> due = new ArrayList<>();
+    private long currentTick;
+    private int size;
+
+    TimingWheel(long tickMillis, int levels, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.levels = levels;
+        this.buckets = newBuckets(levels * SLOTS);
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    // Generic arrays cannot be created directly; every slot starts empty, so the cast is safe
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> List<Entry<T>>[] newBuckets(int count) {
+        return new List[count];
+    }
+
+    // Furthest a deadline may lie ahead of the current tick
+    long getSpanMillis() {
+        return tickMillis << (BITS * levels);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Returns false when the deadline lies beyond the wheel's span; past deadlines fire on the next advance
+    boolean add(T value, long deadlineMillis) {
+        // Round up so an entry never fires before its deadline
+        return place(value, (deadlineMillis + tickMillis - 1) / tickMillis);
+    }
+
+    // Turns the wheel up to nowMillis and returns every value whose deadline has passed
+    List<T> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Higher levels first, so entries they release can land in the buckets cascaded next
+            for (int level = levels - 1; level >= 1; level--) {
+                if ((currentTick & ((1L << (BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) ((currentTick >>> (BITS * level)) & MASK));
+                }
+            }
+            List<Entry<T>> expired = take(0, (int) (currentTick & MASK));
+            if (expired != null) {
+                for (Entry<T> entry : expired) {
+                    due.add(entry.value);
+                }
+            }
+        }
+        List<T> fired = new ArrayList<>(due);
+        size -= fired.size();
+        due.clear();
+        return fired;
+    }
+
+    private boolean place(T value, long tick) {
+        long delta = tick - currentTick;
+        if (delta <= 0) {
+            due.add(value);
+            size++;
+            return true;
+        }
+        for (int level = 0; level < levels; level++) {
+            if (delta < 1L << (BITS * (level + 1))) {
+                int index = level * SLOTS + (int) ((tick >>> (BITS * level)) & MASK);
+                if (buckets[index] == null) {
+                    buckets[index] = new ArrayList<>();
+                }
+                buckets[index].add(new Entry<>(value, tick));
+                size++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void cascade(int level, int slot) {
+        List<Entry<T>> entries = take(level, slot);
+        if (entries != null) {
+            for (Entry<T> entry : entries) {
+                size--;
+                place(entry.value, entry.tick);
+            }
+        }
+    }
+
+    private List<Entry<T>> take(int level, int slot) {
+        int index = level * SLOTS + slot;
+        List<Entry<T>> entries = buckets[index];
+        buckets[index] = null;
+        return entries;
+    }
+
+    private static final class Entry<T> {
+        private final T value;
+        private final long tick;
+
+        Entry(T value, long tick) {
+            this.value = value;
+            this.tick = tick;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.spingo.service;
+
+import com.spingo.entity.User;
+import com.spingo.event.UnreadCountChangedEvent;
+import com.spingo.repository.NotificationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unread notification counts of recently active users. A count is loaded on
+ * first read and then kept current by the change events NotificationService
+ * and the outbox relay publish on commit, so dashboard and badge reads skip
+ * the COUNT query. The least recently used users are evicted past the size
+ * limit. A periodic reconcile re-counts the cached users and corrects any
+ * drift, such as a change that committed while a count was being loaded.
+ */
+@Component
+public class UnreadCounterCache {
+
+    private static final int RECONCILE_BATCH_SIZE = 500;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private NotificationPushService notificationPushService;
+
+    private final LinkedHashMap<Long, Entry> entries;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter corrections;
+
+    public UnreadCounterCache(MeterRegistry meterRegistry,
+                              @Value("${spingo.notifications.unread-cache.max-entries:10000}") int maxEntries) {
+        // Access order plus removeEldestEntry gives LRU eviction
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.hits = meterRegistry.counter("spingo.notifications.unread-cache.requests", "outcome", "hit");
+        this.misses = meterRegistry.counter("spingo.notifications.unread-cache.requests", "outcome", "miss");
+        this.corrections = meterRegistry.counter("spingo.notifications.unread-cache.corrections");
+        meterRegistry.gauge("spingo.notifications.unread-cache.entries", this, UnreadCounterCache::size);
+    }
+
+    public long getUnreadCount(User user) {
+        Long cached = lookup(user.getId());
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        long count = notificationRepository.countUnreadNotificationsByUser(user);
+        warm(user.getId(), count);
+        return count;
+    }
+
+    public double getHitRate() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0.0 : hits.count() / total;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUnreadCountChanged(UnreadCountChangedEvent event) {
+        Long userId = event.getUserId();
+        synchronized (this) {
+            Entry entry = entries.get(userId);
+            if (entry != null) {
+                entry.count = event.isCleared() ? 0 : Math.max(0, entry.count + event.getDelta());
+                entry.version++;
+            }
+        }
+        if (notificationPushService.isSubscribed(userId)) {
+            Long count = lookup(userId);
+            if (count == null) {
+                count = countByUserIds(List.of(userId)).getOrDefault(userId, 0L);
+                warm(userId, count);
+            }
+            notificationPushService.pushUnreadCount(userId, count);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${spingo.notifications.unread-cache.reconcile-interval-ms:300000}",
+               initialDelayString = "${spingo.notifications.unread-cache.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        // Holding the entries themselves lets the reconcile skip lookups that would reorder the LRU
+        Map<Long, Entry> snapshot;
+        Map<Long, Long> versions;
+        synchronized (this) {
+            snapshot = new HashMap<>(entries);
+            versions = new HashMap<>(entries.size());
+            entries.forEach((userId, entry) -> versions.put(userId, entry.version));
+        }
+        List<Long> userIds = new ArrayList<>(snapshot.keySet());
+        for (int from = 0; from < userIds.size(); from += RECONCILE_BATCH_SIZE) {
+            List<Long> batch = userIds.subList(from, Math.min(from + RECONCILE_BATCH_SIZE, userIds.size()));
+            Map<Long, Long> counts = countByUserIds(batch);
+            synchronized (this) {
+                for (Long userId : batch) {
+                    Entry entry = snapshot.get(userId);
+                    long actual = counts.getOrDefault(userId, 0L);
+                    // An entry changed since the snapshot may already be ahead of the counts read
+                    if (entry.version == versions.get(userId) && entry.count != actual) {
+                        entry.count = actual;
+                        entry.version++;
+                        corrections.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    private synchronized Long lookup(Long userId) {
+        Entry entry = entries.get(userId);
+        return entry != null ? entry.count : null;
+    }
+
+    private synchronized void warm(Long userId, long count) {
+        entries.putIfAbsent(userId, new Entry(count));
+    }
+
+    private Map<Long, Long> countByUserIds(List<Long> userIds) {
+        Map<Long, Long> counts = new HashMap<>();
+        for (Object[] row : notificationRepository.countUnreadNotificationsByUserIds(userIds)) {
+            counts.put((Long) row[0], (Long) row[1]);
+        }
+        return counts;
+    }
+
+    private static final class Entry {
+        private long count;
+        private long version;
+
+        Entry(long count) {
+            this.count = count;
+        }
+    }
+}
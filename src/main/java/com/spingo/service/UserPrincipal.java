@@ -0,0 +1,77 @@
+package com.spingo.service;
+
+import com.spingo.entity.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The logged-in user as kept in the security context and the session: an
+ * immutable copy of the few fields authentication and the controllers need,
+ * instead of the JPA entity with its lazy collections. Controllers that need
+ * the row itself go through UserService.
+ */
+public final class UserPrincipal implements UserDetails {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+    private final String username;
+    private final String password;
+    private final String fullName;
+    private final String city;
+    private final User.AccountType accountType;
+    private final User.UserStatus status;
+    private final List<GrantedAuthority> authorities;
+
+    private UserPrincipal(User user) {
+        this.id = user.getId();
+        this.username = user.getUsername();
+        this.password = user.getPassword();
+        this.fullName = user.getFullName();
+        this.city = user.getCity();
+        this.accountType = user.getAccountType();
+        this.status = user.getStatus();
+        this.authorities = List.of(new SimpleGrantedAuthority("ROLE_" + accountType.name()));
+    }
+
+    public static UserPrincipal of(User user) {
+        return new UserPrincipal(user);
+    }
+
+    public Long getId() { return id; }
+    public String getFullName() { return fullName; }
+    public String getCity() { return city; }
+    public User.AccountType getAccountType() { return accountType; }
+    public User.UserStatus getStatus() { return status; }
+
+    @Override
+    public String getUsername() { return username; }
+
+    @Override
+    public String getPassword() { return password; }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() { return authorities; }
+
+    @Override
+    public boolean isAccountNonExpired() { return true; }
+
+    @Override
+    public boolean isAccountNonLocked() { return status != User.UserStatus.LOCKED; }
+
+    @Override
+    public boolean isCredentialsNonExpired() { return true; }
+
+    @Override
+    public boolean isEnabled() { return status == User.UserStatus.ACTIVE; }
+
+    @Override
+    public String toString() {
+        // Never print the password hash
+        return "UserPrincipal[id=" + id + ", username=" + username + "]";
+    }
+}
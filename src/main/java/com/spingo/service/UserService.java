@@ -2,7 +2,9 @@ package com.spingo.service;
 
 import com.spingo.entity.User;
 import com.spingo.repository.UserRepository;
+import com.spingo.event.UserStatusChangedEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -18,6 +20,9 @@ public class UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     public User registerUser(User user) {
         // Check if username, email, phone, or driving license already exists
         if (userRepository.existsByUsername(user.getUsername())) {
@@ -36,7 +41,9 @@ public class UserService {
         // Encode password
         user.setPassword(passwordEncoder.encode(user.getPassword()));
         
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(new UserStatusChangedEvent(savedUser.getId(), null, savedUser.getStatus()));
+        return savedUser;
     }
 
     public Optional<User> findByUsername(String username) {
@@ -51,6 +58,16 @@ public class UserService {
         return userRepository.findById(id);
     }
 
+    // The logged-in user's row as a lazy reference: enough for queries and associations, loaded only when read
+    public User getReference(UserPrincipal principal) {
+        return userRepository.getReferenceById(principal.getId());
+    }
+    
+    public User getCurrentUser(UserPrincipal principal) {
+        return userRepository.findById(principal.getId())
+            .orElseThrow(() -> new RuntimeException("User not found"));
+    }
+    
     public List<User> getAllUsers() {
         return userRepository.findAll();
     }
@@ -60,11 +77,17 @@ public class UserService {
     }
 
     public User updateUser(User user) {
-        return userRepository.save(user);
+        User.UserStatus previousStatus = user.getPersistedStatus();
+        User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(new UserStatusChangedEvent(savedUser.getId(), previousStatus, savedUser.getStatus()));
+        return savedUser;
     }
 
     public void deleteUser(Long id) {
-        userRepository.deleteById(id);
+        userRepository.findById(id).ifPresent(user -> {
+            userRepository.delete(user);
+            eventPublisher.publishEvent(new UserStatusChangedEvent(id, user.getStatus(), null));
+        });
     }
 
     public long getActiveUserCount() {
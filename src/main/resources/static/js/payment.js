@@ -16,6 +16,33 @@ function initializePaymentPage() {
     
     // Initialize form submission
     initializeFormSubmission();
+    
+    // Follow a payment that is still being processed
+    initializePaymentStatusPolling();
+}
+
+function initializePaymentStatusPolling() {
+    const statusElement = document.getElementById('payment-status');
+    if (!statusElement) {
+        return;
+    }
+    
+    const transactionId = statusElement.dataset.transactionId;
+    const poll = () => {
+        fetch(`/payments/status/${transactionId}`)
+            .then(response => response.json())
+            .then(result => {
+                if (result.status === 'SUCCESS') {
+                    window.location.href = `/payments/success/${transactionId}`;
+                } else if (result.status === 'FAILED') {
+                    window.location.href = `/payments/failure/${transactionId}`;
+                } else {
+                    setTimeout(poll, 1000);
+                }
+            })
+            .catch(() => setTimeout(poll, 3000));
+    };
+    poll();
 }
 
 function initializePaymentMethodSelection() {
@@ -0,0 +1,26 @@
+package com.spingo;
+
+import com.spingo.entity.Bike;
+import com.spingo.entity.User;
+
+import java.math.BigDecimal;
+
+// Valid, unsaved entities for repository tests and benchmarks; n keeps unique columns unique
+public final class TestData {
+
+    private TestData() {}
+
+    public static User user(long n, User.AccountType accountType) {
+        User user = new User("user" + n, "user" + n + "@example.com", String.format("9%09d", n), "secret",
+            "User " + n, 30, "MG Road", String.format("MH12%011d", n), accountType);
+        user.setCity("Pune");
+        user.setState("Maharashtra");
+        return user;
+    }
+
+    public static Bike bike(long n, User owner) {
+        return new Bike("Bike " + n, "Royal Enfield", "Classic 350", 2022, Bike.BikeType.MOTORCYCLE,
+            Bike.FuelType.PETROL, 350, "Black", String.format("MH12AB%06d", n), new BigDecimal("800.00"),
+            new BigDecimal("15000.00"), new BigDecimal("100.00"), "Pune, Maharashtra", owner);
+    }
+}
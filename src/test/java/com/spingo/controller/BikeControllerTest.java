@@ -0,0 +1,41 @@
+package com.spingo.controller;
+
+import com.spingo.service.BikeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.ui.ExtendedModelMap;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BikeControllerTest {
+
+    private final BikeController controller = new BikeController();
+
+    @BeforeEach
+    void setUp() {
+        // The window is checked before the service touches any of its collaborators
+        ReflectionTestUtils.setField(controller, "bikeService", new BikeService());
+    }
+
+    @Test
+    void reversedWindowIsAFormError() {
+        LocalDateTime start = LocalDateTime.now().plusDays(2);
+        ExtendedModelMap model = new ExtendedModelMap();
+
+        assertThat(controller.listBikes(null, null, null, start, start.minusHours(1), null, model)).isEqualTo("bikes/list");
+        assertThat(model.get("error")).isEqualTo("End time must be after start time");
+        assertThat(model.get("bikes")).isEqualTo(List.of());
+    }
+
+    @Test
+    void halfAWindowIsAFormError() {
+        ExtendedModelMap model = new ExtendedModelMap();
+
+        assertThat(controller.listBikes(null, null, null, LocalDateTime.now(), null, null, model)).isEqualTo("bikes/list");
+        assertThat(model.get("error")).isEqualTo("Both start and end time are required");
+    }
+}
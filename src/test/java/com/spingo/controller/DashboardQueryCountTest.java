@@ -0,0 +1,252 @@
+package com.spingo.controller;
+
+import com.spingo.TestData;
+import com.spingo.entity.Bike;
+import com.spingo.entity.Booking;
+import com.spingo.entity.Notification;
+import com.spingo.entity.User;
+import com.spingo.repository.BikeRepository;
+import com.spingo.repository.BookingRepository;
+import com.spingo.repository.NotificationRepository;
+import com.spingo.repository.UserRepository;
+import com.spingo.service.BikeGeoIndex;
+import com.spingo.service.BikeRankingIndex;
+import com.spingo.service.BikeSearchIndex;
+import com.spingo.service.BikeService;
+import com.spingo.service.BikeSlotCalendar;
+import com.spingo.service.BikeTextIndex;
+import com.spingo.service.BookingAvailabilityIndex;
+import com.spingo.service.BookingService;
+import com.spingo.service.DashboardStatsService;
+import com.spingo.service.EmailDeliveryService;
+import com.spingo.service.KeysetPage;
+import com.spingo.service.NotificationPushService;
+import com.spingo.service.NotificationService;
+import com.spingo.service.PlatformCounters;
+import com.spingo.service.UnreadCounterCache;
+import com.spingo.service.UserPrincipal;
+import com.spingo.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.ui.ExtendedModelMap;
+import org.springframework.ui.Model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+
+/**
+ * Counts the SQL statements one dashboard render issues, including the
+ * associations its lists read, and checks the count does not grow when the
+ * user, and the platform, have many more bookings. Each render runs in its
+ * own session, as with open-in-view. The dashboard templates are not in the
+ * tree, so the render stops at the model.
+ */
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({ DashboardController.class, OwnerController.class, UserService.class, BikeService.class,
+    BookingService.class, NotificationService.class, DashboardStatsService.class, UnreadCounterCache.class,
+    DashboardQueryCountTest.Infrastructure.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DashboardQueryCountTest {
+
+    // User, unread notifications and unread count, then one query per page and per grouped count
+    private static final int MAX_CUSTOMER_STATEMENTS = 5;
+    private static final int MAX_DELIVERY_STATEMENTS = 6;
+    private static final int MAX_OWNER_STATEMENTS = 6;
+    private static final int MAX_OWNER_PAGE_STATEMENTS = 5;
+
+    @TestConfiguration
+    static class Infrastructure {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        // Statistics loads run inline, so every statement lands in the render being counted
+        @Bean
+        Executor dashboardExecutor() {
+            return Runnable::run;
+        }
+    }
+
+    @Autowired
+    private DashboardController dashboardController;
+
+    @Autowired
+    private OwnerController ownerController;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private BikeSearchIndex bikeSearchIndex;
+
+    @MockBean
+    private BikeGeoIndex bikeGeoIndex;
+
+    @MockBean
+    private BikeRankingIndex bikeRankingIndex;
+
+    @MockBean
+    private BikeTextIndex bikeTextIndex;
+
+    @MockBean
+    private BookingAvailabilityIndex availabilityIndex;
+
+    @MockBean
+    private BikeSlotCalendar slotCalendar;
+
+    @MockBean
+    private PlatformCounters platformCounters;
+
+    @MockBean
+    private NotificationPushService notificationPushService;
+
+    @MockBean
+    private EmailDeliveryService emailDeliveryService;
+
+    @MockBean
+    private PasswordEncoder passwordEncoder;
+
+    private Statistics statistics;
+    private User owner;
+    private User customer;
+    private User courier;
+    private final List<Bike> bikes = new ArrayList<>();
+    private long nextUser = 1;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        when(bikeRankingIndex.getRecommended(any(), any(), anyInt())).thenReturn(new KeysetPage<>(List.of(), null));
+        when(bikeRankingIndex.getPopular(any(), any(), anyInt())).thenReturn(new KeysetPage<>(List.of(), null));
+
+        owner = userRepository.save(TestData.user(nextUser++, User.AccountType.INDIVIDUAL_OWNER));
+        customer = userRepository.save(TestData.user(nextUser++, User.AccountType.CUSTOMER));
+        courier = userRepository.save(TestData.user(nextUser++, User.AccountType.DELIVERY_PARTNER));
+        for (int n = 0; n < 5; n++) {
+            bikes.add(bikeRepository.save(TestData.bike(n, owner)));
+        }
+        book(customer, 3);
+        book(courier, 3);
+        notificationRepository.save(new Notification(customer, "Welcome", "Hello", Notification.NotificationType.SYSTEM_UPDATE));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        bookingRepository.deleteAll();
+        notificationRepository.deleteAll();
+        bikeRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void dashboardsIssueAFixedNumberOfStatements() {
+        long customerStatements = render(customer, model -> dashboardController.dashboard(null, null, model));
+        long deliveryStatements = render(courier, model -> dashboardController.dashboard(null, null, model));
+        long ownerStatements = render(owner, model -> dashboardController.dashboard(null, null, model));
+        long ownerPageStatements = render(owner, model -> ownerController.ownerDashboard(null, null, model));
+
+        assertThat(customerStatements).isLessThanOrEqualTo(MAX_CUSTOMER_STATEMENTS);
+        assertThat(deliveryStatements).isLessThanOrEqualTo(MAX_DELIVERY_STATEMENTS);
+        assertThat(ownerStatements).isLessThanOrEqualTo(MAX_OWNER_STATEMENTS);
+        assertThat(ownerPageStatements).isLessThanOrEqualTo(MAX_OWNER_PAGE_STATEMENTS);
+
+        // More bookings, for these users and for others, must not add statements; the unread count may now be cached
+        book(customer, 40);
+        book(courier, 40);
+        for (int i = 0; i < 5; i++) {
+            book(userRepository.save(TestData.user(nextUser++, User.AccountType.CUSTOMER)), 10);
+        }
+        assertThat(render(customer, model -> dashboardController.dashboard(null, null, model)))
+            .isLessThanOrEqualTo(customerStatements);
+        assertThat(render(courier, model -> dashboardController.dashboard(null, null, model)))
+            .isLessThanOrEqualTo(deliveryStatements);
+        assertThat(render(owner, model -> dashboardController.dashboard(null, null, model)))
+            .isLessThanOrEqualTo(ownerStatements);
+        assertThat(render(owner, model -> ownerController.ownerDashboard(null, null, model)))
+            .isLessThanOrEqualTo(ownerPageStatements);
+    }
+
+    // Statements prepared while rendering as the user, with the lists the page shows read through
+    private long render(User user, Function<Model, String> dashboard) {
+        UserPrincipal principal = UserPrincipal.of(user);
+        SecurityContextHolder.getContext().setAuthentication(
+            new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+        statistics.clear();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ExtendedModelMap model = new ExtendedModelMap();
+            assertThat(dashboard.apply(model)).doesNotStartWith("redirect:");
+            for (Object attribute : model.values()) {
+                if (attribute instanceof List<?> items) {
+                    items.forEach(DashboardQueryCountTest::readAsTheViewWould);
+                }
+            }
+        });
+        return statistics.getPrepareStatementCount();
+    }
+
+    // Booking rows show their bike's name
+    private static void readAsTheViewWould(Object item) {
+        if (item instanceof Booking booking) {
+            booking.getBike().getName();
+        }
+    }
+
+    private void book(User user, int count) {
+        List<Booking> bookings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            LocalDateTime start = LocalDateTime.now().plusDays(bookings.size() + 1);
+            bookings.add(new Booking(user, bikes.get(i % bikes.size()), start, start.plusHours(2),
+                Booking.BookingType.HOURLY, new BigDecimal("200.00"), "Pune"));
+        }
+        bookingRepository.saveAll(bookings);
+    }
+}
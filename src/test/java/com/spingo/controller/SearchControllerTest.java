@@ -0,0 +1,31 @@
+package com.spingo.controller;
+
+import com.spingo.service.BikeService;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.ui.ExtendedModelMap;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchControllerTest {
+
+    @Test
+    void reversedWindowIsAFormError() {
+        SearchController controller = new SearchController();
+        ReflectionTestUtils.setField(controller, "bikeService", new BikeService());
+        LocalDateTime start = LocalDateTime.now().plusDays(2);
+        ExtendedModelMap model = new ExtendedModelMap();
+
+        String view = controller.searchBikes("scooter", start, start, null, null, null, null, null, null, null,
+            null, null, null, null, null, new MockHttpServletRequest("GET", "/search/bikes"), model);
+
+        assertThat(view).isEqualTo("search/results");
+        assertThat(model.get("error")).isEqualTo("End time must be after start time");
+        assertThat(model.get("bikes")).isEqualTo(List.of());
+        assertThat(model.get("nextPageUrl")).isNull();
+    }
+}
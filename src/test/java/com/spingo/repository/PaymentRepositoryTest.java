@@ -0,0 +1,87 @@
+package com.spingo.repository;
+
+import com.spingo.TestData;
+import com.spingo.entity.Bike;
+import com.spingo.entity.Booking;
+import com.spingo.entity.Payment;
+import com.spingo.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+class PaymentRepositoryTest {
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User customer;
+    private User otherCustomer;
+    private Bike bike;
+
+    @BeforeEach
+    void setUp() {
+        User owner = userRepository.save(TestData.user(1, User.AccountType.INDIVIDUAL_OWNER));
+        customer = userRepository.save(TestData.user(2, User.AccountType.CUSTOMER));
+        otherCustomer = userRepository.save(TestData.user(3, User.AccountType.CUSTOMER));
+        bike = bikeRepository.save(TestData.bike(1, owner));
+        payment(booking(customer, 1), "TXN_OWNED", null);
+    }
+
+    @Test
+    void idempotencyKeysOnlyHaveToBeUniquePerBooking() {
+        payment(booking(customer, 2), "TXN_FIRST", "checkout-1");
+        payment(booking(otherCustomer, 3), "TXN_SECOND", "checkout-1");
+
+        assertThat(paymentRepository.findByTransactionId("TXN_FIRST")).isPresent();
+        assertThat(paymentRepository.findByTransactionId("TXN_SECOND")).isPresent();
+    }
+
+    @Test
+    void statusIsVisibleToTheBookingsUser() {
+        assertThat(paymentRepository.findStatusForUser("TXN_OWNED", customer.getId()))
+            .contains(Payment.PaymentStatus.PENDING);
+    }
+
+    @Test
+    void statusIsHiddenFromOtherUsers() {
+        assertThat(paymentRepository.findStatusForUser("TXN_OWNED", otherCustomer.getId())).isEmpty();
+        assertThat(paymentRepository.findStatusForUser("TXN_UNKNOWN", customer.getId())).isEmpty();
+    }
+
+    private Booking booking(User user, int daysAhead) {
+        LocalDateTime start = LocalDateTime.now().plusDays(daysAhead);
+        return bookingRepository.save(new Booking(user, bike, start, start.plusHours(2),
+            Booking.BookingType.HOURLY, new BigDecimal("200.00"), "Pune"));
+    }
+
+    private void payment(Booking booking, String transactionId, String idempotencyKey) {
+        Payment payment = new Payment();
+        payment.setBooking(booking);
+        payment.setAmount(booking.getTotalAmount());
+        payment.setPaymentMethod(Payment.PaymentMethod.UPI);
+        payment.setStatus(Payment.PaymentStatus.PENDING);
+        payment.setTransactionId(transactionId);
+        payment.setIdempotencyKey(idempotencyKey);
+        paymentRepository.saveAndFlush(payment);
+    }
+}
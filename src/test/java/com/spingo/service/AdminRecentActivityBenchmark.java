@@ -0,0 +1,202 @@
+package com.spingo.service;
+
+import com.spingo.TestData;
+import com.spingo.config.AsyncConfig;
+import com.spingo.entity.Bike;
+import com.spingo.entity.Booking;
+import com.spingo.entity.User;
+import com.spingo.repository.BikeRepository;
+import com.spingo.repository.BookingRepository;
+import com.spingo.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The admin dashboard's recent-activity widgets over a large synthetic
+ * platform: the old page, which loaded every user, bike and booking and
+ * kept five of each, next to getRecentActivity's three LIMIT queries run
+ * side by side. Reports latency and the bytes allocated per render, which
+ * is what ran the old page out of heap. Runs on the in-memory H2 database.
+ * mvn test -Pbenchmark (sizes: -Dbenchmark.users, -Dbenchmark.bikes,
+ * -Dbenchmark.bookings)
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({ DashboardStatsService.class, AsyncConfig.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AdminRecentActivityBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminRecentActivityBenchmark.class);
+
+    private static final int USERS = Integer.getInteger("benchmark.users", 100_000);
+    private static final int BIKES = Integer.getInteger("benchmark.bikes", 20_000);
+    private static final int BOOKINGS = Integer.getInteger("benchmark.bookings", 200_000);
+    private static final int CHUNK = 1_000;
+    private static final int FEED_SIZE = 5;
+    private static final int LOAD_ALL_RUNS = 5;
+    private static final int RECENT_RUNS = 500;
+    private static final PageRequest NEWEST = PageRequest.of(0, FEED_SIZE);
+
+    @Autowired
+    private DashboardStatsService dashboardStatsService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private LocalDateTime start;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        bookingRepository.deleteAllInBatch();
+        bikeRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+
+        start = LocalDateTime.now().withNano(0).minusYears(1);
+        List<User> owners = new ArrayList<>();
+        List<User> customers = new ArrayList<>();
+        for (int from = 0; from < USERS; from += CHUNK) {
+            int first = from;
+            transactionTemplate.executeWithoutResult(status -> {
+                List<User> users = new ArrayList<>();
+                for (int n = first; n < Math.min(first + CHUNK, USERS); n++) {
+                    User user = TestData.user(n, n % 20 == 0
+                        ? User.AccountType.INDIVIDUAL_OWNER : User.AccountType.CUSTOMER);
+                    user.setCreatedAt(start.plusMinutes(n));
+                    users.add(user);
+                }
+                for (User user : userRepository.saveAll(users)) {
+                    (user.getAccountType() == User.AccountType.CUSTOMER ? customers : owners).add(user);
+                }
+            });
+        }
+        List<Bike> bikes = new ArrayList<>();
+        for (int from = 0; from < BIKES; from += CHUNK) {
+            int first = from;
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Bike> chunk = new ArrayList<>();
+                for (int n = first; n < Math.min(first + CHUNK, BIKES); n++) {
+                    Bike bike = TestData.bike(n, owners.get(n % owners.size()));
+                    bike.setCreatedAt(start.plusMinutes(n * 3L));
+                    chunk.add(bike);
+                }
+                bikes.addAll(bikeRepository.saveAll(chunk));
+            });
+        }
+        for (int from = 0; from < BOOKINGS; from += CHUNK) {
+            int first = from;
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Booking> chunk = new ArrayList<>();
+                for (int n = first; n < Math.min(first + CHUNK, BOOKINGS); n++) {
+                    LocalDateTime pickup = start.plusHours(n);
+                    Booking booking = new Booking(customers.get(n % customers.size()), bikes.get(n % bikes.size()),
+                        pickup, pickup.plusHours(2), Booking.BookingType.HOURLY, new BigDecimal("200.00"), "Pune");
+                    booking.setCreatedAt(start.plusSeconds(n * 90L));
+                    chunk.add(booking);
+                }
+                bookingRepository.saveAll(chunk);
+            });
+        }
+    }
+
+    @Test
+    void loadEverythingAgainstRecentActivity() {
+        RecentActivity recent = dashboardStatsService.getRecentActivity(FEED_SIZE);
+        assertThat(recent.getUsers()).hasSize(FEED_SIZE);
+        assertThat(recent.getBookings().get(0).getCreatedAt()).isEqualTo(start.plusSeconds((BOOKINGS - 1) * 90L));
+
+        Sample loadAll = time(LOAD_ALL_RUNS, this::loadAll);
+        Sample sequential = time(RECENT_RUNS, this::recentOneAfterAnother);
+        Sample parallel = time(RECENT_RUNS, () -> dashboardStatsService.getRecentActivity(FEED_SIZE));
+
+        log.info("{} users, {} bikes, {} bookings, {} of each shown", USERS, BIKES, BOOKINGS, FEED_SIZE);
+        loadAll.report("load everything, keep " + FEED_SIZE);
+        sequential.report("LIMIT queries one after another");
+        parallel.report("LIMIT queries side by side (getRecentActivity)");
+    }
+
+    // What AdminController did before: every row of each table, then limit(5)
+    private Object loadAll() {
+        return transactionTemplate.execute(status -> List.of(
+            userRepository.findAll().stream().limit(FEED_SIZE).toList(),
+            bikeRepository.findAll().stream().limit(FEED_SIZE).toList(),
+            bookingRepository.findAll().stream().limit(FEED_SIZE).toList()));
+    }
+
+    private Object recentOneAfterAnother() {
+        return List.of(
+            userRepository.findByOrderByCreatedAtDesc(NEWEST),
+            bikeRepository.findByOrderByCreatedAtDesc(NEWEST),
+            bookingRepository.findByOrderByCreatedAtDesc(NEWEST));
+    }
+
+    private static Sample time(int runs, Supplier<?> render) {
+        for (int i = 0; i < Math.min(runs, 3); i++) {
+            render.get();
+        }
+        long[] nanos = new long[runs];
+        long allocated = 0;
+        for (int i = 0; i < runs; i++) {
+            long allocatedBefore = allocatedBytes();
+            long started = System.nanoTime();
+            render.get();
+            nanos[i] = System.nanoTime() - started;
+            allocated += allocatedBytes() - allocatedBefore;
+        }
+        return new Sample(nanos, allocated / runs);
+    }
+
+    // Bytes allocated by every live thread, so work handed to the dashboard pool is counted too
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(allocated, 0);
+        }
+        return total;
+    }
+
+    private record Sample(long[] nanos, long allocatedPerRun) {
+        void report(String path) {
+            long[] sorted = nanos.clone();
+            Arrays.sort(sorted);
+            log.info("{}: p50 {} ms, max {} ms, {} MB allocated per render", path,
+                String.format("%.2f", sorted[sorted.length / 2] / 1e6),
+                String.format("%.2f", sorted[sorted.length - 1] / 1e6),
+                String.format("%.2f", allocatedPerRun / 1e6));
+        }
+    }
+}
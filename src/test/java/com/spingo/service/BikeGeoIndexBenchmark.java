@@ -0,0 +1,143 @@
+package com.spingo.service;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JMH comparison of a nearby search through the geo grid with the full scan
+ * it replaced, which loaded every available bike and so had to check each
+ * one's distance. The scan here runs over coordinates already in memory,
+ * without the database round trip, so it is the scan's best case. The fleet
+ * is spread over a 1 x 1 degree area around Pune and queried at random
+ * points inside it. mvn test -Pbenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BikeGeoIndexBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(BikeGeoIndexBenchmark.class);
+
+    private static final double CENTER_LAT = 18.52;
+    private static final double CENTER_LNG = 73.85;
+    private static final int QUERY_POINTS = 1_024;
+
+    @Param({ "100000" })
+    public int bikes;
+
+    @Param({ "2", "10" })
+    public double radiusKm;
+
+    private BikeGeoIndex geoIndex;
+    private long[] bikeIds;
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[][] queries;
+    private int nextQuery;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        geoIndex = new BikeGeoIndex();
+        bikeIds = new long[bikes];
+        latitudes = new double[bikes];
+        longitudes = new double[bikes];
+        for (int i = 0; i < bikes; i++) {
+            bikeIds[i] = i + 1;
+            latitudes[i] = CENTER_LAT + random.nextDouble(-0.5, 0.5);
+            longitudes[i] = CENTER_LNG + random.nextDouble(-0.5, 0.5);
+            geoIndex.put(bikeIds[i], latitudes[i], longitudes[i]);
+        }
+        queries = new double[QUERY_POINTS][];
+        for (int i = 0; i < QUERY_POINTS; i++) {
+            queries[i] = new double[] {
+                CENTER_LAT + random.nextDouble(-0.5, 0.5), CENTER_LNG + random.nextDouble(-0.5, 0.5) };
+        }
+    }
+
+    @Benchmark
+    public List<BikeGeoIndex.Hit> geoIndex() {
+        double[] query = nextQuery();
+        return geoIndex.findWithinRadius(query[0], query[1], radiusKm);
+    }
+
+    @Benchmark
+    public List<BikeGeoIndex.Hit> fullScan() {
+        double[] query = nextQuery();
+        return scan(query[0], query[1], radiusKm);
+    }
+
+    private double[] nextQuery() {
+        return queries[nextQuery++ & (QUERY_POINTS - 1)];
+    }
+
+    private List<BikeGeoIndex.Hit> scan(double latitude, double longitude, double radius) {
+        List<BikeGeoIndex.Hit> hits = new ArrayList<>();
+        for (int i = 0; i < bikeIds.length; i++) {
+            double distance = BikeGeoIndex.haversineKm(latitude, longitude, latitudes[i], longitudes[i]);
+            if (distance <= radius) {
+                hits.add(new BikeGeoIndex.Hit(bikeIds[i], distance));
+            }
+        }
+        hits.sort(Comparator.comparingDouble(BikeGeoIndex.Hit::getDistanceKm));
+        return hits;
+    }
+
+    // Runs in this JVM (no fork) so it works from surefire with the test classpath
+    @Test
+    void geoIndexAgainstFullScan() throws RunnerException {
+        BikeGeoIndexBenchmark check = new BikeGeoIndexBenchmark();
+        check.bikes = 20_000;
+        check.radiusKm = 10;
+        check.setUp();
+        for (double[] query : check.queries) {
+            assertThat(ids(check.geoIndex.findWithinRadius(query[0], query[1], 10)))
+                .isEqualTo(ids(check.scan(query[0], query[1], 10)));
+        }
+
+        Options options = new OptionsBuilder()
+            .include(BikeGeoIndexBenchmark.class.getName() + "\\.")
+            .forks(0)
+            .warmupIterations(3)
+            .warmupTime(TimeValue.seconds(1))
+            .measurementIterations(5)
+            .measurementTime(TimeValue.seconds(1))
+            .build();
+        Collection<RunResult> results = new Runner(options).run();
+        for (RunResult result : results) {
+            log.info("{} {} bikes, {} km: {} us/op", result.getParams().getBenchmark(),
+                result.getParams().getParam("bikes"), result.getParams().getParam("radiusKm"),
+                String.format("%.2f", result.getPrimaryResult().getScore()));
+        }
+        assertThat(results).isNotEmpty();
+    }
+
+    private static List<Long> ids(List<BikeGeoIndex.Hit> hits) {
+        return hits.stream().map(BikeGeoIndex.Hit::getBikeId).toList();
+    }
+}
@@ -0,0 +1,71 @@
+package com.spingo.service;
+
+import com.spingo.entity.Bike;
+import com.spingo.event.BikeRatingChangedEvent;
+import com.spingo.repository.BikeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BikeRankingIndexTest {
+
+    private BikeRankingIndex index;
+
+    @BeforeEach
+    void setUp() {
+        BikeRepository bikeRepository = mock(BikeRepository.class);
+        when(bikeRepository.findAvailableBikes()).thenReturn(List.of(
+            bike(1L, 4.5, 10), bike(2L, 4.5, 9), bike(3L, 4.5, 8)));
+        index = new BikeRankingIndex();
+        ReflectionTestUtils.setField(index, "bikeRepository", bikeRepository);
+        ReflectionTestUtils.setField(index, "topK", 2);
+        index.rebuild();
+    }
+
+    @Test
+    void memberDroppingBelowAnOutsiderIsReplacedByIt() {
+        index.onRatingChanged(new BikeRatingChangedEvent(2L, 4.5, 7));
+
+        assertThat(popularIds()).containsExactly(1L, 3L);
+    }
+
+    @Test
+    void memberDroppingButStillAheadOfOutsidersKeepsItsPlace() {
+        index.onRatingChanged(new BikeRatingChangedEvent(1L, 4.8, 9));
+
+        assertThat(popularIds()).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void outsiderRisingAboveTheCutOffEntersTheScope() {
+        index.onRatingChanged(new BikeRatingChangedEvent(3L, 4.5, 12));
+
+        assertThat(popularIds()).containsExactly(3L, 1L);
+    }
+
+    @Test
+    void removedMemberIsReplacedByTheNextBest() {
+        index.remove(1L);
+
+        assertThat(popularIds()).containsExactly(2L, 3L);
+    }
+
+    private List<Long> popularIds() {
+        return index.getPopular(null, null, 10).getItems().stream().map(RankedBike::getId).toList();
+    }
+
+    private static Bike bike(Long id, double averageRating, int totalReviews) {
+        Bike bike = new Bike();
+        bike.setId(id);
+        bike.setLocation("Pune, Maharashtra");
+        bike.setAverageRating(averageRating);
+        bike.setTotalReviews(totalReviews);
+        return bike;
+    }
+}
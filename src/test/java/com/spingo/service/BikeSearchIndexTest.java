@@ -0,0 +1,88 @@
+package com.spingo.service;
+
+import com.spingo.TestData;
+import com.spingo.entity.Bike;
+import com.spingo.event.BikeRatingChangedEvent;
+import com.spingo.repository.BikeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BikeSearchIndexTest {
+
+    private static final BikeSearchCriteria ANY = new BikeSearchCriteria();
+
+    private BikeSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        BikeRepository bikeRepository = mock(BikeRepository.class);
+        when(bikeRepository.findAvailableBikes()).thenReturn(List.of());
+        index = new BikeSearchIndex();
+        ReflectionTestUtils.setField(index, "bikeRepository", bikeRepository);
+        index.rebuild();
+        for (long id = 1; id <= 100; id++) {
+            index.put(bike(id, id % 45 == 5 ? Bike.BikeType.SCOOTER : Bike.BikeType.MOTORCYCLE));
+        }
+    }
+
+    @Test
+    void pagesRunNewestFirstFromTheCursorEvenWhenSlotsAreReused() {
+        index.remove(97L);
+        index.remove(3L);
+        index.put(bike(101L, Bike.BikeType.MOTORCYCLE));
+        index.put(bike(3L, Bike.BikeType.MOTORCYCLE));
+
+        assertThat(index.searchNewestFirst(ANY, Long.MAX_VALUE, 4, id -> true)).containsExactly(101L, 100L, 99L, 98L);
+        assertThat(index.searchNewestFirst(ANY, 98L, 3, id -> true)).containsExactly(96L, 95L, 94L);
+        assertThat(index.searchNewestFirst(ANY, 5L, 10, id -> true)).containsExactly(4L, 3L, 2L, 1L);
+    }
+
+    @Test
+    void sparseMatchesArePagedNewestFirst() {
+        BikeSearchCriteria scooters = new BikeSearchCriteria();
+        scooters.setBikeType(Bike.BikeType.SCOOTER);
+
+        assertThat(index.searchNewestFirst(scooters, Long.MAX_VALUE, 10, id -> true)).containsExactly(95L, 50L, 5L);
+        assertThat(index.searchNewestFirst(scooters, 95L, 1, id -> true)).containsExactly(50L);
+    }
+
+    @Test
+    void rejectedIdsDoNotCountTowardsTheLimit() {
+        assertThat(index.searchNewestFirst(ANY, 90L, 3, id -> id % 2 == 1)).containsExactly(89L, 87L, 85L);
+    }
+
+    @Test
+    void filterKeepsMatchingCandidatesInCandidateOrder() {
+        BikeSearchCriteria motorcycles = new BikeSearchCriteria();
+        motorcycles.setBikeType(Bike.BikeType.MOTORCYCLE);
+
+        assertThat(index.filter(motorcycles, List.of(7L, 5L, 250L, 2L))).containsExactly(7L, 2L);
+    }
+
+    @Test
+    void ratingChangesMoveBikesAcrossTheMinimumRating() {
+        BikeSearchCriteria rated = new BikeSearchCriteria();
+        rated.setMinRating(4.0);
+        index.onRatingChanged(new BikeRatingChangedEvent(42L, 4.5, 2));
+        index.onRatingChanged(new BikeRatingChangedEvent(7L, 4.0, 1));
+
+        assertThat(index.searchNewestFirst(rated, Long.MAX_VALUE, 10, id -> true)).containsExactly(42L, 7L);
+
+        index.onRatingChanged(new BikeRatingChangedEvent(42L, 3.5, 3));
+        assertThat(index.searchNewestFirst(rated, Long.MAX_VALUE, 10, id -> true)).containsExactly(7L);
+    }
+
+    private static Bike bike(long id, Bike.BikeType type) {
+        Bike bike = TestData.bike(id, null);
+        bike.setId(id);
+        bike.setType(type);
+        return bike;
+    }
+}
@@ -0,0 +1,164 @@
+package com.spingo.service;
+
+import com.spingo.TestData;
+import com.spingo.entity.Bike;
+import com.spingo.entity.User;
+import com.spingo.repository.BikeRepository;
+import com.spingo.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Advanced search latency on page 1 and page 1000, following cursors, next
+ * to fetching page 1000 with LIMIT/OFFSET; the index walk alone is timed
+ * too. Runs on the in-memory H2 database, where OFFSET skips rows already in
+ * memory, so on MySQL it only gets worse. mvn test -Pbenchmark
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({ BikeService.class, BikeSearchIndex.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BikeSearchPagingBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(BikeSearchPagingBenchmark.class);
+
+    private static final int PAGE_SIZE = 20;
+    private static final int DEEP_PAGE = 1_000;
+    private static final int BIKES = Integer.getInteger("benchmark.bikes", 30_000);
+    private static final int RUNS = 1_000;
+    private static final BikeSearchCriteria ANY = new BikeSearchCriteria();
+
+    @Autowired
+    private BikeService bikeService;
+
+    @Autowired
+    private BikeSearchIndex bikeSearchIndex;
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private BikeGeoIndex bikeGeoIndex;
+
+    @MockBean
+    private BikeRankingIndex bikeRankingIndex;
+
+    @MockBean
+    private BikeTextIndex bikeTextIndex;
+
+    @MockBean
+    private BookingAvailabilityIndex availabilityIndex;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        bikeRepository.deleteAll();
+        userRepository.deleteAll();
+        User owner = userRepository.save(TestData.user(1, User.AccountType.INDIVIDUAL_OWNER));
+        for (int from = 0; from < BIKES; from += 1_000) {
+            int first = from;
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Bike> bikes = new ArrayList<>();
+                for (int n = first; n < Math.min(first + 1_000, BIKES); n++) {
+                    bikes.add(TestData.bike(n, owner));
+                }
+                bikeRepository.saveAll(bikes);
+            });
+        }
+        bikeSearchIndex.rebuild();
+    }
+
+    @Test
+    void firstAndDeepPagesAgainstOffset() {
+        String deepCursor = null;
+        for (int page = 1; page < DEEP_PAGE; page++) {
+            deepCursor = search(deepCursor).getNextCursor();
+        }
+        String cursor = deepCursor;
+        List<Long> deepPage = ids(search(cursor).getItems());
+        assertThat(ids(offsetPage())).isEqualTo(deepPage);
+
+        long deepAfterId = PageCursor.decode(cursor, 1).getLong(0);
+        long[] firstHits = time(() -> bikeSearchIndex.searchNewestFirst(ANY, Long.MAX_VALUE, PAGE_SIZE + 1, id -> true));
+        long[] deepHits = time(() -> bikeSearchIndex.searchNewestFirst(ANY, deepAfterId, PAGE_SIZE + 1, id -> true));
+        long[] first = time(() -> search(null));
+        long[] deep = time(() -> search(cursor));
+        long[] offset = time(this::offsetPage);
+
+        log.info("{} available bikes, {} per page", BIKES, PAGE_SIZE);
+        report("index hits for page 1", firstHits);
+        report("index hits for page " + DEEP_PAGE, deepHits);
+        report("search page 1", first);
+        report("search page " + DEEP_PAGE + " (cursor)", deep);
+        report("page " + DEEP_PAGE + " by LIMIT/OFFSET", offset);
+    }
+
+    private KeysetPage<Bike> search(String cursor) {
+        return bikeService.searchBikes(null, null, null, null, null, null, null, null, null, null,
+            null, null, null, null, cursor, PAGE_SIZE);
+    }
+
+    private List<Bike> offsetPage() {
+        return entityManager.createQuery(
+                "SELECT b FROM Bike b WHERE b.status = 'AVAILABLE' ORDER BY b.id DESC", Bike.class)
+            .setFirstResult((DEEP_PAGE - 1) * PAGE_SIZE)
+            .setMaxResults(PAGE_SIZE)
+            .getResultList();
+    }
+
+    private static List<Long> ids(List<Bike> bikes) {
+        return bikes.stream().map(Bike::getId).toList();
+    }
+
+    private static long[] time(Supplier<?> page) {
+        for (int i = 0; i < RUNS; i++) {
+            page.get();
+        }
+        long[] nanos = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long started = System.nanoTime();
+            page.get();
+            nanos[i] = System.nanoTime() - started;
+        }
+        return nanos;
+    }
+
+    private static void report(String path, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        log.info("{}: p50 {} us, p99 {} us", path, sorted[sorted.length / 2] / 1_000,
+            sorted[sorted.length * 99 / 100] / 1_000);
+    }
+}
@@ -0,0 +1,97 @@
+package com.spingo.service;
+
+import com.spingo.entity.BikeAvailability;
+import com.spingo.repository.BikeAvailabilityRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BikeSlotCalendarTest {
+
+    private static final Long BIKE_ID = 7L;
+
+    private final BookingAvailabilityIndex availabilityIndex = mock(BookingAvailabilityIndex.class);
+    private final BikeAvailabilityRepository repository = mock(BikeAvailabilityRepository.class);
+    private final List<BikeAvailability> savedRows = new CopyOnWriteArrayList<>();
+    private BikeSlotCalendar calendar;
+
+    @BeforeEach
+    void setUp() {
+        when(repository.save(any())).thenAnswer(invocation -> {
+            savedRows.add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        calendar = new BikeSlotCalendar();
+        ReflectionTestUtils.setField(calendar, "availabilityIndex", availabilityIndex);
+        ReflectionTestUtils.setField(calendar, "bikeAvailabilityRepository", repository);
+    }
+
+    @Test
+    void refreshMarksTheBookedHours() {
+        when(availabilityIndex.findBlockedIntervals(eq(BIKE_ID), any(), any())).thenReturn(List.of(hours(1, 3)));
+
+        calendar.refresh(BIKE_ID);
+
+        assertThat(calendar.getCalendar(BIKE_ID).getBookedHours()).isEqualTo(2);
+        assertThat(calendar.getCalendar(BIKE_ID).isBooked(0, 1)).isTrue();
+        assertThat(savedRows).hasSize(1);
+    }
+
+    @Test
+    void slowRefreshCannotOverwriteANewerOne() throws Exception {
+        CountDownLatch readStale = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // The first refresh reads the old bookings and stalls before storing them;
+        // by the time the second runs the bookings have moved
+        when(availabilityIndex.findBlockedIntervals(eq(BIKE_ID), any(), any()))
+            .thenAnswer(invocation -> {
+                readStale.countDown();
+                release.await();
+                return List.of(hours(1, 3));
+            })
+            .thenReturn(List.of(hours(5, 6)));
+
+        Thread stale = new Thread(() -> calendar.refresh(BIKE_ID));
+        stale.start();
+        assertThat(readStale.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread fresh = new Thread(() -> calendar.refresh(BIKE_ID));
+        fresh.start();
+        await().atMost(5, TimeUnit.SECONDS).until(() ->
+            fresh.getState() == Thread.State.WAITING || fresh.getState() == Thread.State.TERMINATED);
+        release.countDown();
+        stale.join();
+        fresh.join();
+
+        AvailabilityCalendar result = calendar.getCalendar(BIKE_ID);
+        assertThat(result.getBookedHours()).isEqualTo(1);
+        assertThat(result.isBooked(0, 5)).isTrue();
+        assertThat(bitCount(savedRows.get(savedRows.size() - 1).getBookedHours())).isEqualTo(1);
+    }
+
+    private static long[] hours(int from, int to) {
+        long start = LocalDate.now().atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        return new long[] { start + from * 3600L, start + to * 3600L };
+    }
+
+    private static int bitCount(byte[] bytes) {
+        int count = 0;
+        for (byte b : bytes) {
+            count += Integer.bitCount(b & 0xFF);
+        }
+        return count;
+    }
+}
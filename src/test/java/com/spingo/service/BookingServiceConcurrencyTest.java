@@ -0,0 +1,203 @@
+package com.spingo.service;
+
+import com.spingo.entity.Bike;
+import com.spingo.entity.Booking;
+import com.spingo.repository.BikeRepository;
+import com.spingo.repository.BookingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Many clients try to reserve the same bike at once against a repository
+ * whose check-then-insert would race on its own; exactly one overlapping
+ * reservation may succeed. The repository is in memory, so the measured
+ * throughput is that of the service's locking path, not of the database.
+ */
+class BookingServiceConcurrencyTest {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingServiceConcurrencyTest.class);
+
+    private static final int THREADS = 64;
+    private static final int BIKES = 16;
+    private static final int BOOKINGS_PER_CLIENT = 50;
+    private static final LocalDateTime START = LocalDateTime.of(2030, 1, 1, 10, 0);
+
+    private final List<Booking> stored = new CopyOnWriteArrayList<>();
+    private final AtomicLong ids = new AtomicLong();
+    private volatile long insertDelayMillis = 5;
+    private BookingService bookingService;
+
+    @BeforeEach
+    void setUp() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        bookingService = new BookingService(transactionManager);
+
+        BookingRepository bookingRepository = mock(BookingRepository.class);
+        when(bookingRepository.countOverlappingBookings(anyLong(), any(), any(), anyLong()))
+            .thenAnswer(invocation -> stored.stream()
+                .filter(booking -> booking.getBike().getId().equals(invocation.getArgument(0)))
+                .filter(booking -> booking.getStartTime().isBefore(invocation.getArgument(2))
+                    && booking.getEndTime().isAfter(invocation.getArgument(1)))
+                .count());
+        when(bookingRepository.save(any(Booking.class))).thenAnswer(invocation -> {
+            Booking booking = invocation.getArgument(0);
+            // Widen the window between the overlap check and the insert
+            if (insertDelayMillis > 0) {
+                Thread.sleep(insertDelayMillis);
+            }
+            booking.setId(ids.incrementAndGet());
+            stored.add(booking);
+            return booking;
+        });
+
+        BikeRepository bikeRepository = mock(BikeRepository.class);
+        when(bikeRepository.findByIdForUpdate(anyLong()))
+            .thenAnswer(invocation -> Optional.of(bike(invocation.getArgument(0))));
+
+        BookingAvailabilityIndex availabilityIndex = mock(BookingAvailabilityIndex.class);
+        // Let every contender past the in-memory pre-check, so the locked path decides
+        when(availabilityIndex.isFree(anyLong(), any(), any(), any())).thenReturn(true);
+
+        ReflectionTestUtils.setField(bookingService, "bookingRepository", bookingRepository);
+        ReflectionTestUtils.setField(bookingService, "bikeRepository", bikeRepository);
+        ReflectionTestUtils.setField(bookingService, "availabilityIndex", availabilityIndex);
+        ReflectionTestUtils.setField(bookingService, "slotCalendar", mock(BikeSlotCalendar.class));
+        ReflectionTestUtils.setField(bookingService, "eventPublisher", mock(ApplicationEventPublisher.class));
+    }
+
+    @Test
+    void onlyOneOfManyConcurrentOverlappingBookingsSucceeds() throws Exception {
+        List<Future<Boolean>> results = race(i -> booking(7L, START.plusMinutes(i), START.plusHours(2)));
+
+        assertThat(successes(results)).isEqualTo(1);
+        assertThat(stored).hasSize(1);
+    }
+
+    @Test
+    void concurrentBookingsOfDifferentBikesAllSucceed() throws Exception {
+        List<Future<Boolean>> results = race(i -> booking(100L + i, START, START.plusHours(2)));
+
+        assertThat(successes(results)).isEqualTo(THREADS);
+    }
+
+    @Test
+    void concurrentBookingsOfDisjointWindowsAllSucceed() throws Exception {
+        List<Future<Boolean>> results = race(i -> booking(7L, START.plusHours(i), START.plusHours(i + 1)));
+
+        assertThat(successes(results)).isEqualTo(THREADS);
+    }
+
+    @Test
+    void reportsThroughputOfManyClientsBookingSharedBikes() throws Exception {
+        insertDelayMillis = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new CopyOnWriteArrayList<>();
+        for (int client = 0; client < THREADS; client++) {
+            // Clients sharing a bike book disjoint windows of it, so every booking should succeed
+            long bikeId = 1000L + client % BIKES;
+            int firstSlot = client / BIKES * BOOKINGS_PER_CLIENT;
+            results.add(pool.submit(() -> {
+                start.await();
+                int booked = 0;
+                for (int i = 0; i < BOOKINGS_PER_CLIENT; i++) {
+                    LocalDateTime from = START.plusHours(firstSlot + i);
+                    bookingService.createBooking(booking(bikeId, from, from.plusHours(1)));
+                    booked++;
+                }
+                return booked;
+            }));
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+        long elapsedNanos = System.nanoTime() - started;
+
+        long booked = 0;
+        for (Future<Integer> result : results) {
+            booked += result.get();
+        }
+        assertThat(booked).isEqualTo((long) THREADS * BOOKINGS_PER_CLIENT);
+        log.info("{} clients made {} bookings over {} bikes in {} ms: {} bookings/sec", THREADS, booked, BIKES,
+            TimeUnit.NANOSECONDS.toMillis(elapsedNanos), String.format("%.0f", booked * 1e9 / elapsedNanos));
+    }
+
+    private List<Future<Boolean>> race(IntFunction<Booking> bookings) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new CopyOnWriteArrayList<>();
+        long started = 0;
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                Booking booking = bookings.apply(i);
+                results.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        bookingService.createBooking(booking);
+                        return true;
+                    } catch (RuntimeException e) {
+                        return false;
+                    }
+                }));
+            }
+            started = System.nanoTime();
+            start.countDown();
+        } finally {
+            pool.shutdown();
+            assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        }
+        log.info("{} concurrent clients raced in {} ms", THREADS,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return results;
+    }
+
+    private static long successes(List<Future<Boolean>> results) throws Exception {
+        long successes = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                successes++;
+            }
+        }
+        return successes;
+    }
+
+    private static Booking booking(Long bikeId, LocalDateTime startTime, LocalDateTime endTime) {
+        Booking booking = new Booking();
+        booking.setBike(bike(bikeId));
+        booking.setStartTime(startTime);
+        booking.setEndTime(endTime);
+        return booking;
+    }
+
+    private static Bike bike(Long id) {
+        Bike bike = new Bike();
+        bike.setId(id);
+        return bike;
+    }
+}
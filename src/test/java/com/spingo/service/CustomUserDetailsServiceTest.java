@@ -0,0 +1,71 @@
+package com.spingo.service;
+
+import com.spingo.TestData;
+import com.spingo.entity.User;
+import com.spingo.event.UserStatusChangedEvent;
+import com.spingo.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CustomUserDetailsServiceTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private CustomUserDetailsService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new CustomUserDetailsService(new SimpleMeterRegistry(), 300, 2);
+        ReflectionTestUtils.setField(service, "userRepository", userRepository);
+    }
+
+    @Test
+    void lockDuringALoadIsNotOverwrittenByTheStalePrincipal() {
+        User active = user(1, User.UserStatus.ACTIVE);
+        User locked = user(1, User.UserStatus.LOCKED);
+        // The lock commits while the first login is between its read and its cache put
+        when(userRepository.findByUsername("user1"))
+            .thenAnswer(invocation -> {
+                service.onUserStatusChanged(new UserStatusChangedEvent(1L, User.UserStatus.ACTIVE, User.UserStatus.LOCKED));
+                return Optional.of(active);
+            })
+            .thenReturn(Optional.of(locked));
+
+        assertThat(service.loadUserByUsername("user1").isAccountNonLocked()).isTrue();
+        assertThat(service.loadUserByUsername("user1").isAccountNonLocked()).isFalse();
+    }
+
+    @Test
+    void fullCacheServesLoginsWithoutRememberingThem() {
+        for (long n = 1; n <= 3; n++) {
+            when(userRepository.findByUsername("user" + n)).thenReturn(Optional.of(user(n, User.UserStatus.ACTIVE)));
+        }
+        service.loadUserByUsername("user1");
+        service.loadUserByUsername("user2");
+
+        UserDetails third = service.loadUserByUsername("user3");
+        service.loadUserByUsername("user3");
+        service.loadUserByUsername("user1");
+
+        assertThat(third.getUsername()).isEqualTo("user3");
+        verify(userRepository, times(2)).findByUsername("user3");
+        verify(userRepository, times(1)).findByUsername("user1");
+    }
+
+    private static User user(long n, User.UserStatus status) {
+        User user = TestData.user(n, User.AccountType.CUSTOMER);
+        user.setId(n);
+        user.setStatus(status);
+        return user;
+    }
+}
@@ -0,0 +1,128 @@
+package com.spingo.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.spingo.entity.EmailMessage;
+import com.spingo.repository.EmailMessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Messages/sec through the email queue against a local SMTP stand-in, next
+ * to sending the same messages one connection each. The queue's repository
+ * is in memory, so this measures the drain, the worker pool and SMTP
+ * connection reuse. mvn test -Pbenchmark
+ */
+class EmailDeliveryBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailDeliveryBenchmark.class);
+
+    private static final int MESSAGES = Integer.getInteger("benchmark.messages", 5_000);
+    // A fresh connection per message is slow enough that a sample gives its rate
+    private static final int SINGLE_MESSAGES = Math.min(MESSAGES, 300);
+    private static final int WORKERS = 4;
+
+    @RegisterExtension
+    static final GreenMailExtension smtp = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private final List<EmailMessage> queue = new ArrayList<>();
+    private final JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+    private ExecutorService mailExecutor;
+    private EmailDeliveryService service;
+
+    @BeforeEach
+    void setUp() {
+        mailSender.setHost(smtp.getSmtp().getBindTo());
+        mailSender.setPort(smtp.getSmtp().getPort());
+        mailExecutor = Executors.newFixedThreadPool(WORKERS);
+
+        EmailMessageRepository repository = mock(EmailMessageRepository.class);
+        when(repository.findDueBatchForUpdate(any(), anyInt())).thenAnswer(invocation -> {
+            LocalDateTime now = invocation.getArgument(0);
+            int limit = invocation.getArgument(1);
+            return queue.stream().filter(message -> !message.getNextAttemptAt().isAfter(now)).limit(limit).toList();
+        });
+        when(repository.findAllById(any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return queue.stream().filter(message -> ids.contains(message.getId())).toList();
+        });
+
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        // Rate limits high enough never to hold a message back
+        service = new EmailDeliveryService(transactionManager, new SimpleMeterRegistry(), 1_000_000, 1_000_000);
+        ReflectionTestUtils.setField(service, "emailMessageRepository", repository);
+        ReflectionTestUtils.setField(service, "mailSender", mailSender);
+        ReflectionTestUtils.setField(service, "mailExecutor", mailExecutor);
+        ReflectionTestUtils.setField(service, "maxAttempts", 6);
+        ReflectionTestUtils.setField(service, "backoffSeconds", 30L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mailExecutor.shutdownNow();
+    }
+
+    @Test
+    void queueDrainVersusOneConnectionPerMessage() throws Exception {
+        long started = System.nanoTime();
+        for (int i = 0; i < SINGLE_MESSAGES; i++) {
+            MimeMessage mime = mailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(mime, "UTF-8");
+            helper.setTo("user" + i + "@example.com");
+            helper.setSubject("Booking Confirmed");
+            helper.setText("Your booking for Classic 350 has been confirmed.");
+            mailSender.send(mime);
+        }
+        long singleNanos = System.nanoTime() - started;
+        assertThat(smtp.getReceivedMessages()).hasSize(SINGLE_MESSAGES);
+        smtp.purgeEmailFromAllMailboxes();
+
+        LocalDateTime due = LocalDateTime.now().minusSeconds(1);
+        for (long id = 1; id <= MESSAGES; id++) {
+            EmailMessage message = new EmailMessage("user" + id + "@example.com", "Booking Confirmed",
+                "Your booking for Classic 350 has been confirmed.");
+            message.setId(id);
+            message.setNextAttemptAt(due);
+            queue.add(message);
+        }
+        started = System.nanoTime();
+        service.drain();
+        long queueNanos = System.nanoTime() - started;
+        assertThat(smtp.getReceivedMessages()).hasSize(MESSAGES);
+
+        log.info("one connection per message: {} messages in {} ms, {} messages/sec", SINGLE_MESSAGES,
+            TimeUnit.NANOSECONDS.toMillis(singleNanos), rate(SINGLE_MESSAGES, singleNanos));
+        log.info("queue drain, {} workers, one connection per chunk: {} messages in {} ms, {} messages/sec",
+            WORKERS, MESSAGES, TimeUnit.NANOSECONDS.toMillis(queueNanos), rate(MESSAGES, queueNanos));
+    }
+
+    private static String rate(long count, long nanos) {
+        return String.format("%.0f", count * 1e9 / nanos);
+    }
+}
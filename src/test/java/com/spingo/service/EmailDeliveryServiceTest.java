@@ -0,0 +1,236 @@
+package com.spingo.service;
+
+import com.spingo.entity.EmailMessage;
+import com.spingo.repository.EmailMessageRepository;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmailDeliveryServiceTest {
+
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long BACKOFF_SECONDS = 30;
+
+    // Local SMTP stand-in, restarted for every test
+    @RegisterExtension
+    static final GreenMailExtension smtp = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private final List<EmailMessage> queue = new ArrayList<>();
+    private EmailMessageRepository repository;
+    private JavaMailSender mailSender;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(EmailMessageRepository.class);
+        when(repository.findDueBatchForUpdate(any(), anyInt())).thenAnswer(invocation -> {
+            LocalDateTime now = invocation.getArgument(0);
+            List<EmailMessage> due = new ArrayList<>();
+            for (EmailMessage message : queue) {
+                if (message.getStatus() == EmailMessage.EmailStatus.PENDING && !message.getNextAttemptAt().isAfter(now)
+                        && due.size() < (int) invocation.getArgument(1)) {
+                    due.add(message);
+                }
+            }
+            return due;
+        });
+        when(repository.findAllById(any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return queue.stream().filter(message -> ids.contains(message.getId())).toList();
+        });
+        when(repository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        mailSender = mock(JavaMailSender.class);
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(Session.getInstance(new Properties())));
+    }
+
+    @Test
+    void sentMessagesAreRemovedFromTheQueue() {
+        EmailDeliveryService service = service(5, 20);
+        queue(1L, "a@example.com");
+        queue(2L, "b@example.com");
+
+        service.drain();
+
+        verify(repository).deleteAllByIdInBatch(List.of(1L, 2L));
+    }
+
+    @Test
+    void failedMessageIsRetriedWithExponentialBackoff() {
+        EmailDeliveryService service = service(5, 20);
+        doThrow(new MailSendException("Connection refused")).when(mailSender).send(any(MimeMessage[].class));
+        EmailMessage message = queue(1L, "a@example.com");
+
+        LocalDateTime before = LocalDateTime.now();
+        service.drain();
+        assertThat(message.getAttempts()).isEqualTo(1);
+        assertThat(message.getLastError()).isEqualTo("Connection refused");
+        assertThat(message.getStatus()).isEqualTo(EmailMessage.EmailStatus.PENDING);
+        assertThat(message.getNextAttemptAt()).isBetween(before.plusSeconds(BACKOFF_SECONDS),
+            LocalDateTime.now().plusSeconds(BACKOFF_SECONDS));
+
+        // Due again: the second failure waits twice as long
+        message.setNextAttemptAt(LocalDateTime.now());
+        before = LocalDateTime.now();
+        service.drain();
+        assertThat(message.getAttempts()).isEqualTo(2);
+        assertThat(message.getNextAttemptAt()).isBetween(before.plusSeconds(2 * BACKOFF_SECONDS),
+            LocalDateTime.now().plusSeconds(2 * BACKOFF_SECONDS));
+        verify(repository, never()).deleteAllByIdInBatch(anyList());
+    }
+
+    @Test
+    void messageIsMarkedFailedAfterMaxAttempts() {
+        EmailDeliveryService service = service(5, 20);
+        doThrow(new MailSendException("Mailbox unavailable")).when(mailSender).send(any(MimeMessage[].class));
+        EmailMessage message = queue(1L, "a@example.com");
+        message.setAttempts(MAX_ATTEMPTS - 1);
+
+        service.drain();
+
+        assertThat(message.getAttempts()).isEqualTo(MAX_ATTEMPTS);
+        assertThat(message.getStatus()).isEqualTo(EmailMessage.EmailStatus.FAILED);
+    }
+
+    @Test
+    void messagesOverTheDomainLimitAreHeldOneIntervalApart() {
+        // 5 per second with a burst of 2: two go out, each further one waits another 200 ms
+        EmailDeliveryService service = service(5, 2);
+        for (long id = 1; id <= 6; id++) {
+            queue(id, "user" + id + "@example.com");
+        }
+        LocalDateTime before = LocalDateTime.now();
+
+        service.drain();
+
+        verify(repository).deleteAllByIdInBatch(List.of(1L, 2L));
+        List<EmailMessage> held = queue.subList(2, 6);
+        for (int n = 0; n < held.size(); n++) {
+            EmailMessage message = held.get(n);
+            assertThat(message.getAttempts()).isZero();
+            long waitMillis = Duration.between(before, message.getNextAttemptAt()).toMillis();
+            assertThat(waitMillis).isBetween(200L * (n + 1) - 50, 200L * (n + 1) + 50);
+        }
+    }
+
+    @Test
+    void heldMessageSpendsItsReservationWhenItComesDue() {
+        EmailDeliveryService service = service(5, 1);
+        queue(1L, "a@example.com");
+        EmailMessage held = queue(2L, "b@example.com");
+
+        service.drain();
+        verify(repository).deleteAllByIdInBatch(List.of(1L));
+
+        // A third message arrives for the same domain before the held one is claimed again
+        queue.remove(0);
+        held.setNextAttemptAt(LocalDateTime.now());
+        EmailMessage later = queue(3L, "c@example.com");
+        service.drain();
+
+        verify(repository).deleteAllByIdInBatch(List.of(2L));
+        assertThat(later.getNextAttemptAt()).isAfter(LocalDateTime.now());
+    }
+
+    @Test
+    void deliversThroughSmtpOverOneConnectionPerChunk() throws Exception {
+        CountingMailSender sender = new CountingMailSender();
+        sender.setHost(smtp.getSmtp().getBindTo());
+        sender.setPort(smtp.getSmtp().getPort());
+        mailSender = sender;
+        EmailDeliveryService service = service(1000, 1000);
+        for (long id = 1; id <= 60; id++) {
+            queue(id, "user" + id + (id % 2 == 0 ? "@example.com" : "@example.org"));
+        }
+
+        service.drain();
+
+        assertThat(smtp.getReceivedMessages()).hasSize(60);
+        assertThat(smtp.getReceivedMessages()[0].getSubject()).isEqualTo("Subject");
+        // 60 messages go out in chunks of 25, each chunk over a single SMTP connection
+        assertThat(sender.connections.get()).isEqualTo(3);
+        verify(repository).deleteAllByIdInBatch(LongStream.rangeClosed(1, 60).boxed().toList());
+    }
+
+    @Test
+    void unreachableSmtpServerCountsAsAFailedAttempt() {
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost(smtp.getSmtp().getBindTo());
+        sender.setPort(smtp.getSmtp().getPort());
+        smtp.stop();
+        mailSender = sender;
+        EmailDeliveryService service = service(5, 20);
+        EmailMessage message = queue(1L, "a@example.com");
+
+        service.drain();
+
+        assertThat(message.getAttempts()).isEqualTo(1);
+        assertThat(message.getLastError()).isNotBlank();
+        verify(repository, never()).deleteAllByIdInBatch(anyList());
+    }
+
+    private EmailDeliveryService service(double perSecond, int burst) {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        EmailDeliveryService service = new EmailDeliveryService(transactionManager, new SimpleMeterRegistry(),
+            perSecond, burst);
+        Executor direct = Runnable::run;
+        ReflectionTestUtils.setField(service, "emailMessageRepository", repository);
+        ReflectionTestUtils.setField(service, "mailSender", mailSender);
+        ReflectionTestUtils.setField(service, "mailExecutor", direct);
+        ReflectionTestUtils.setField(service, "maxAttempts", MAX_ATTEMPTS);
+        ReflectionTestUtils.setField(service, "backoffSeconds", BACKOFF_SECONDS);
+        return service;
+    }
+
+    // Counts SMTP connections, one per send(MimeMessage...) call
+    static final class CountingMailSender extends JavaMailSenderImpl {
+        final AtomicInteger connections = new AtomicInteger();
+
+        @Override
+        protected Transport connectTransport() throws MessagingException {
+            connections.incrementAndGet();
+            return super.connectTransport();
+        }
+    }
+
+    private EmailMessage queue(Long id, String recipient) {
+        EmailMessage message = new EmailMessage(recipient, "Subject", "Body");
+        message.setId(id);
+        message.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        queue.add(message);
+        return message;
+    }
+}
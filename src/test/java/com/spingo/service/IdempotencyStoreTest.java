@@ -0,0 +1,46 @@
+package com.spingo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyStoreTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void fullStoreSweepsExpiredKeysAtMostOncePerInterval() throws InterruptedException {
+        // Keys expire right away, and two fill the store
+        IdempotencyStore store = new IdempotencyStore(meterRegistry, 0, 2);
+        store.claim("a", new CompletableFuture<>());
+        store.claim("b", new CompletableFuture<>());
+        Thread.sleep(5);
+
+        // The first claim on a full store sweeps and gets in
+        store.claim("c", new CompletableFuture<>());
+        store.claim("d", new CompletableFuture<>());
+        assertThat(bypasses()).isZero();
+
+        // Full again within the interval: no second sweep, so the claim bypasses the store
+        Thread.sleep(5);
+        store.claim("e", new CompletableFuture<>());
+        assertThat(bypasses()).isEqualTo(1);
+    }
+
+    @Test
+    void repeatedKeyGetsTheFirstRequestsResult() {
+        IdempotencyStore store = new IdempotencyStore(meterRegistry, 600, 10);
+        CompletableFuture<String> first = new CompletableFuture<>();
+
+        assertThat(store.claim("payment:1:key", first)).isNull();
+        assertThat(store.claim("payment:1:key", new CompletableFuture<>())).isSameAs(first);
+        assertThat(store.claim("payment:2:key", new CompletableFuture<>())).isNull();
+    }
+
+    private double bypasses() {
+        return meterRegistry.counter("spingo.idempotency.requests", "outcome", "bypass").count();
+    }
+}
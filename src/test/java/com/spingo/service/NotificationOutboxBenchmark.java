@@ -0,0 +1,149 @@
+package com.spingo.service;
+
+import com.spingo.TestData;
+import com.spingo.entity.Notification;
+import com.spingo.entity.User;
+import com.spingo.repository.NotificationRepository;
+import com.spingo.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Notifications/sec and caller latency of storing notifications inline
+ * (one INSERT in the caller's transaction) against queueing them in the
+ * outbox and letting the relay insert them in JDBC batches. Runs on the
+ * in-memory H2 database, so absolute numbers are lower bounds for MySQL;
+ * the comparison is what matters. mvn test -Pbenchmark
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({ NotificationService.class, NotificationOutboxRelay.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class NotificationOutboxBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationOutboxBenchmark.class);
+
+    private static final int WARMUP = 2_000;
+    private static final int NOTIFICATIONS = Integer.getInteger("benchmark.notifications", 20_000);
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private NotificationOutboxRelay relay;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private NotificationPushService notificationPushService;
+
+    @MockBean
+    private UnreadCounterCache unreadCounterCache;
+
+    @MockBean
+    private EmailDeliveryService emailDeliveryService;
+
+    private TransactionTemplate transactionTemplate;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        jdbcTemplate.update("DELETE FROM notifications");
+        jdbcTemplate.update("DELETE FROM notification_outbox");
+        userRepository.deleteAll();
+        user = userRepository.save(TestData.user(1, User.AccountType.CUSTOMER));
+    }
+
+    @Test
+    void inlineInsertsVersusOutboxAndBatchedRelay() {
+        // Inline: every confirmation pays for its notification INSERT before the caller's commit
+        timeRequests(WARMUP, this::confirmInline);
+        long[] inline = timeRequests(NOTIFICATIONS, this::confirmInline);
+
+        // Outbox: the caller only queues; the relay inserts later, in batches
+        timeRequests(WARMUP, this::confirmWithOutbox);
+        relay.relay();
+        long[] outbox = timeRequests(NOTIFICATIONS, this::confirmWithOutbox);
+        long started = System.nanoTime();
+        relay.relay();
+        long relayNanos = System.nanoTime() - started;
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM notification_outbox", Long.class)).isZero();
+        assertThat(notificationRepository.count()).isEqualTo(2L * (WARMUP + NOTIFICATIONS));
+
+        report("inline insert", inline);
+        report("outbox enqueue", outbox);
+        log.info("relay: {} notifications in {} ms, {} notifications/sec", NOTIFICATIONS,
+            TimeUnit.NANOSECONDS.toMillis(relayNanos), rate(NOTIFICATIONS, relayNanos));
+        log.info("end to end with outbox (enqueue + relay): {} notifications/sec",
+            rate(NOTIFICATIONS, Arrays.stream(outbox).sum() + relayNanos));
+    }
+
+    private void confirmInline() {
+        transactionTemplate.executeWithoutResult(status -> notificationService.createNotification(user,
+            "Booking Confirmed", "Your booking for Classic 350 has been confirmed.",
+            Notification.NotificationType.BOOKING_CONFIRMED));
+    }
+
+    private void confirmWithOutbox() {
+        transactionTemplate.executeWithoutResult(status ->
+            notificationService.createBookingConfirmation(user, "Classic 350"));
+    }
+
+    private static long[] timeRequests(int count, Runnable request) {
+        long[] nanos = new long[count];
+        for (int i = 0; i < count; i++) {
+            long started = System.nanoTime();
+            request.run();
+            nanos[i] = System.nanoTime() - started;
+        }
+        return nanos;
+    }
+
+    private static void report(String path, long[] nanos) {
+        long total = Arrays.stream(nanos).sum();
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        log.info("{}: {} requests, {} notifications/sec, latency p50 {} us, p99 {} us, max {} us", path,
+            nanos.length, rate(nanos.length, total), micros(sorted, 0.50), micros(sorted, 0.99),
+            sorted[sorted.length - 1] / 1_000);
+    }
+
+    private static long micros(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(percentile * sorted.length))] / 1_000;
+    }
+
+    private static String rate(long count, long nanos) {
+        return String.format("%.0f", count * 1e9 / nanos);
+    }
+}
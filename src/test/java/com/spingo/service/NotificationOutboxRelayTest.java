@@ -0,0 +1,165 @@
+package com.spingo.service;
+
+import com.spingo.entity.Notification;
+import com.spingo.entity.OutboxNotification;
+import com.spingo.event.UnreadCountChangedEvent;
+import com.spingo.repository.OutboxNotificationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the relay against a fake store whose writes only become visible on
+ * commit, and crashes it part way through a batch: the batch must either
+ * stay queued in full or be delivered exactly once.
+ */
+class NotificationOutboxRelayTest {
+
+    private final List<OutboxNotification> outbox = new ArrayList<>();
+    private final List<Long> notifications = new ArrayList<>();
+    private final List<Long> stagedInserts = new ArrayList<>();
+    private final List<Long> stagedDeletes = new ArrayList<>();
+    private final List<Long> pushed = new ArrayList<>();
+    private boolean failInsert;
+    private boolean failDelete;
+
+    private NotificationService notificationService;
+    private ApplicationEventPublisher eventPublisher;
+    private NotificationOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> {
+            stagedInserts.clear();
+            stagedDeletes.clear();
+            return new SimpleTransactionStatus();
+        });
+        doAnswer(invocation -> {
+            notifications.addAll(stagedInserts);
+            outbox.removeIf(entry -> stagedDeletes.contains(entry.getId()));
+            return null;
+        }).when(transactionManager).commit(any());
+        doAnswer(invocation -> {
+            stagedInserts.clear();
+            stagedDeletes.clear();
+            return null;
+        }).when(transactionManager).rollback(any());
+        relay = new NotificationOutboxRelay(transactionManager);
+
+        OutboxNotificationRepository outboxRepository = mock(OutboxNotificationRepository.class);
+        when(outboxRepository.findBatchForUpdate(anyInt()))
+            .thenAnswer(invocation -> new ArrayList<>(outbox.subList(0, Math.min(outbox.size(), invocation.getArgument(0)))));
+        doAnswer(invocation -> {
+            if (failDelete) {
+                throw new DataAccessResourceFailureException("Connection lost");
+            }
+            stagedDeletes.addAll(invocation.getArgument(0));
+            return null;
+        }).when(outboxRepository).deleteAllByIdInBatch(anyList());
+
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class))).thenAnswer(invocation -> {
+            if (failInsert) {
+                throw new DataAccessResourceFailureException("Connection lost");
+            }
+            Collection<OutboxNotification> batch = invocation.getArgument(1);
+            batch.forEach(entry -> stagedInserts.add(entry.getId()));
+            return new int[0][];
+        });
+
+        notificationService = mock(NotificationService.class);
+        doAnswer(invocation -> {
+            List<OutboxNotification> delivered = invocation.getArgument(0);
+            // Only what has committed may reach a stream
+            delivered.forEach(entry -> assertThat(notifications).contains(entry.getId()));
+            delivered.forEach(entry -> pushed.add(entry.getId()));
+            return null;
+        }).when(notificationService).pushDelivered(anyList());
+        eventPublisher = mock(ApplicationEventPublisher.class);
+
+        ReflectionTestUtils.setField(relay, "outboxNotificationRepository", outboxRepository);
+        ReflectionTestUtils.setField(relay, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(relay, "notificationService", notificationService);
+        ReflectionTestUtils.setField(relay, "eventPublisher", eventPublisher);
+
+        queue(1L, 10L);
+        queue(2L, 10L);
+        queue(3L, 20L);
+    }
+
+    @Test
+    void deliversBatchAndPushesAfterCommit() {
+        relay.relay();
+
+        assertThat(notifications).containsExactly(1L, 2L, 3L);
+        assertThat(outbox).isEmpty();
+        assertThat(pushed).containsExactly(1L, 2L, 3L);
+        verify(eventPublisher, times(2)).publishEvent(any(UnreadCountChangedEvent.class));
+    }
+
+    @Test
+    void crashWhileInsertingLeavesWholeBatchQueued() {
+        failInsert = true;
+        relay.relay();
+
+        assertThat(notifications).isEmpty();
+        assertThat(outbox).hasSize(3);
+        verify(notificationService, never()).pushDelivered(anyList());
+
+        failInsert = false;
+        relay.relay();
+
+        assertThat(notifications).containsExactly(1L, 2L, 3L);
+        assertThat(outbox).isEmpty();
+    }
+
+    @Test
+    void crashWhileDeletingRollsBackInsertsAndDeliversOnceOnRetry() {
+        failDelete = true;
+        relay.relay();
+
+        assertThat(notifications).isEmpty();
+        assertThat(outbox).hasSize(3);
+        assertThat(pushed).isEmpty();
+
+        failDelete = false;
+        relay.relay();
+        relay.relay();
+
+        assertThat(notifications).containsExactly(1L, 2L, 3L);
+        assertThat(outbox).isEmpty();
+        assertThat(pushed).containsExactly(1L, 2L, 3L);
+    }
+
+    private void queue(Long id, Long userId) {
+        OutboxNotification entry = new OutboxNotification(userId, "Title", "Message",
+            Notification.NotificationType.BOOKING_CONFIRMED);
+        entry.setId(id);
+        outbox.add(entry);
+    }
+}
@@ -0,0 +1,98 @@
+package com.spingo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Holds 10k open notification streams, one per user, and reports the heap
+ * each one costs and how long a push to every user takes to reach all of
+ * them. Streams end at a stub client instead of a socket, so the numbers
+ * cover the service's bookkeeping and lanes, not the servlet container.
+ * mvn test -Pbenchmark
+ */
+class NotificationPushBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationPushBenchmark.class);
+
+    private static final int SUBSCRIBERS = Integer.getInteger("benchmark.subscribers", 10_000);
+    private static final int LANES = 4;
+
+    private NotificationPushService pushService;
+
+    @BeforeEach
+    void setUp() {
+        pushService = new NotificationPushService(new SimpleMeterRegistry(), 1_800_000, LANES, SUBSCRIBERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pushService.shutdown();
+    }
+
+    @Test
+    void reportsMemoryPerStreamAndFanOutLatency() throws Exception {
+        long[] receivedAt = new long[SUBSCRIBERS];
+        CountDownLatch delivered = new CountDownLatch(SUBSCRIBERS);
+
+        long heapBefore = usedHeapAfterGc();
+        List<SseTestClient> clients = new ArrayList<>(SUBSCRIBERS);
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            int index = i;
+            clients.add(SseTestClient.connect(pushService.subscribe((long) i + 1), () -> {
+                receivedAt[index] = System.nanoTime();
+                delivered.countDown();
+            }));
+        }
+        long heapAfter = usedHeapAfterGc();
+        log.info("{} streams open: ~{} bytes of heap each (emitter, registry entry and stub client)",
+            SUBSCRIBERS, (heapAfter - heapBefore) / SUBSCRIBERS);
+
+        Map<String, Object> payload = Map.of("title", "Booking confirmed", "message", "Your ride is booked");
+        long started = System.nanoTime();
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            pushService.pushNotification((long) i + 1, payload);
+        }
+        long queued = System.nanoTime();
+        assertThat(delivered.await(60, TimeUnit.SECONDS)).isTrue();
+        long finished = System.nanoTime();
+
+        long[] latencies = new long[SUBSCRIBERS];
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            latencies[i] = receivedAt[i] - started;
+        }
+        Arrays.sort(latencies);
+        log.info("Pushing to {} users returned to the caller after {} ms; all delivered after {} ms over {} lanes",
+            SUBSCRIBERS, TimeUnit.NANOSECONDS.toMillis(queued - started),
+            TimeUnit.NANOSECONDS.toMillis(finished - started), LANES);
+        log.info("Delivery latency: p50 {} ms, p99 {} ms, max {} ms",
+            millis(latencies[SUBSCRIBERS / 2]), millis(latencies[SUBSCRIBERS * 99 / 100]),
+            millis(latencies[SUBSCRIBERS - 1]));
+        assertThat(clients).allMatch(client -> client.events().size() == 1);
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1_000_000.0);
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,99 @@
+package com.spingo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class NotificationPushServiceTest {
+
+    private static final int LANES = 4;
+
+    private NotificationPushService pushService;
+
+    @BeforeEach
+    void setUp() {
+        pushService = new NotificationPushService(new SimpleMeterRegistry(), 60_000, LANES, 1_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pushService.shutdown();
+    }
+
+    @Test
+    void eventsReachTheSubscriberInOrder() {
+        SseTestClient client = SseTestClient.connect(pushService.subscribe(1L));
+
+        for (int count = 1; count <= 100; count++) {
+            pushService.pushUnreadCount(1L, count);
+        }
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> client.events().size() == 100);
+        assertThat(client.events()).allMatch(event -> event.startsWith("event:unread-count"));
+        assertThat(client.events().stream().map(NotificationPushServiceTest::data).toList())
+            .containsExactlyElementsOf(IntStream.rangeClosed(1, 100).mapToObj(String::valueOf).toList());
+    }
+
+    @Test
+    void slowClientBlocksNeitherThePusherNorOtherLanes() throws Exception {
+        SseTestClient slow = SseTestClient.connect(pushService.subscribe(1L));
+        SseTestClient other = SseTestClient.connect(pushService.subscribe(2L));
+        CountDownLatch stalled = slow.stall();
+        try {
+            long started = System.nanoTime();
+            pushService.pushNotification(1L, "first");
+            pushService.pushNotification(1L, "second");
+            pushService.pushNotification(2L, "hello");
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(500);
+
+            await().atMost(5, TimeUnit.SECONDS).until(() -> other.events().size() == 1);
+            assertThat(slow.events()).isEmpty();
+        } finally {
+            stalled.countDown();
+        }
+        await().atMost(5, TimeUnit.SECONDS).until(() -> slow.events().size() == 2);
+    }
+
+    @Test
+    void disconnectedClientIsUnsubscribed() {
+        SseTestClient client = SseTestClient.connect(pushService.subscribe(1L));
+        assertThat(pushService.isSubscribed(1L)).isTrue();
+
+        client.disconnect();
+
+        assertThat(pushService.isSubscribed(1L)).isFalse();
+    }
+
+    @Test
+    void streamOpenedWhileAnotherClosesStillReceivesPushes() throws Exception {
+        for (long userId = 1; userId <= 2_000; userId++) {
+            long user = userId;
+            SseTestClient closing = SseTestClient.connect(pushService.subscribe(user));
+            SseTestClient[] opened = new SseTestClient[1];
+            Thread subscriber = new Thread(() -> opened[0] = SseTestClient.connect(pushService.subscribe(user)));
+            subscriber.start();
+            closing.disconnect();
+            subscriber.join();
+
+            assertThat(pushService.isSubscribed(user)).isTrue();
+            pushService.pushUnreadCount(user, 1);
+            await().pollInterval(Duration.ofMillis(1)).atMost(5, TimeUnit.SECONDS)
+                .until(() -> opened[0].events().size() == 1);
+        }
+    }
+
+    // "event:unread-count\ndata:7\n\n" -> "7"
+    private static String data(String event) {
+        int start = event.indexOf("data:") + 5;
+        return event.substring(start, event.indexOf('\n', start));
+    }
+}
@@ -0,0 +1,64 @@
+package com.spingo.service;
+
+import com.spingo.repository.NotificationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NotificationRetentionEngineTest {
+
+    private final NotificationRepository notificationRepository = mock(NotificationRepository.class);
+    private NotificationRetentionEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new NotificationRetentionEngine(mock(PlatformTransactionManager.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(engine, "notificationRepository", notificationRepository);
+        ReflectionTestUtils.setField(engine, "eventPublisher", mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(engine, "maintenanceExecutor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(engine, "readRetentionDays", 30);
+        ReflectionTestUtils.setField(engine, "unreadRetentionDays", 180);
+        ReflectionTestUtils.setField(engine, "chunkSize", 4L);
+        ReflectionTestUtils.setField(engine, "throttleRatio", 0.0);
+        ReflectionTestUtils.setField(engine, "minPauseMillis", 0L);
+    }
+
+    @Test
+    void walkStopsAtTheNewestIdOldEnoughToExpire() {
+        when(notificationRepository.findMinId()).thenReturn(1L);
+        when(notificationRepository.findIdsCreatedBefore(any(), any())).thenReturn(List.of(10L));
+
+        engine.schedulePurge();
+
+        verify(notificationRepository).deleteExpiredInRange(eq(1L), eq(5L), any(), any());
+        verify(notificationRepository).deleteExpiredInRange(eq(5L), eq(9L), any(), any());
+        verify(notificationRepository).deleteExpiredInRange(eq(9L), eq(11L), any(), any());
+        verify(notificationRepository, never()).deleteExpiredInRange(eq(11L), anyLong(), any(), any());
+    }
+
+    @Test
+    void nothingOldEnoughMeansNoWalk() {
+        when(notificationRepository.findMinId()).thenReturn(1L);
+        when(notificationRepository.findIdsCreatedBefore(any(), any())).thenReturn(List.of());
+
+        engine.schedulePurge();
+
+        verify(notificationRepository, never()).deleteExpiredInRange(anyLong(), anyLong(),
+            any(LocalDateTime.class), any(LocalDateTime.class));
+    }
+}
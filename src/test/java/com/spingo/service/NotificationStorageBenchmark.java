@@ -0,0 +1,256 @@
+package com.spingo.service;
+
+import com.spingo.entity.Notification;
+import com.spingo.entity.NotificationTemplate;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Storage and throughput of the notifications table with every row holding
+ * its rendered title and message (before) and with system notifications
+ * stored as template id and parameters (after). Both loads come from the
+ * same seeded generator: the four system templates with realistic bike
+ * names, amounts and times, plus one free-form row in twenty, which both
+ * formats store as text. Reports load rate, database size, and read rates for
+ * inbox pages and a full scan, rendering templated rows as the app does.
+ * Each format gets its own H2 file database (MySQL mode) under target/,
+ * created from the DDL Hibernate generates for the table, and its size is
+ * the file after SHUTDOWN COMPACT. On MySQL, compare data_length +
+ * index_length in information_schema.tables the same way.
+ * mvn test -Pbenchmark -Dbenchmark.notifications=10000000 (default 1M)
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class NotificationStorageBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationStorageBenchmark.class);
+
+    private static final int NOTIFICATIONS = Integer.getInteger("benchmark.notifications", 1_000_000);
+    private static final int USERS = 10_000;
+    private static final int BATCH = 10_000;
+    private static final int INBOX_READS = 20_000;
+    private static final int INBOX_SIZE = 20;
+    private static final NotificationTemplate[] TEMPLATES = NotificationTemplate.values();
+    private static final String[] BIKES = {
+        "Royal Enfield Classic 350", "Honda Activa 6G", "Bajaj Pulsar NS200", "TVS Jupiter",
+        "KTM Duke 390", "Yamaha FZ-S", "Ather 450X", "Hero Splendor Plus" };
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void renderedAgainstTemplatedStorage() throws Exception {
+        List<String> schema = notificationsSchema();
+        Run rendered = measure("rendered", schema, false);
+        Run templated = measure("templated", schema, true);
+
+        log.info("{} notifications for {} users", NOTIFICATIONS, USERS);
+        rendered.report("rendered title and message");
+        templated.report("template id and parameters");
+        log.info("database size ratio {}x", String.format("%.2f", (double) rendered.bytes / templated.bytes));
+    }
+
+    // The notifications table and its indexes as Hibernate created them; the foreign key to users becomes a plain index
+    private List<String> notificationsSchema() throws SQLException {
+        List<String> statements = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet script = statement.executeQuery("SCRIPT NODATA TABLE notifications")) {
+            while (script.next()) {
+                String sql = script.getString(1);
+                if (sql.startsWith("CREATE MEMORY TABLE")) {
+                    // Disk-based, as the table is in any file database
+                    statements.add(sql.replace("CREATE MEMORY TABLE", "CREATE CACHED TABLE"));
+                } else if (sql.contains("FOREIGN KEY")) {
+                    // MySQL and H2 both back a foreign key with an index on its column
+                    statements.add("CREATE INDEX idx_notifications_user ON notifications(user_id)");
+                } else if (sql.startsWith("CREATE INDEX") || sql.startsWith("ALTER TABLE")) {
+                    statements.add(sql);
+                }
+            }
+        }
+        assertThat(statements).anyMatch(sql -> sql.startsWith("CREATE CACHED TABLE"));
+        return statements;
+    }
+
+    // Loads and reads one format in its own database file, then compacts it, measures it and deletes it
+    private Run measure(String format, List<String> schema, boolean templated) throws Exception {
+        Path file = Path.of("target", "notification-storage-" + format);
+        Files.deleteIfExists(Path.of(file + ".mv.db"));
+        String url = "jdbc:h2:file:" + file.toAbsolutePath() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+        long loadNanos;
+        long inboxNanos;
+        long inboxRows;
+        long scanNanos;
+        long textBytesPerRow;
+        try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : schema) {
+                    statement.execute(sql);
+                }
+            }
+            connection.setAutoCommit(false);
+
+            long started = System.nanoTime();
+            load(connection, templated);
+            loadNanos = System.nanoTime() - started;
+
+            started = System.nanoTime();
+            inboxRows = readInboxes(connection);
+            inboxNanos = System.nanoTime() - started;
+
+            started = System.nanoTime();
+            assertThat(scan(connection)).isEqualTo(NOTIFICATIONS);
+            scanNanos = System.nanoTime() - started;
+
+            connection.setAutoCommit(true);
+            try (Statement statement = connection.createStatement()) {
+                try (ResultSet text = statement.executeQuery("SELECT AVG(COALESCE(OCTET_LENGTH(title), 0) "
+                        + "+ COALESCE(OCTET_LENGTH(message), 0) + COALESCE(OCTET_LENGTH(params), 0)) FROM notifications")) {
+                    text.next();
+                    textBytesPerRow = text.getLong(1);
+                }
+                statement.execute("SHUTDOWN COMPACT");
+            }
+        }
+        long bytes = Files.size(Path.of(file + ".mv.db"));
+        Files.delete(Path.of(file + ".mv.db"));
+        return new Run(bytes, textBytesPerRow, loadNanos, inboxRows, inboxNanos, scanNanos);
+    }
+
+    // Same rows in the same order for both formats, so only the storage differs
+    private void load(Connection connection, boolean templated) throws SQLException {
+        SplittableRandom random = new SplittableRandom(22);
+        LocalDateTime start = LocalDateTime.now().minusDays(180);
+        String sql = "INSERT INTO notifications (user_id, title, message, template_id, params, type, status, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement insert = connection.prepareStatement(sql)) {
+            for (int n = 0; n < NOTIFICATIONS; n++) {
+                insert.setLong(1, 1 + random.nextInt(USERS));
+                if (random.nextInt(20) == 0) {
+                    insert.setString(2, "Weekend offer");
+                    insert.setString(3, "Get 20% off on all scooter rentals this weekend in " + city(random) + ".");
+                    insert.setNull(4, Types.SMALLINT);
+                    insert.setNull(5, Types.VARCHAR);
+                    insert.setString(6, Notification.NotificationType.PROMOTION.name());
+                } else {
+                    NotificationTemplate template = TEMPLATES[random.nextInt(TEMPLATES.length)];
+                    String params = params(template, random, start);
+                    if (templated) {
+                        insert.setNull(2, Types.VARCHAR);
+                        insert.setNull(3, Types.CLOB);
+                        insert.setShort(4, template.getId());
+                        insert.setString(5, params);
+                    } else {
+                        insert.setString(2, template.getTitle());
+                        insert.setString(3, template.render(params));
+                        insert.setNull(4, Types.SMALLINT);
+                        insert.setNull(5, Types.VARCHAR);
+                    }
+                    insert.setString(6, template.getType().name());
+                }
+                insert.setString(7, random.nextInt(3) == 0 ? "UNREAD" : "READ");
+                insert.setTimestamp(8, Timestamp.valueOf(start.plusSeconds(n * 15_552_000L / NOTIFICATIONS)));
+                insert.addBatch();
+                if ((n + 1) % BATCH == 0 || n + 1 == NOTIFICATIONS) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+        }
+    }
+
+    private static String params(NotificationTemplate template, SplittableRandom random, LocalDateTime start) {
+        String bike = BIKES[random.nextInt(BIKES.length)];
+        return switch (template) {
+            case PAYMENT_SUCCESS -> NotificationTemplate.encodeParams((200 + random.nextInt(40) * 50) + ".00");
+            case RIDE_REMINDER -> NotificationTemplate.encodeParams(bike,
+                start.plusMinutes(random.nextInt(260_000)).withSecond(0).withNano(0).toString());
+            default -> NotificationTemplate.encodeParams(bike);
+        };
+    }
+
+    private static String city(SplittableRandom random) {
+        return new String[] { "Pune", "Mumbai", "Bengaluru", "Goa" }[random.nextInt(4)];
+    }
+
+    // Newest page of a user's inbox, rendered; returns the rows read
+    private long readInboxes(Connection connection) throws SQLException {
+        SplittableRandom random = new SplittableRandom(7);
+        long rows = 0;
+        String sql = "SELECT title, message, template_id, params FROM notifications "
+            + "WHERE user_id = ? ORDER BY created_at DESC LIMIT " + INBOX_SIZE;
+        try (PreparedStatement select = connection.prepareStatement(sql)) {
+            for (int i = 0; i < INBOX_READS; i++) {
+                select.setLong(1, 1 + random.nextInt(USERS));
+                try (ResultSet page = select.executeQuery()) {
+                    while (page.next()) {
+                        assertThat(render(page)).isNotEmpty();
+                        rows++;
+                    }
+                }
+            }
+        }
+        connection.commit();
+        return rows;
+    }
+
+    private long scan(Connection connection) throws SQLException {
+        long rows = 0;
+        try (Statement statement = connection.createStatement();
+             ResultSet all = statement.executeQuery("SELECT title, message, template_id, params FROM notifications")) {
+            while (all.next()) {
+                render(all);
+                rows++;
+            }
+        }
+        connection.commit();
+        return rows;
+    }
+
+    // What Notification.getMessage returns for the row
+    private static String render(ResultSet row) throws SQLException {
+        short templateId = row.getShort(3);
+        return row.wasNull() ? row.getString(2) : NotificationTemplate.fromId(templateId).render(row.getString(4));
+    }
+
+    private record Run(long bytes, long textBytesPerRow, long loadNanos, long inboxRows, long inboxNanos, long scanNanos) {
+        void report(String format) {
+            log.info("{}: database {} MB ({} bytes/row; title, message and params average {} bytes), load {} rows/s, "
+                + "inbox pages {}/s ({} rows), full scan {} rows/s", format, bytes / 1_000_000, bytes / NOTIFICATIONS,
+                textBytesPerRow, perSecond(NOTIFICATIONS, loadNanos), perSecond(INBOX_READS, inboxNanos), inboxRows,
+                perSecond(NOTIFICATIONS, scanNanos));
+        }
+
+        private static long perSecond(long count, long nanos) {
+            return count * 1_000_000_000L / Math.max(1, nanos);
+        }
+    }
+}
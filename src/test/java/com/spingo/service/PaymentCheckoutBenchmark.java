@@ -0,0 +1,204 @@
+package com.spingo.service;
+
+import com.spingo.TestData;
+import com.spingo.config.AsyncConfig;
+import com.spingo.entity.Bike;
+import com.spingo.entity.Booking;
+import com.spingo.entity.Payment;
+import com.spingo.entity.User;
+import com.spingo.repository.BikeRepository;
+import com.spingo.repository.BookingRepository;
+import com.spingo.repository.PaymentRepository;
+import com.spingo.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+/**
+ * A burst of checkouts against a fixed pool standing in for Tomcat's request
+ * threads, with the gateway call made on the request thread (before) and on
+ * the payment executor (after). Reports how much of the pool the burst
+ * occupies, how long a request queued behind it (a search, a login) waits,
+ * and checkouts answered and payments settled per second. The gateway is the
+ * simulated 2 s call; the database is H2. mvn test -Pbenchmark
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({ PaymentService.class, IdempotencyStore.class, AsyncConfig.class, PaymentCheckoutBenchmark.Metrics.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentCheckoutBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentCheckoutBenchmark.class);
+
+    private static final int REQUEST_THREADS = 50;
+    private static final int CHECKOUTS = Integer.getInteger("benchmark.checkouts", 200);
+    private static final int PROBES = 20;
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private BikeRepository bikeRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockBean
+    private BookingService bookingService;
+
+    @MockBean
+    private BookingHoldTable bookingHoldTable;
+
+    @MockBean
+    private NotificationService notificationService;
+
+    private final List<Booking> bookings = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(bookingHoldTable.renew(anyLong())).thenReturn(true);
+        when(bookingService.confirmPaidBooking(anyLong())).thenReturn(true);
+
+        User owner = userRepository.save(TestData.user(1, User.AccountType.INDIVIDUAL_OWNER));
+        User customer = userRepository.save(TestData.user(2, User.AccountType.CUSTOMER));
+        Bike bike = bikeRepository.save(TestData.bike(1, owner));
+        List<Booking> unsaved = new ArrayList<>();
+        for (int i = 0; i < 2 * CHECKOUTS; i++) {
+            LocalDateTime start = LocalDateTime.now().plusDays(1).plusHours(3L * i);
+            unsaved.add(new Booking(customer, bike, start, start.plusHours(2), Booking.BookingType.HOURLY,
+                new BigDecimal("200.00"), "Pune"));
+        }
+        bookings.addAll(bookingRepository.saveAll(unsaved));
+    }
+
+    @Test
+    void gatewayOnRequestThreadsVersusPaymentExecutor() throws Exception {
+        // Before: the request thread creates the payment and waits out the gateway call
+        Burst before = burst(bookings.subList(0, CHECKOUTS), booking -> {
+            Payment payment = paymentService.createPayment(booking, Payment.PaymentMethod.UPI);
+            paymentService.processPayment(payment.getTransactionId(), "PAYMENT_UPI_BENCHMARK");
+        });
+        report("before (gateway on request thread)", before, before.answeredNanos);
+
+        // After: the request thread queues the payment and answers PENDING
+        Burst after = burst(bookings.subList(CHECKOUTS, 2 * CHECKOUTS), booking ->
+            paymentService.checkout(booking, Payment.PaymentMethod.UPI, "PAYMENT_UPI_BENCHMARK", null));
+        long settled = waitUntilSettled(after.startedAt);
+        report("after (payment executor)", after, settled);
+    }
+
+    // Runs one checkout per booking on the request pool, then queues PROBES trivial requests behind them
+    private Burst burst(List<Booking> burstBookings, Consumer<Booking> checkout) throws Exception {
+        ExecutorService requestThreads = Executors.newFixedThreadPool(REQUEST_THREADS);
+        AtomicLong busyNanos = new AtomicLong();
+        long[] latencies = new long[burstBookings.size()];
+        long[] probeWaits = new long[PROBES];
+        List<Future<?>> requests = new ArrayList<>();
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < burstBookings.size(); i++) {
+            int index = i;
+            long queuedAt = System.nanoTime();
+            requests.add(requestThreads.submit(() -> {
+                long started = System.nanoTime();
+                checkout.accept(burstBookings.get(index));
+                long finished = System.nanoTime();
+                busyNanos.addAndGet(finished - started);
+                latencies[index] = finished - queuedAt;
+            }));
+        }
+        for (int i = 0; i < PROBES; i++) {
+            int index = i;
+            long queuedAt = System.nanoTime();
+            requests.add(requestThreads.submit(() -> {
+                probeWaits[index] = System.nanoTime() - queuedAt;
+            }));
+        }
+        for (Future<?> request : requests) {
+            request.get(5, TimeUnit.MINUTES);
+        }
+        long answeredNanos = System.nanoTime() - startedAt;
+        requestThreads.shutdown();
+        return new Burst(startedAt, answeredNanos, busyNanos.get(), latencies, probeWaits);
+    }
+
+    private long waitUntilSettled(long startedAt) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(5);
+        while (!paymentRepository.findByStatus(Payment.PaymentStatus.PENDING).isEmpty()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(20);
+        }
+        return System.nanoTime() - startedAt;
+    }
+
+    private static void report(String variant, Burst burst, long settledNanos) {
+        double occupancy = (double) burst.busyNanos / (REQUEST_THREADS * (double) burst.answeredNanos);
+        log.info("{}: {} checkouts on {} request threads, request threads {}% occupied during the burst",
+            variant, burst.latencies.length, REQUEST_THREADS, String.format("%.1f", occupancy * 100));
+        log.info("{}: checkout response p50 {} ms, p99 {} ms; request queued behind the burst waited p50 {} ms",
+            variant, millis(percentile(burst.latencies, 0.50)), millis(percentile(burst.latencies, 0.99)),
+            millis(percentile(burst.probeWaits, 0.50)));
+        log.info("{}: {} checkouts answered/sec, {} payments settled/sec", variant,
+            rate(burst.latencies.length, burst.answeredNanos), rate(burst.latencies.length, settledNanos));
+    }
+
+    private static long percentile(long[] nanos, double percentile) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(percentile * sorted.length))];
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static String rate(long count, long nanos) {
+        return String.format("%.1f", count * 1e9 / nanos);
+    }
+
+    private record Burst(long startedAt, long answeredNanos, long busyNanos, long[] latencies, long[] probeWaits) {}
+}
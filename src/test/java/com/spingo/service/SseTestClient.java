@@ -0,0 +1,110 @@
+package com.spingo.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Stands in for the servlet response behind an SseEmitter, the way Spring
+ * MVC attaches one once the async request starts. Records what is written,
+ * can stall writes like a slow client, and can disconnect.
+ */
+final class SseTestClient implements InvocationHandler {
+
+    private static final Class<?> HANDLER;
+    private static final Method INITIALIZE;
+
+    static {
+        try {
+            HANDLER = Class.forName(ResponseBodyEmitter.class.getName() + "$Handler");
+            INITIALIZE = ResponseBodyEmitter.class.getDeclaredMethod("initialize", HANDLER);
+            INITIALIZE.setAccessible(true);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private final Runnable onEvent;
+    private volatile CountDownLatch stall;
+    private volatile Runnable completion;
+
+    private SseTestClient(Runnable onEvent) {
+        this.onEvent = onEvent;
+    }
+
+    static SseTestClient connect(SseEmitter emitter) {
+        return connect(emitter, () -> {});
+    }
+
+    // onEvent runs on the writing thread after each event
+    static SseTestClient connect(SseEmitter emitter, Runnable onEvent) {
+        SseTestClient client = new SseTestClient(onEvent);
+        try {
+            INITIALIZE.invoke(emitter, Proxy.newProxyInstance(HANDLER.getClassLoader(), new Class<?>[] { HANDLER }, client));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+        return client;
+    }
+
+    List<String> events() {
+        return events;
+    }
+
+    // Writes block until the returned latch is counted down
+    CountDownLatch stall() {
+        CountDownLatch latch = new CountDownLatch(1);
+        stall = latch;
+        return latch;
+    }
+
+    void disconnect() {
+        Runnable callback = completion;
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "send" -> {
+                CountDownLatch latch = stall;
+                if (latch != null) {
+                    latch.await();
+                }
+                StringBuilder event = new StringBuilder();
+                if (args.length == 1) {
+                    for (Object item : (Set<?>) args[0]) {
+                        event.append(((ResponseBodyEmitter.DataWithMediaType) item).getData());
+                    }
+                } else {
+                    event.append(args[0]);
+                }
+                events.add(event.toString());
+                onEvent.run();
+            }
+            case "onCompletion" -> completion = (Runnable) args[0];
+            case "complete" -> disconnect();
+            case "hashCode" -> {
+                return System.identityHashCode(proxy);
+            }
+            case "equals" -> {
+                return proxy == args[0];
+            }
+            case "toString" -> {
+                return "SseTestClient";
+            }
+            default -> { }
+        }
+        return null;
+    }
+}